@@ -0,0 +1,219 @@
+package org.commons.benchmark;
+
+import org.commons.ingredients.ConcreteIngredientContainer;
+import org.commons.ingredients.IngredientContainer;
+import org.commons.ingredients.IngredientType;
+import org.commons.machine.BaseBeverageMachine;
+import org.commons.machine.BeverageComposition;
+import org.commons.machine.BeverageMachine;
+import org.commons.machine.BeverageType;
+import org.commons.machine.ChaiPointBeverageMachine;
+import org.commons.machine.CoffeeMachine;
+import org.commons.machine.ElaichiTeaMachine;
+import org.commons.machine.GingerTeaMachine;
+import org.commons.machine.GreenTeaMachine;
+import org.commons.machine.HotMilkMachine;
+import org.commons.machine.HotWaterMachine;
+import org.commons.machine.RecipeBeverageMachine;
+import org.exceptions.IncorrectIngredientTypeException;
+
+/**
+ * Machines used by the benchmarks, built the same way the unit tests build
+ * them but with containers deep enough not to run dry during an iteration.
+ *
+ * Every recipe asks for one unit of each of its ingredients, the cost of a brew
+ * does not depend on the amounts and a full container then lasts for about a
+ * billion cups.
+ *
+ */
+public final class BenchmarkMachines {
+
+    /**
+     * level containers are filled to, and topped up to between iterations
+     */
+    public static final int FULL = Integer.MAX_VALUE / 2;
+
+    private BenchmarkMachines() {
+    }
+
+    /**
+     * @param machine one of hot_water, hot_milk, green_tea, ginger_tea, elaichi_tea,
+     *                hot_coffee (the brewing module serving that beverage), chai_point
+     *                or recipe
+     * @param outlet number of outlets of the machine
+     * @param level initial quantity of every ingredient container
+     * @return machine ready to dispense
+     */
+    public static BaseBeverageMachine build(String machine, int outlet, int level) {
+        IngredientContainer[] containers = containers(level);
+        switch (machine) {
+            case "hot_water":   return hotWater(outlet, containers);
+            case "hot_milk":    return hotMilk(outlet, containers);
+            case "green_tea":   return greenTea(outlet, containers);
+            case "ginger_tea":  return gingerTea(outlet, containers);
+            case "elaichi_tea": return elaichiTea(outlet, containers);
+            case "hot_coffee":  return coffee(outlet, containers);
+            case "chai_point":  return new ChaiPointBeverageMachine.Builder()
+                                        .outlet(outlet)
+                                        .addMachine(hotWater(outlet, containers))
+                                        .addMachine(hotMilk(outlet, containers))
+                                        .addMachine(greenTea(outlet, containers))
+                                        .addMachine(gingerTea(outlet, containers))
+                                        .addMachine(elaichiTea(outlet, containers))
+                                        .addMachine(coffee(outlet, containers))
+                                        .build();
+            case "recipe":      RecipeBeverageMachine.Builder builder = new RecipeBeverageMachine.Builder().outlet(outlet);
+                                for (IngredientContainer container : containers)
+                                    builder.addIngredientContainer(container);
+                                for (BeverageType type : BeverageType.values())
+                                    builder.addRecipe(type, recipe(type));
+                                return builder.build();
+            default:            throw new IllegalArgumentException("unknown machine " + machine);
+        }
+    }
+
+    /**
+     * refill every ingredient the machine holds back to level
+     */
+    public static void topUp(BeverageMachine machine, int level) {
+        for (IngredientType type : IngredientType.values()) {
+            int missing = level - machine.ingredientLevel(type);
+            if (missing <= 0) continue;
+            try {
+                machine.refillIngredient(type, missing);
+            } catch (IncorrectIngredientTypeException iite) {
+                // the machine does not use this ingredient
+            }
+        }
+    }
+
+    /**
+     * @param mix one of single (hot water only), tea (green, ginger and elaichi tea)
+     *            or all (every beverage in turn)
+     * @return beverages ordered in turn
+     */
+    public static BeverageType[] orders(String mix) {
+        switch (mix) {
+            case "single":  return new BeverageType[] {BeverageType.HOT_WATER};
+            case "tea":     return new BeverageType[] {BeverageType.GREEN_TEA, BeverageType.GINGER_TEA,
+                                                       BeverageType.ELAICHI_TEA};
+            case "all":     return BeverageType.values();
+            default:        throw new IllegalArgumentException("unknown mix " + mix);
+        }
+    }
+
+    /**
+     * @param machine name of a single beverage brewing module
+     * @return beverage it serves
+     */
+    public static BeverageType served(String machine) {
+        for (BeverageType type : BeverageType.values()) {
+            if (type.getFieldDescriptor().equals(machine))
+                return type;
+        }
+        throw new IllegalArgumentException(machine + " serves more than one beverage");
+    }
+
+    static BeverageComposition recipe(BeverageType type) {
+        BeverageComposition recipe = new BeverageComposition();
+        switch (type) {
+            case HOT_WATER:     recipe.put(IngredientType.WATER, 1);
+                                break;
+            case HOT_MILK:      recipe.put(IngredientType.MILK, 1);
+                                break;
+            case GREEN_TEA:     recipe.put(IngredientType.WATER, 1);
+                                recipe.put(IngredientType.GREEN_MIXTURE, 1);
+                                recipe.put(IngredientType.GINGER_SYRUP, 1);
+                                recipe.put(IngredientType.SUGAR_SYRUP, 1);
+                                break;
+            case GINGER_TEA:    recipe.put(IngredientType.WATER, 1);
+                                recipe.put(IngredientType.MILK, 1);
+                                recipe.put(IngredientType.TEA_LEAVES_SYRUP, 1);
+                                recipe.put(IngredientType.GINGER_SYRUP, 1);
+                                recipe.put(IngredientType.SUGAR_SYRUP, 1);
+                                break;
+            case ELAICHI_TEA:   recipe.put(IngredientType.WATER, 1);
+                                recipe.put(IngredientType.MILK, 1);
+                                recipe.put(IngredientType.TEA_LEAVES_SYRUP, 1);
+                                recipe.put(IngredientType.ELAICHI_SYRUP, 1);
+                                recipe.put(IngredientType.SUGAR_SYRUP, 1);
+                                break;
+            case HOT_COFFEE:    recipe.put(IngredientType.WATER, 1);
+                                recipe.put(IngredientType.MILK, 1);
+                                recipe.put(IngredientType.COFFEE_SYRUP, 1);
+                                recipe.put(IngredientType.SUGAR_SYRUP, 1);
+                                break;
+        }
+        return recipe;
+    }
+
+    private static IngredientContainer[] containers(int level) {
+        IngredientType[] types = IngredientType.values();
+        IngredientContainer[] containers = new IngredientContainer[types.length];
+        for (IngredientType type : types)
+            containers[type.ordinal()] = new ConcreteIngredientContainer(type, level);
+        return containers;
+    }
+
+    private static HotWaterMachine hotWater(int outlet, IngredientContainer[] containers) {
+        return new HotWaterMachine.Builder()
+                .outlet(outlet)
+                .waterContainer(containers[IngredientType.WATER.ordinal()])
+                .beverageRecipe(recipe(BeverageType.HOT_WATER))
+                .build();
+    }
+
+    private static HotMilkMachine hotMilk(int outlet, IngredientContainer[] containers) {
+        return new HotMilkMachine.Builder()
+                .outlet(outlet)
+                .milkContainer(containers[IngredientType.MILK.ordinal()])
+                .beverageRecipe(recipe(BeverageType.HOT_MILK))
+                .build();
+    }
+
+    private static GreenTeaMachine greenTea(int outlet, IngredientContainer[] containers) {
+        return new GreenTeaMachine.Builder()
+                .outlet(outlet)
+                .addIngredientContainer(containers[IngredientType.WATER.ordinal()])
+                .addIngredientContainer(containers[IngredientType.GREEN_MIXTURE.ordinal()])
+                .addIngredientContainer(containers[IngredientType.GINGER_SYRUP.ordinal()])
+                .addIngredientContainer(containers[IngredientType.SUGAR_SYRUP.ordinal()])
+                .addRecipe(recipe(BeverageType.GREEN_TEA))
+                .build();
+    }
+
+    private static GingerTeaMachine gingerTea(int outlet, IngredientContainer[] containers) {
+        return new GingerTeaMachine.Builder()
+                .outlet(outlet)
+                .addIngredientContainer(containers[IngredientType.WATER.ordinal()])
+                .addIngredientContainer(containers[IngredientType.MILK.ordinal()])
+                .addIngredientContainer(containers[IngredientType.TEA_LEAVES_SYRUP.ordinal()])
+                .addIngredientContainer(containers[IngredientType.GINGER_SYRUP.ordinal()])
+                .addIngredientContainer(containers[IngredientType.SUGAR_SYRUP.ordinal()])
+                .addRecipe(recipe(BeverageType.GINGER_TEA))
+                .build();
+    }
+
+    private static ElaichiTeaMachine elaichiTea(int outlet, IngredientContainer[] containers) {
+        return new ElaichiTeaMachine.Builder()
+                .outlet(outlet)
+                .addIngredientContainer(containers[IngredientType.WATER.ordinal()])
+                .addIngredientContainer(containers[IngredientType.MILK.ordinal()])
+                .addIngredientContainer(containers[IngredientType.TEA_LEAVES_SYRUP.ordinal()])
+                .addIngredientContainer(containers[IngredientType.ELAICHI_SYRUP.ordinal()])
+                .addIngredientContainer(containers[IngredientType.SUGAR_SYRUP.ordinal()])
+                .addRecipe(recipe(BeverageType.ELAICHI_TEA))
+                .build();
+    }
+
+    private static CoffeeMachine coffee(int outlet, IngredientContainer[] containers) {
+        return new CoffeeMachine.Builder()
+                .outlet(outlet)
+                .addIngredientContainer(containers[IngredientType.WATER.ordinal()])
+                .addIngredientContainer(containers[IngredientType.MILK.ordinal()])
+                .addIngredientContainer(containers[IngredientType.COFFEE_SYRUP.ordinal()])
+                .addIngredientContainer(containers[IngredientType.SUGAR_SYRUP.ordinal()])
+                .addRecipe(recipe(BeverageType.HOT_COFFEE))
+                .build();
+    }
+}
@@ -0,0 +1,124 @@
+package org.commons.benchmark;
+
+import org.commons.ingredients.AtomicIngredientContainer;
+import org.commons.ingredients.ConcreteIngredientContainer;
+import org.commons.ingredients.IngredientContainer;
+import org.commons.ingredients.IngredientType;
+import org.exceptions.RequestedQuantityNotPresentException;
+import org.exceptions.RequestedQuantityNotSufficientException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention on one ingredient container shared by many brewing modules, the
+ * way water and sugar syrup containers are shared inside a chai point machine.
+ *
+ * The threadsNN benchmarks retrieve one unit per operation from 1 to 64 threads.
+ * The shared group adds what a running machine does besides brewing: an operator
+ * thread refilling the container and a thread polling its level for
+ * ingredientsRunningLow. Its thread split can be changed with -tg, e.g.
+ * -tg 63,1,1 for 63 brewing threads.
+ *
+ * Every container implementation is compared through the impl parameter,
+ * reporting throughput and latency percentiles.
+ *
+ *   java -jar target/benchmarks.jar ContainerContentionBenchmark -p impl=atomic
+ *
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContainerContentionBenchmark {
+
+    @Param({"concrete", "atomic"})
+    public String impl;
+
+    private IngredientContainer container;
+
+    @Setup(Level.Trial)
+    public void build() {
+        switch (impl) {
+            case "concrete":    container = new ConcreteIngredientContainer(IngredientType.WATER, BenchmarkMachines.FULL);
+                                break;
+            case "atomic":      container = new AtomicIngredientContainer(IngredientType.WATER, BenchmarkMachines.FULL);
+                                break;
+            default:            throw new IllegalArgumentException("unknown container " + impl);
+        }
+    }
+
+    /**
+     * bring the container back to its initial level, neither draining it nor
+     * letting the refilling thread push it towards overflow
+     */
+    @Setup(Level.Iteration)
+    public void level() throws RequestedQuantityNotSufficientException, RequestedQuantityNotPresentException {
+        int difference = BenchmarkMachines.FULL - container.quantity();
+        if (difference > 0)
+            container.refill(difference);
+        else if (difference < 0)
+            container.retrieve(-difference);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void threads01() throws RequestedQuantityNotSufficientException, RequestedQuantityNotPresentException {
+        container.retrieve(1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void threads04() throws RequestedQuantityNotSufficientException, RequestedQuantityNotPresentException {
+        container.retrieve(1);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void threads16() throws RequestedQuantityNotSufficientException, RequestedQuantityNotPresentException {
+        container.retrieve(1);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void threads64() throws RequestedQuantityNotSufficientException, RequestedQuantityNotPresentException {
+        container.retrieve(1);
+    }
+
+    @Benchmark
+    @Group("shared")
+    @GroupThreads(14)
+    public void sharedRetrieve() throws RequestedQuantityNotSufficientException, RequestedQuantityNotPresentException {
+        container.retrieve(1);
+    }
+
+    @Benchmark
+    @Group("shared")
+    @GroupThreads(1)
+    public void sharedRefill() {
+        container.refill(1);
+    }
+
+    @Benchmark
+    @Group("shared")
+    @GroupThreads(1)
+    public int sharedQuantity() {
+        return container.quantity();
+    }
+}
@@ -0,0 +1,104 @@
+package org.commons.benchmark;
+
+import org.commons.machine.BaseBeverageMachine;
+import org.commons.machine.BeverageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency percentiles of dispense on the multi beverage machines,
+ * @{@link org.commons.machine.ChaiPointBeverageMachine} and
+ * @{@link org.commons.machine.RecipeBeverageMachine}, for a mix of beverages
+ * ordered in turn by every thread.
+ *
+ * stock=empty measures the out of stock path, see @{@link ModuleDispenseBenchmark}.
+ *
+ *   java -jar target/benchmarks.jar MixedDispenseBenchmark -p mix=tea -p outlets=16
+ *
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MixedDispenseBenchmark {
+
+    @Param({"chai_point", "recipe"})
+    public String machine;
+
+    @Param({"1", "4", "16", "64"})
+    public int outlets;
+
+    @Param({"single", "tea", "all"})
+    public String mix;
+
+    @Param({"full", "empty"})
+    public String stock;
+
+    private BaseBeverageMachine beverageMachine;
+    private BeverageType[] orders;
+
+    /**
+     * position of a thread in the mix
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        BeverageType next(BeverageType[] orders) {
+            BeverageType type = orders[next];
+            next = next + 1 == orders.length ? 0 : next + 1;
+            return type;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void build() {
+        beverageMachine = BenchmarkMachines.build(machine, outlets, "full".equals(stock) ? BenchmarkMachines.FULL : 0);
+        orders = BenchmarkMachines.orders(mix);
+    }
+
+    @Setup(Level.Iteration)
+    public void topUp() {
+        if ("full".equals(stock))
+            BenchmarkMachines.topUp(beverageMachine, BenchmarkMachines.FULL);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String threads01(Cursor cursor) {
+        return beverageMachine.dispense(cursor.next(orders));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String threads04(Cursor cursor) {
+        return beverageMachine.dispense(cursor.next(orders));
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String threads16(Cursor cursor) {
+        return beverageMachine.dispense(cursor.next(orders));
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String threads64(Cursor cursor) {
+        return beverageMachine.dispense(cursor.next(orders));
+    }
+}
@@ -0,0 +1,87 @@
+package org.commons.benchmark;
+
+import org.commons.machine.BaseBeverageMachine;
+import org.commons.machine.BeverageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency percentiles of dispense on every single beverage
+ * brewing module, for 1 to 64 outlets and 1 to 64 dispensing threads.
+ *
+ * With stock=full the containers are topped up before every iteration and every
+ * cup is prepared. With stock=empty every container is empty and every order
+ * takes the out of stock path.
+ *
+ *   java -jar target/benchmarks.jar ModuleDispenseBenchmark -p machine=hot_coffee -p stock=full
+ *
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModuleDispenseBenchmark {
+
+    @Param({"hot_water", "hot_milk", "green_tea", "ginger_tea", "elaichi_tea", "hot_coffee"})
+    public String machine;
+
+    @Param({"1", "4", "16", "64"})
+    public int outlets;
+
+    @Param({"full", "empty"})
+    public String stock;
+
+    private BaseBeverageMachine beverageMachine;
+    private BeverageType beverage;
+
+    @Setup(Level.Trial)
+    public void build() {
+        beverageMachine = BenchmarkMachines.build(machine, outlets, "full".equals(stock) ? BenchmarkMachines.FULL : 0);
+        beverage = BenchmarkMachines.served(machine);
+    }
+
+    @Setup(Level.Iteration)
+    public void topUp() {
+        if ("full".equals(stock))
+            BenchmarkMachines.topUp(beverageMachine, BenchmarkMachines.FULL);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String threads01() {
+        return beverageMachine.dispense(beverage);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String threads04() {
+        return beverageMachine.dispense(beverage);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String threads16() {
+        return beverageMachine.dispense(beverage);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String threads64() {
+        return beverageMachine.dispense(beverage);
+    }
+}
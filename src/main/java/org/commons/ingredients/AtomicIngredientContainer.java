@@ -0,0 +1,165 @@
+package org.commons.ingredients;
+
+import org.commons.machine.BeverageOutputMessage;
+import org.exceptions.RequestedQuantityNotPresentException;
+import org.exceptions.RequestedQuantityNotSufficientException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free ingredient container that can contain any of the
+ * @{@link IngredientType} ingredient.
+ *
+ * Quantity is kept in an @{@link AtomicInteger} and every mutation is a
+ * compare-and-set loop, so the same container can be plugged into several
+ * brewing modules and be debited/refilled from many outlets in parallel
+ * without any monitor lock and without ever going below zero.
+ *
+ */
+public class AtomicIngredientContainer implements IngredientContainer {
+    private final IngredientType type;
+    private final AtomicInteger quantity;
+
+    /**
+     * fill container with initial amount of ingredient of the type @{@link IngredientType}
+     * negative quantity is not supported and throws @{@link IllegalArgumentException}.
+     * @param type of the ingredient filled in the container
+     * @param quantity of the ingredient being filled in the container
+     */
+    public AtomicIngredientContainer(IngredientType type, int quantity) {
+        if (type == null || quantity < 0)
+            throw new IllegalArgumentException("argument is not correct, type=" + type +
+                    ", quantity=" + quantity);
+        this.type = type;
+        this.quantity = new AtomicInteger(quantity);
+    }
+
+    /**
+     * Quantity of the ingredient in the container
+     * @return quantity of the ingredient in the container
+     */
+    @Override
+    public int quantity() {
+        return quantity.get();
+    }
+
+    /**
+     * type of the ingredient filled in the container
+     * @return @{@link IngredientType} of the ingredient
+     */
+    @Override
+    public IngredientType type() {
+        return type;
+    }
+
+    /**
+     * check if container has specified amount of ingredient in the container
+     * if quantity == 0, it throws @{@link RequestedQuantityNotPresentException}
+     * if quantity < amount, it throws @{@link RequestedQuantityNotSufficientException}
+     *
+     * The check is only a snapshot, a concurrent retrieve can still drain the
+     * container afterwards. Use @{@link #tryRetrieve(int)} to check and debit
+     * in one atomic step.
+     *
+     * @param amount of the ingredient that is being check in the container
+     * @throws RequestedQuantityNotPresentException
+     * @throws RequestedQuantityNotSufficientException
+     */
+    @Override
+    public void check(int amount)
+            throws RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException {
+        throwIfUnavailable(quantity.get(), amount);
+    }
+
+    /**
+     * check if container has specified amount of ingredient in the container
+     * without throwing. Like @{@link #check(int)} it is only a snapshot.
+     *
+     * @param amount of the ingredient that is being check in the container
+     * @return @{@link IngredientStatus#AVAILABLE} or the reason it is not
+     */
+    @Override
+    public IngredientStatus status(int amount) {
+        return IngredientStatus.of(quantity.get(), amount);
+    }
+
+    /**
+     * Retrieve the specified amount of ingredient from the container.
+     * Check and debit happen in a single compare-and-set, so the container
+     * can never be over-drawn by concurrent retrievals.
+     *
+     * @param amount of ingredient that is retrieved from container
+     * @throws RequestedQuantityNotPresentException
+     * @throws RequestedQuantityNotSufficientException
+     */
+    @Override
+    public void retrieve(int amount)
+            throws RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException {
+        if (amount < 0)
+            throw new IllegalArgumentException("amount retrieved cannot be negative");
+
+        for (;;) {
+            int current = quantity.get();
+            throwIfUnavailable(current, amount);
+            if (quantity.compareAndSet(current, current - amount))
+                return;
+        }
+    }
+
+    /**
+     * Atomically retrieve the specified amount of ingredient if, and only if,
+     * the container holds at least that amount. Unlike @{@link #retrieve(int)}
+     * it never throws on shortage, so it is cheap on the out of stock path.
+     *
+     * @param amount of ingredient that is retrieved from container
+     * @return @{@link IngredientStatus#AVAILABLE} if amount was debited,
+     *          else the reason it was not
+     */
+    @Override
+    public IngredientStatus tryRetrieve(int amount) {
+        if (amount < 0)
+            throw new IllegalArgumentException("amount retrieved cannot be negative");
+
+        for (;;) {
+            int current = quantity.get();
+            IngredientStatus status = IngredientStatus.of(current, amount);
+            if (status != IngredientStatus.AVAILABLE)
+                return status;
+            if (quantity.compareAndSet(current, current - amount))
+                return status;
+        }
+    }
+
+    /**
+     * refill specified amount of ingredient in the container
+     * @param amount of the ingredient being refilled in the container
+     */
+    @Override
+    public void refill(int amount) {
+        if (amount < 0)
+            throw new IllegalArgumentException("amount refilled cannot be negative");
+
+        RefillEvent event = ContainerEvents.startRefill();
+        for (;;) {
+            int current = quantity.get();
+            int next = current + amount;
+            if (next < 0)
+                throw new IllegalStateException("refill of " + amount + " overflows " +
+                        type.getFieldDescriptor() + " container");
+            if (quantity.compareAndSet(current, next)) {
+                ContainerEvents.finishRefill(event, type, amount, next);
+                return;
+            }
+        }
+    }
+
+    private void throwIfUnavailable(int current, int amount)
+            throws RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException {
+        switch (IngredientStatus.of(current, amount)) {
+            case NOT_PRESENT:       throw new RequestedQuantityNotPresentException(type.getFieldDescriptor() +
+                                    " is " + BeverageOutputMessage.QTY_NA);
+            case NOT_SUFFICIENT:    throw new RequestedQuantityNotSufficientException(type.getFieldDescriptor() +
+                                    " is " + BeverageOutputMessage.QTY_NS);
+        }
+    }
+}
@@ -8,10 +8,14 @@ import org.exceptions.RequestedQuantityNotSufficientException;
  * Concrete class for ingredient container that can contain
  * any of the @{@link IngredientType} ingredient
  *
+ * Debit and refill are guarded by the monitor of the container, the same
+ * monitor @{@link org.commons.machine.IngredientReservation} holds while it
+ * debits a whole recipe, so a container can be shared by several brewing modules.
+ *
  */
 public class ConcreteIngredientContainer implements IngredientContainer {
     private IngredientType type;
-    private int quantity;
+    private volatile int quantity;
 
     /**
      * fill container with initial amount of ingredient of the type @{@link IngredientType}
@@ -57,12 +61,39 @@ public class ConcreteIngredientContainer implements IngredientContainer {
     @Override
     public void check(int amount)
             throws RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException {
-            if (quantity == 0)
-                throw new RequestedQuantityNotPresentException(type.getFieldDescriptor() + " is " +
-                        BeverageOutputMessage.QTY_NA);
-            if (quantity < amount)
-                throw new RequestedQuantityNotSufficientException( type.getFieldDescriptor() + " is " +
-                        BeverageOutputMessage.QTY_NS);
+        switch (status(amount)) {
+            case NOT_PRESENT:       throw new RequestedQuantityNotPresentException(type.getFieldDescriptor() +
+                                    " is " + BeverageOutputMessage.QTY_NA);
+            case NOT_SUFFICIENT:    throw new RequestedQuantityNotSufficientException(type.getFieldDescriptor() +
+                                    " is " + BeverageOutputMessage.QTY_NS);
+        }
+    }
+
+    /**
+     * check if container has specified amount of ingredient in the container
+     * without throwing.
+     *
+     * @param amount of the ingredient that is being check in the container
+     * @return @{@link IngredientStatus#AVAILABLE} or the reason it is not
+     */
+    @Override
+    public IngredientStatus status(int amount) {
+        return IngredientStatus.of(quantity, amount);
+    }
+
+    /**
+     * Retrieve the specified amount of ingredient if the container holds it,
+     * without throwing.
+     *
+     * @param amount of ingredient that is retrieved from container
+     * @return @{@link IngredientStatus#AVAILABLE} if debited, else the reason it was not
+     */
+    @Override
+    public synchronized IngredientStatus tryRetrieve(int amount) {
+        IngredientStatus status = IngredientStatus.of(quantity, amount);
+        if (status == IngredientStatus.AVAILABLE)
+            quantity -= amount;
+        return status;
     }
 
 
@@ -74,7 +105,7 @@ public class ConcreteIngredientContainer implements IngredientContainer {
      * @throws RequestedQuantityNotSufficientException
      */
     @Override
-    public void retrieve(int amount)
+    public synchronized void retrieve(int amount)
             throws RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException {
         check(amount);
         quantity -= amount;
@@ -89,6 +120,11 @@ public class ConcreteIngredientContainer implements IngredientContainer {
         if (amount < 0)
             throw new IllegalArgumentException("amount refilled cannot be negative");
 
-        quantity += amount;
+        RefillEvent event = ContainerEvents.startRefill();
+        int level;
+        synchronized (this) {
+            level = quantity += amount;
+        }
+        ContainerEvents.finishRefill(event, type, amount, level);
     }
 }
@@ -0,0 +1,52 @@
+package org.commons.ingredients;
+
+import jdk.jfr.EventType;
+import org.commons.metrics.FlightRecording;
+
+/**
+ * Begins and commits the @{@link RefillEvent} flight recorder events of the
+ * containers. The event class extends jdk.jfr.Event and is only loaded once a
+ * recording runs, so refills work the same on JVMs without flight recorder.
+ * A running recording with the event disabled does not allocate it either.
+ *
+ */
+final class ContainerEvents {
+
+    private ContainerEvents() {
+    }
+
+    /**
+     * @return refill event begun now, or null when no flight recording records it
+     */
+    static RefillEvent startRefill() {
+        if (!FlightRecording.isRunning() || !Refill.TYPE.isEnabled())
+            return null;
+        RefillEvent event = new RefillEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * end and commit event if it lasted longer than the configured threshold
+     *
+     * @param event begun by @{@link #startRefill()}, may be null
+     */
+    static void finishRefill(RefillEvent event, IngredientType type, int amount, int level) {
+        if (event == null)
+            return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.ingredient = type.getFieldDescriptor();
+            event.amount = amount;
+            event.level = level;
+            event.commit();
+        }
+    }
+
+    /**
+     * event type, looked up the first time a recording runs
+     */
+    private static final class Refill {
+        private static final EventType TYPE = EventType.getEventType(RefillEvent.class);
+    }
+}
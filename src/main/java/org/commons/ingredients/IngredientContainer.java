@@ -34,6 +34,8 @@ public interface IngredientContainer {
 
     /**
      * Retrieve the specified amount of ingredient from the container.
+     * Implementations check and debit in one atomic step, brewing modules
+     * rely on it instead of a machine wide lock.
      *
      * @param amount of ingredient that is retrieved from container
      * @throws RequestedQuantityNotPresentException
@@ -43,6 +45,46 @@ public interface IngredientContainer {
             throws RequestedQuantityNotPresentException,
             RequestedQuantityNotSufficientException;
 
+    /**
+     * check if container has specified amount of ingredient without throwing,
+     * meant for the out of stock path where filling stack traces is too costly.
+     * Containers should override it, the default implementation goes through
+     * @{@link #check(int)}.
+     *
+     * @param amount of the ingredient that is being check in the container
+     * @return @{@link IngredientStatus#AVAILABLE} or the reason it is not
+     */
+    public default IngredientStatus status(int amount) {
+        try {
+            check(amount);
+            return IngredientStatus.AVAILABLE;
+        } catch (RequestedQuantityNotPresentException rqnpe) {
+            return IngredientStatus.NOT_PRESENT;
+        } catch (RequestedQuantityNotSufficientException rqnse) {
+            return IngredientStatus.NOT_SUFFICIENT;
+        }
+    }
+
+    /**
+     * Retrieve the specified amount of ingredient if the container holds it,
+     * checking and debiting in one atomic step and without throwing.
+     * Containers should override it, the default implementation goes through
+     * @{@link #retrieve(int)}.
+     *
+     * @param amount of ingredient that is retrieved from container
+     * @return @{@link IngredientStatus#AVAILABLE} if debited, else the reason it was not
+     */
+    public default IngredientStatus tryRetrieve(int amount) {
+        try {
+            retrieve(amount);
+            return IngredientStatus.AVAILABLE;
+        } catch (RequestedQuantityNotPresentException rqnpe) {
+            return IngredientStatus.NOT_PRESENT;
+        } catch (RequestedQuantityNotSufficientException rqnse) {
+            return IngredientStatus.NOT_SUFFICIENT;
+        }
+    }
+
     /**
      * refill specified amount of ingredient in the container
      *
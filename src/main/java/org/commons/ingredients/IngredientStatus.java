@@ -0,0 +1,37 @@
+package org.commons.ingredients;
+
+/**
+ * outcome of checking or retrieving an amount of ingredient from an
+ * @{@link IngredientContainer} without throwing.
+ *
+ */
+public enum IngredientStatus {
+    /**
+     * container holds at least the requested amount
+     */
+    AVAILABLE,
+    /**
+     * container is empty
+     */
+    NOT_PRESENT,
+    /**
+     * container holds some ingredient but less than the requested amount
+     */
+    NOT_SUFFICIENT;
+
+    /**
+     * status of requesting amount from a container holding quantity,
+     * same rule @{@link IngredientContainer#check(int)} applies.
+     *
+     * @param quantity of ingredient in the container
+     * @param amount of ingredient requested
+     * @return status of the request
+     */
+    public static IngredientStatus of(int quantity, int amount) {
+        if (quantity == 0)
+            return NOT_PRESENT;
+        if (quantity < amount)
+            return NOT_SUFFICIENT;
+        return AVAILABLE;
+    }
+}
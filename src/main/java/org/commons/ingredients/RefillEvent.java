@@ -0,0 +1,37 @@
+package org.commons.ingredients;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of a container refill, lasting from the call to
+ * refill until the amount is added, so time spent waiting for the monitor of
+ * a container debited by brewing outlets shows up as a long refill.
+ *
+ * Reservations putting back the debits of a cup they could not brew refill
+ * through the same path and are recorded as well.
+ *
+ * Begun and committed through @{@link ContainerEvents}.
+ *
+ */
+@Name("org.commons.ingredients.Refill")
+@Label("Ingredient Refill")
+@Category({"Beverage Machine"})
+@Description("Refill of an ingredient container")
+@Threshold("1 ms")
+final class RefillEvent extends Event {
+
+    @Label("Ingredient")
+    String ingredient;
+
+    @Label("Amount")
+    int amount;
+
+    @Label("Level")
+    @Description("Quantity in the container after the refill")
+    int level;
+}
@@ -0,0 +1,191 @@
+package org.commons.loadgen;
+
+import org.commons.ingredients.IngredientType;
+import org.commons.machine.BeverageType;
+import org.commons.machine.ChaiPointBeverageMachine;
+import org.commons.machine.DispenseResult;
+import org.commons.machine.OutletMetrics;
+import org.exceptions.IncorrectIngredientTypeException;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Capacity planning tool: builds a @{@link ChaiPointBeverageMachine} from a
+ * @{@link MachineConfig}, drives it with the order stream of a
+ * @{@link LoadProfile} from several customer threads and reports what the
+ * machine made of it in a @{@link LoadReport}. Everything runs in process,
+ * no network or external service is involved.
+ *
+ * Orders are placed open loop: every order has the time it is due at and its
+ * latency is measured from that time, so a machine which cannot keep up with
+ * the arrival rate shows it in the latency percentiles instead of silently
+ * slowing the arrivals down.
+ *
+ *   java -cp beverage-machine.jar:gson.jar org.commons.loadgen.LoadGenerator \
+ *        --config site.json --orders 100000 --rate 2000 --threads 16 \
+ *        --mix hot_coffee=3,ginger_tea=2,green_tea=1 --refill-every 500
+ *
+ */
+public class LoadGenerator {
+
+    private static final String USAGE = "usage: LoadGenerator --config <machine.json>" +
+            " [--orders <count>] [--mix <beverage>=<weight>,...] [--seed <seed>] [--stream <recorded orders>]" +
+            " [--rate <orders per second>] [--threads <count>] [--refill-every <millis>] [--deadline <millis>]";
+
+    private final MachineConfig config;
+    private final LoadProfile profile;
+
+    public LoadGenerator(MachineConfig config, LoadProfile profile) {
+        if (config == null || profile == null)
+            throw new IllegalArgumentException("argument for " + LoadGenerator.class.getSimpleName() +
+                    " construction is not correct.");
+        this.config = config;
+        this.profile = profile;
+    }
+
+    /**
+     * run the whole order stream against a freshly built machine
+     *
+     * @return report of the run
+     * @throws InterruptedException if interrupted while waiting for customers
+     */
+    public LoadReport run() throws InterruptedException {
+        ChaiPointBeverageMachine machine = config.buildChaiPointMachine();
+        LoadReport report = new LoadReport();
+        AtomicInteger next = new AtomicInteger();
+        OutletMetrics.Snapshot outletsAtStart = machine.outletMetrics().snapshot();
+        long start = System.nanoTime();
+
+        Refiller refiller = null;
+        if (profile.refillIntervalNanos() > 0) {
+            refiller = new Refiller(machine, start);
+            refiller.start();
+        }
+
+        Thread[] customers = new Thread[profile.threads()];
+        for (int i = 0; i < customers.length; i++) {
+            customers[i] = new Thread(() -> placeOrders(machine, report, next, start), "customer-" + i);
+            customers[i].start();
+        }
+        for (Thread customer : customers)
+            customer.join();
+        long elapsed = System.nanoTime() - start;
+
+        int refills = 0;
+        if (refiller != null) {
+            refiller.interrupt();
+            refiller.join();
+            refills = refiller.refills;
+        }
+        report.finish(elapsed, refills, outletsAtStart, machine.outletMetrics().snapshot());
+        return report;
+    }
+
+    private void placeOrders(ChaiPointBeverageMachine machine, LoadReport report, AtomicInteger next, long start) {
+        for (int i = next.getAndIncrement(); i < profile.orders().size(); i = next.getAndIncrement()) {
+            long offset = profile.offsetNanos(i);
+            long due = offset < 0 ? System.nanoTime() : start + offset;
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime())
+                LockSupport.parkNanos(wait);
+
+            BeverageType type = profile.orders().get(i).type();
+            DispenseResult result = profile.deadlineNanos() > 0
+                    ? machine.tryDispense(type, profile.deadlineNanos(), TimeUnit.NANOSECONDS)
+                    : machine.dispenseResult(type);
+            report.record(result, System.nanoTime() - due);
+        }
+    }
+
+    /**
+     * operator refilling every container to its initial level on schedule
+     */
+    private class Refiller extends Thread {
+        private final ChaiPointBeverageMachine machine;
+        private final long start;
+        private volatile int refills;
+
+        private Refiller(ChaiPointBeverageMachine machine, long start) {
+            super("refiller");
+            setDaemon(true);
+            this.machine = machine;
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+            long due = start + profile.refillIntervalNanos();
+            while (!isInterrupted()) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    continue;
+                }
+                refill();
+                refills++;
+                due += profile.refillIntervalNanos();
+            }
+        }
+
+        private void refill() {
+            for (Map.Entry<IngredientType, Integer> level : config.initialLevels().entrySet()) {
+                int missing = level.getValue() - machine.ingredientLevel(level.getKey());
+                if (missing <= 0) continue;
+                try {
+                    machine.refillIngredient(level.getKey(), missing);
+                } catch (IncorrectIngredientTypeException iite) {
+                    // every ingredient type is served by the chai point machine
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String configPath = null;
+        LoadProfile.Builder builder = new LoadProfile.Builder();
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 == args.length)
+                    throw new IllegalArgumentException(args[i] + " needs a value");
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--config":        configPath = value;
+                                            break;
+                    case "--orders":        builder.orders(Integer.parseInt(value));
+                                            break;
+                    case "--mix":           for (String weight : value.split(",")) {
+                                                String[] pair = weight.split("=");
+                                                builder.mix(MachineConfig.beverage(pair[0].trim()),
+                                                        pair.length > 1 ? Double.parseDouble(pair[1]) : 1);
+                                            }
+                                            break;
+                    case "--seed":          builder.seed(Long.parseLong(value));
+                                            break;
+                    case "--stream":        builder.recorded(value);
+                                            break;
+                    case "--rate":          builder.arrivalRate(Double.parseDouble(value));
+                                            break;
+                    case "--threads":       builder.threads(Integer.parseInt(value));
+                                            break;
+                    case "--refill-every":  builder.refillEvery(Long.parseLong(value), TimeUnit.MILLISECONDS);
+                                            break;
+                    case "--deadline":      builder.deadline(Long.parseLong(value), TimeUnit.MILLISECONDS);
+                                            break;
+                    default:                throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+            if (configPath == null)
+                throw new IllegalArgumentException("--config is required");
+
+            LoadGenerator generator = new LoadGenerator(MachineConfig.read(configPath), builder.build());
+            generator.run().print(System.out);
+        } catch (IllegalArgumentException iae) {
+            System.err.println(iae.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    }
+}
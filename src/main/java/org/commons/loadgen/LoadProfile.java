@@ -0,0 +1,239 @@
+package org.commons.loadgen;
+
+import org.commons.machine.BeverageType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load driven against a machine by @{@link LoadGenerator}: the order stream, the
+ * rate orders arrive at, the number of customer threads, the refill schedule and
+ * how long customers wait for an outlet.
+ *
+ * The order stream is either synthetic, drawn from a weighted beverage mix with
+ * a fixed seed so that runs can be repeated, or recorded, read from a file with
+ * one order per line: a beverage, optionally preceded by the offset in
+ * milliseconds at which it was placed ("1500 hot_coffee"). Blank lines and lines
+ * starting with # are skipped.
+ *
+ */
+public class LoadProfile {
+
+    private final List<Order> orders;
+    private final double arrivalRate;
+    private final int threads;
+    private final long refillIntervalNanos;
+    private final long deadlineNanos;
+
+    private LoadProfile(List<Order> orders, double arrivalRate, int threads, long refillIntervalNanos,
+                        long deadlineNanos) {
+        this.orders = orders;
+        this.arrivalRate = arrivalRate;
+        this.threads = threads;
+        this.refillIntervalNanos = refillIntervalNanos;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @return orders in the sequence they are placed
+     */
+    public List<Order> orders() {
+        return orders;
+    }
+
+    /**
+     * @return orders placed per second, 0 to place them as fast as threads take them
+     */
+    public double arrivalRate() {
+        return arrivalRate;
+    }
+
+    public int threads() {
+        return threads;
+    }
+
+    /**
+     * @return interval at which every container is refilled to its initial
+     *          level, 0 for never
+     */
+    public long refillIntervalNanos() {
+        return refillIntervalNanos;
+    }
+
+    /**
+     * @return longest time a customer waits for an outlet, 0 to wait as long
+     *          as it takes
+     */
+    public long deadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * @param index of the order in the stream
+     * @return offset from the start of the run at which the order is placed,
+     *          -1 if it is placed as soon as a thread is free
+     */
+    public long offsetNanos(int index) {
+        Order order = orders.get(index);
+        if (order.offsetNanos >= 0)
+            return order.offsetNanos;
+        return arrivalRate > 0 ? (long) (index * TimeUnit.SECONDS.toNanos(1) / arrivalRate) : -1;
+    }
+
+    /**
+     * one order of the stream
+     */
+    public static class Order {
+        private final BeverageType type;
+        private final long offsetNanos;
+
+        Order(BeverageType type, long offsetNanos) {
+            this.type = type;
+            this.offsetNanos = offsetNanos;
+        }
+
+        public BeverageType type() {
+            return type;
+        }
+    }
+
+    public static class Builder {
+        private List<Order> orders;
+        private int count = 1000;
+        private double[] mix;
+        private long seed = 42;
+        private double arrivalRate;
+        private int threads = 1;
+        private long refillIntervalNanos;
+        private long deadlineNanos;
+
+        /**
+         * number of synthetic orders, 1000 by default
+         */
+        public Builder orders(int count) {
+            this.count = count;
+            return this;
+        }
+
+        /**
+         * weight of a beverage in the synthetic stream. Without any weight
+         * every beverage is ordered as often.
+         */
+        public Builder mix(BeverageType type, double weight) {
+            if (type == null || weight < 0)
+                throw new IllegalArgumentException("Illegal argument check[type=" + type + ", weight=" + weight + "]");
+            if (mix == null)
+                mix = new double[BeverageType.values().length];
+            mix[type.ordinal()] = weight;
+            return this;
+        }
+
+        /**
+         * seed of the synthetic stream, 42 by default
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * replay a recorded order stream instead of a synthetic one
+         *
+         * @param path of the recorded stream
+         * @throws IOException if the file cannot be read
+         */
+        public Builder recorded(String path) throws IOException {
+            List<Order> recorded = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] fields = line.split("\\s+");
+                if (fields.length == 1)
+                    recorded.add(new Order(MachineConfig.beverage(fields[0]), -1));
+                else
+                    recorded.add(new Order(MachineConfig.beverage(fields[1]),
+                            TimeUnit.MILLISECONDS.toNanos(Long.parseLong(fields[0]))));
+            }
+            this.orders = recorded;
+            return this;
+        }
+
+        /**
+         * orders placed per second, 0 (default) to place them as fast as the
+         * threads take them. Offsets of a recorded stream take precedence.
+         */
+        public Builder arrivalRate(double arrivalRate) {
+            this.arrivalRate = arrivalRate;
+            return this;
+        }
+
+        /**
+         * number of customer threads placing orders, 1 by default
+         */
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * refill every container to its initial level at this interval,
+         * never by default
+         */
+        public Builder refillEvery(long interval, TimeUnit unit) {
+            this.refillIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * customers give up on an order which gets no outlet within this
+         * deadline, by default they wait as long as it takes
+         */
+        public Builder deadline(long deadline, TimeUnit unit) {
+            this.deadlineNanos = unit.toNanos(deadline);
+            return this;
+        }
+
+        public LoadProfile build() {
+            if (threads <= 0 || arrivalRate < 0 || refillIntervalNanos < 0 || deadlineNanos < 0 ||
+                    (orders == null && count < 0))
+                throw new IllegalArgumentException("argument for " + LoadProfile.class.getSimpleName() +
+                        " construction is not correct.");
+
+            List<Order> stream = orders != null ? orders : synthetic();
+            return new LoadProfile(stream, arrivalRate, threads, refillIntervalNanos, deadlineNanos);
+        }
+
+        private List<Order> synthetic() {
+            double[] weights = mix != null ? mix : uniform();
+            double total = Arrays.stream(weights).sum();
+            if (total <= 0)
+                throw new IllegalArgumentException("beverage mix needs a positive weight");
+
+            BeverageType[] types = BeverageType.values();
+            Random random = new Random(seed);
+            List<Order> stream = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                double pick = random.nextDouble() * total;
+                int type = 0;
+                while (type < types.length - 1 && (pick -= weights[type]) >= 0)
+                    type++;
+                stream.add(new Order(types[type], -1));
+            }
+            return stream;
+        }
+
+        private static double[] uniform() {
+            double[] weights = new double[BeverageType.values().length];
+            Arrays.fill(weights, 1);
+            return weights;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.commons.loadgen;
+
+import org.commons.ingredients.IngredientType;
+import org.commons.machine.BeverageType;
+import org.commons.machine.BrewStatus;
+import org.commons.machine.DispenseResult;
+import org.commons.machine.OutletMetrics;
+import org.commons.metrics.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Outcome of a load run: throughput, latency percentiles of the orders, out of
+ * stock rates per @{@link BeverageType} and per @{@link IngredientType} and the
+ * outlet utilisation over the run.
+ *
+ * Results are recorded from every customer thread without locking and the
+ * report is printed once the run is over.
+ *
+ */
+public class LoadReport {
+
+    private static final BeverageType[] BEVERAGES = BeverageType.values();
+    private static final IngredientType[] INGREDIENTS = IngredientType.values();
+    private static final BrewStatus[] STATUSES = BrewStatus.values();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * orders by beverage ordinal and status ordinal
+     */
+    private final AtomicLongArray results = new AtomicLongArray(BEVERAGES.length * STATUSES.length);
+
+    /**
+     * short orders by beverage ordinal and ingredient ordinal
+     */
+    private final AtomicLongArray shortages = new AtomicLongArray(BEVERAGES.length * INGREDIENTS.length);
+
+    private long elapsedNanos;
+    private int refills;
+    private double utilisation;
+
+    /**
+     * @param result of an order
+     * @param latencyNanos from the moment the order was placed until its result
+     */
+    void record(DispenseResult result, long latencyNanos) {
+        latency.record(latencyNanos);
+        int beverage = result.beverage().ordinal();
+        results.incrementAndGet(beverage * STATUSES.length + result.status().ordinal());
+        if (result.ingredient() != null)
+            shortages.incrementAndGet(beverage * INGREDIENTS.length + result.ingredient().ordinal());
+    }
+
+    void finish(long elapsedNanos, int refills, OutletMetrics.Snapshot start, OutletMetrics.Snapshot end) {
+        this.elapsedNanos = elapsedNanos;
+        this.refills = refills;
+        this.utilisation = end.utilisationSince(start);
+    }
+
+    /**
+     * @return number of orders placed whatever their result: prepared, out of
+     *          stock, not admitted or without an outlet
+     */
+    public long orders() {
+        return latency.snapshot().count();
+    }
+
+    /**
+     * @return number of cups prepared
+     */
+    public long prepared() {
+        long prepared = 0;
+        for (BeverageType type : BEVERAGES)
+            prepared += count(type, BrewStatus.PREPARED);
+        return prepared;
+    }
+
+    /**
+     * @param type ordered
+     * @param status result
+     * @return number of orders of type with this result
+     */
+    public long count(BeverageType type, BrewStatus status) {
+        return results.get(type.ordinal() * STATUSES.length + status.ordinal());
+    }
+
+    /**
+     * @param type ordered
+     * @return number of orders of type whatever their result
+     */
+    public long count(BeverageType type) {
+        long count = 0;
+        for (BrewStatus status : STATUSES)
+            count += count(type, status);
+        return count;
+    }
+
+    /**
+     * @param ingredient which was short
+     * @return number of orders refused because the ingredient was short
+     */
+    public long shortages(IngredientType ingredient) {
+        long count = 0;
+        for (BeverageType type : BEVERAGES)
+            count += shortages.get(type.ordinal() * INGREDIENTS.length + ingredient.ordinal());
+        return count;
+    }
+
+    /**
+     * @return orders per second over the run whatever their result, see
+     *          @{@link #preparedThroughput()} for the cups prepared
+     */
+    public double throughput() {
+        return perSecond(orders());
+    }
+
+    /**
+     * @return cups prepared per second over the run
+     */
+    public double preparedThroughput() {
+        return perSecond(prepared());
+    }
+
+    private double perSecond(long count) {
+        return elapsedNanos == 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * @return latency of the orders, measured from the moment each order was due
+     *          so a machine falling behind the arrival rate shows up in the tail
+     */
+    public LatencyHistogram.Snapshot latency() {
+        return latency.snapshot();
+    }
+
+    /**
+     * @return share of outlet time busy over the run, between 0 and 1
+     */
+    public double utilisation() {
+        return utilisation;
+    }
+
+    public void print(PrintStream out) {
+        LatencyHistogram.Snapshot latency = latency();
+        out.printf("orders            %d in %.3f s, %d refills%n", latency.count(),
+                elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1), refills);
+        out.printf("throughput        %.1f orders/s whatever their result, %.1f cups/s prepared%n",
+                throughput(), preparedThroughput());
+        out.printf("latency (us)      p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                micros(latency.percentile(50)), micros(latency.percentile(90)), micros(latency.percentile(99)),
+                micros(latency.percentile(99.9)), micros(latency.max()));
+        out.printf("utilisation       %.1f%%%n", utilisation * 100);
+
+        out.println();
+        out.printf("%-12s %8s %9s %13s %14s %12s%n", "beverage", "orders", "prepared", "out of stock",
+                "out of stock %", "no outlet");
+        for (BeverageType type : BEVERAGES) {
+            long orders = count(type);
+            if (orders == 0) continue;
+            long outOfStock = count(type, BrewStatus.INGREDIENT_NOT_AVAILABLE) +
+                    count(type, BrewStatus.INGREDIENT_NOT_SUFFICIENT);
+            out.printf("%-12s %8d %9d %13d %13.1f%% %12d%n", type.getFieldDescriptor(), orders,
+                    count(type, BrewStatus.PREPARED), outOfStock, 100.0 * outOfStock / orders,
+                    count(type, BrewStatus.OUTLET_UNAVAILABLE));
+        }
+
+        out.println();
+        out.printf("%-17s %13s %14s%n", "ingredient", "out of stock", "out of stock %");
+        for (IngredientType ingredient : INGREDIENTS) {
+            long shortages = shortages(ingredient);
+            if (shortages == 0) continue;
+            out.printf("%-17s %13d %13.1f%%%n", ingredient.getFieldDescriptor(), shortages,
+                    100.0 * shortages / Math.max(1, latency.count()));
+        }
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
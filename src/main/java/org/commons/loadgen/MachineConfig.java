@@ -0,0 +1,269 @@
+package org.commons.loadgen;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.commons.ingredients.ConcreteIngredientContainer;
+import org.commons.ingredients.IngredientContainer;
+import org.commons.ingredients.IngredientType;
+import org.commons.machine.BeverageComposition;
+import org.commons.machine.BeverageType;
+import org.commons.machine.BrewPipeline;
+import org.commons.machine.BrewTimes;
+import org.commons.machine.ChaiPointBeverageMachine;
+import org.commons.machine.CoffeeMachine;
+import org.commons.machine.ElaichiTeaMachine;
+import org.commons.machine.GingerTeaMachine;
+import org.commons.machine.GreenTeaMachine;
+import org.commons.machine.HotMilkMachine;
+import org.commons.machine.HotWaterMachine;
+import org.commons.machine.OutletPolicy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Configuration of a chai point machine read from json, in the same shape as
+ * src/test/resources/input_test.json:
+ *
+ * <pre>
+ * { "machine": {
+ *     "outlets": { "count_n": 3 },
+ *     "total_items_quantity": { "hot_water": 500, "hot_milk": 500, ... },
+ *     "beverages": { "ginger_tea": { "hot_water": 200, ... }, ... } } }
+ * </pre>
+ *
+ * Ingredients are named by their @{@link IngredientType} field descriptor,
+ * water and milk may also be named hot_water and hot_milk.
+ *
+ */
+public class MachineConfig {
+
+    private final int outlet;
+    private final Map<IngredientType, Integer> initialLevels;
+    private final Map<BeverageType, BeverageComposition> recipes;
+
+    private MachineConfig(int outlet, Map<IngredientType, Integer> initialLevels,
+                          Map<BeverageType, BeverageComposition> recipes) {
+        this.outlet = outlet;
+        this.initialLevels = initialLevels;
+        this.recipes = recipes;
+    }
+
+    /**
+     * @param path of the json configuration
+     * @return parsed configuration
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the configuration is not valid
+     */
+    public static MachineConfig read(String path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * @param reader of the json configuration
+     * @return parsed configuration
+     * @throws IllegalArgumentException if the configuration is not valid
+     */
+    public static MachineConfig read(Reader reader) {
+        Json json;
+        try {
+            json = new Gson().fromJson(reader, Json.class);
+        } catch (JsonParseException jpe) {
+            throw new IllegalArgumentException("machine configuration is not valid json", jpe);
+        }
+        if (json == null || json.machine == null || json.machine.outlets == null ||
+                json.machine.total_items_quantity == null || json.machine.beverages == null)
+            throw new IllegalArgumentException("machine configuration needs outlets, total_items_quantity " +
+                    "and beverages");
+
+        Map<IngredientType, Integer> initialLevels = new EnumMap<>(IngredientType.class);
+        for (IngredientType type : IngredientType.values())
+            initialLevels.put(type, 0);
+        for (Map.Entry<String, Integer> item : json.machine.total_items_quantity.entrySet())
+            initialLevels.put(ingredient(item.getKey()), item.getValue());
+
+        Map<BeverageType, BeverageComposition> recipes = new EnumMap<>(BeverageType.class);
+        for (Map.Entry<String, Map<String, Integer>> beverage : json.machine.beverages.entrySet()) {
+            BeverageComposition recipe = new BeverageComposition();
+            for (Map.Entry<String, Integer> item : beverage.getValue().entrySet())
+                recipe.put(ingredient(item.getKey()), item.getValue());
+            recipes.put(beverage(beverage.getKey()), recipe.freeze());
+        }
+
+        return new MachineConfig(json.machine.outlets.count_n, Collections.unmodifiableMap(initialLevels),
+                Collections.unmodifiableMap(recipes));
+    }
+
+    /**
+     * @param name field descriptor of a beverage, e.g. hot_coffee
+     * @return beverage type
+     */
+    public static BeverageType beverage(String name) {
+        for (BeverageType type : BeverageType.values()) {
+            if (type.getFieldDescriptor().equals(name))
+                return type;
+        }
+        throw new IllegalArgumentException("unknown beverage " + name);
+    }
+
+    /**
+     * @param name field descriptor of an ingredient, hot_water and hot_milk
+     *             stand for water and milk
+     * @return ingredient type
+     */
+    public static IngredientType ingredient(String name) {
+        if ("hot_water".equals(name))
+            return IngredientType.WATER;
+        if ("hot_milk".equals(name))
+            return IngredientType.MILK;
+        for (IngredientType type : IngredientType.values()) {
+            if (type.getFieldDescriptor().equals(name))
+                return type;
+        }
+        throw new IllegalArgumentException("unknown ingredient " + name);
+    }
+
+    public int outlet() {
+        return outlet;
+    }
+
+    /**
+     * @return quantity of every ingredient the machine is filled with, 0 for
+     *          ingredients missing from the configuration
+     */
+    public Map<IngredientType, Integer> initialLevels() {
+        return initialLevels;
+    }
+
+    /**
+     * @return frozen recipe of every configured beverage
+     */
+    public Map<BeverageType, BeverageComposition> recipes() {
+        return recipes;
+    }
+
+    /**
+     * build a chai point machine filled to the initial levels. Every beverage
+     * needs a recipe.
+     *
+     * @return new machine with its own containers
+     */
+    public ChaiPointBeverageMachine buildChaiPointMachine() {
+        return buildChaiPointMachine(outlet, null);
+    }
+
+    /**
+     * build a chai point machine filled to the initial levels with another
+     * number of outlets, to compare sizes of the same site
+     *
+     * @param outlet number of outlets of the machine
+     * @param brewTimes time prepared cups keep their outlet, null for instant brewing
+     * @return new machine with its own containers
+     */
+    public ChaiPointBeverageMachine buildChaiPointMachine(int outlet, BrewTimes brewTimes) {
+        return buildChaiPointMachine(outlet, brewTimes, OutletPolicy.fifo());
+    }
+
+    /**
+     * build a chai point machine filled to the initial levels with another
+     * number of outlets and outlet policy, to compare setups of the same site
+     *
+     * @param outlet number of outlets of the machine
+     * @param brewTimes time prepared cups keep their outlet, null for instant brewing
+     * @param outletPolicy order in which waiting orders get an outlet
+     * @return new machine with its own containers
+     */
+    public ChaiPointBeverageMachine buildChaiPointMachine(int outlet, BrewTimes brewTimes,
+                                                          OutletPolicy outletPolicy) {
+        return buildChaiPointMachine(outlet, brewTimes, outletPolicy, null);
+    }
+
+    /**
+     * build a chai point machine filled to the initial levels with another
+     * number of outlets, outlet policy and brewing stages, to compare setups
+     * of the same site
+     *
+     * @param outlet number of outlets of the machine
+     * @param brewTimes time prepared cups keep their outlet, null for instant brewing
+     * @param outletPolicy order in which waiting orders get an outlet
+     * @param pipeline stages cups go through before they queue for an outlet,
+     *                 null to brew them entirely on their outlet
+     * @return new machine with its own containers
+     */
+    public ChaiPointBeverageMachine buildChaiPointMachine(int outlet, BrewTimes brewTimes,
+                                                          OutletPolicy outletPolicy, BrewPipeline pipeline) {
+        for (BeverageType type : BeverageType.values()) {
+            if (!recipes.containsKey(type))
+                throw new IllegalArgumentException("machine configuration has no recipe for " +
+                        type.getFieldDescriptor());
+        }
+
+        Map<IngredientType, IngredientContainer> containers = new EnumMap<>(IngredientType.class);
+        for (Map.Entry<IngredientType, Integer> level : initialLevels.entrySet())
+            containers.put(level.getKey(), new ConcreteIngredientContainer(level.getKey(), level.getValue()));
+
+        return new ChaiPointBeverageMachine.Builder()
+                .outlet(outlet)
+                .addMachine(new HotWaterMachine.Builder().outlet(outlet)
+                        .waterContainer(containers.get(IngredientType.WATER))
+                        .beverageRecipe(recipes.get(BeverageType.HOT_WATER)).build())
+                .addMachine(new HotMilkMachine.Builder().outlet(outlet)
+                        .milkContainer(containers.get(IngredientType.MILK))
+                        .beverageRecipe(recipes.get(BeverageType.HOT_MILK)).build())
+                .addMachine(new GreenTeaMachine.Builder().outlet(outlet)
+                        .addIngredientContainer(containers.get(IngredientType.WATER))
+                        .addIngredientContainer(containers.get(IngredientType.GREEN_MIXTURE))
+                        .addIngredientContainer(containers.get(IngredientType.GINGER_SYRUP))
+                        .addIngredientContainer(containers.get(IngredientType.SUGAR_SYRUP))
+                        .addRecipe(recipes.get(BeverageType.GREEN_TEA)).build())
+                .addMachine(new GingerTeaMachine.Builder().outlet(outlet)
+                        .addIngredientContainer(containers.get(IngredientType.WATER))
+                        .addIngredientContainer(containers.get(IngredientType.MILK))
+                        .addIngredientContainer(containers.get(IngredientType.TEA_LEAVES_SYRUP))
+                        .addIngredientContainer(containers.get(IngredientType.GINGER_SYRUP))
+                        .addIngredientContainer(containers.get(IngredientType.SUGAR_SYRUP))
+                        .addRecipe(recipes.get(BeverageType.GINGER_TEA)).build())
+                .addMachine(new ElaichiTeaMachine.Builder().outlet(outlet)
+                        .addIngredientContainer(containers.get(IngredientType.WATER))
+                        .addIngredientContainer(containers.get(IngredientType.MILK))
+                        .addIngredientContainer(containers.get(IngredientType.TEA_LEAVES_SYRUP))
+                        .addIngredientContainer(containers.get(IngredientType.ELAICHI_SYRUP))
+                        .addIngredientContainer(containers.get(IngredientType.SUGAR_SYRUP))
+                        .addRecipe(recipes.get(BeverageType.ELAICHI_TEA)).build())
+                .addMachine(new CoffeeMachine.Builder().outlet(outlet)
+                        .addIngredientContainer(containers.get(IngredientType.WATER))
+                        .addIngredientContainer(containers.get(IngredientType.MILK))
+                        .addIngredientContainer(containers.get(IngredientType.COFFEE_SYRUP))
+                        .addIngredientContainer(containers.get(IngredientType.SUGAR_SYRUP))
+                        .addRecipe(recipes.get(BeverageType.HOT_COFFEE)).build())
+                .brewTimes(brewTimes)
+                .outletPolicy(outletPolicy)
+                .pipeline(pipeline)
+                .build();
+    }
+
+    /**
+     * json shape of the configuration
+     */
+    private static class Json {
+        private Machine machine;
+
+        private static class Machine {
+            private Outlets outlets;
+            private Map<String, Integer> total_items_quantity;
+            private Map<String, Map<String, Integer>> beverages;
+        }
+
+        private static class Outlets {
+            private int count_n;
+        }
+    }
+}
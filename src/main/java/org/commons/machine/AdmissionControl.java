@@ -0,0 +1,92 @@
+package org.commons.machine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @{@link AdmissionPolicy} compiled for one machine: per beverage, its recipe
+ * reservation guarded by the floors the policy holds back for other
+ * beverages, and its rate limiter.
+ *
+ * Rate limits follow the generic cell rate algorithm: a single theoretical
+ * arrival time per beverage, pushed one interval further by every cup let
+ * through. A cup is let through unless that time is more than a burst ahead
+ * of now, so checking and taking a slot is one compare-and-set. A cup whose
+ * ingredients turn out to be missing gives its slot back, running out of
+ * milk does not use up the coffees of the hour.
+ *
+ */
+final class AdmissionControl {
+
+    private final IngredientReservation[] plans;
+    private final RateLimit[] limits;
+
+    AdmissionControl(AdmissionPolicy policy, BaseBeverageMachine machine) {
+        BeverageType[] types = BeverageType.values();
+        plans = new IngredientReservation[types.length];
+        limits = new RateLimit[types.length];
+        for (BeverageType type : types) {
+            IngredientReservation plan = machine.admissionPlan(type);
+            if (plan != null)
+                plans[type.ordinal()] = plan.withFloors(policy.floors(type, machine));
+            if (policy.intervalNanos(type) > 0)
+                limits[type.ordinal()] = new RateLimit(policy.intervalNanos(type), policy.burst(type));
+        }
+    }
+
+    /**
+     * brew type on machine if the policy admits it
+     *
+     * @param now time of the order on the clock of the rate limits
+     * @return outcome of the brew, @{@link BrewStatus#NOT_ADMITTED} if refused
+     */
+    BrewOutcome tryBrew(BaseBeverageMachine machine, BeverageType type, long now) {
+        if (type == null)
+            return machine.tryBrew(null);
+
+        RateLimit limit = limits[type.ordinal()];
+        if (limit != null && !limit.tryAcquire(now))
+            return BrewOutcome.RATE_LIMITED;
+        IngredientReservation plan = plans[type.ordinal()];
+        BrewOutcome outcome = plan == null ? machine.tryBrew(type) : plan.tryReserve();
+        if (limit != null && !outcome.isPrepared())
+            limit.release();
+        return outcome;
+    }
+
+    /**
+     * @return guarded reservation of type several cups can be reserved with at
+     *          once, null if type has no reservation or is rate limited cup by cup
+     */
+    IngredientReservation coalescablePlan(BeverageType type) {
+        return limits[type.ordinal()] != null ? null : plans[type.ordinal()];
+    }
+
+    private static final class RateLimit {
+        private final long interval;
+        private final long tolerance;
+        private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE / 2);
+
+        private RateLimit(long interval, int burst) {
+            this.interval = interval;
+            this.tolerance = interval * (burst - 1);
+        }
+
+        private boolean tryAcquire(long now) {
+            while (true) {
+                long arrival = theoreticalArrival.get();
+                long start = Math.max(arrival, now);
+                if (start - now > tolerance)
+                    return false;
+                if (theoreticalArrival.compareAndSet(arrival, start + interval))
+                    return true;
+            }
+        }
+
+        /**
+         * give back a slot taken by a cup which was not brewed
+         */
+        private void release() {
+            theoreticalArrival.addAndGet(-interval);
+        }
+    }
+}
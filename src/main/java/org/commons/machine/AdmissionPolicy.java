@@ -0,0 +1,173 @@
+package org.commons.machine;
+
+import org.commons.ingredients.IngredientType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission rules of a machine sharing ingredients between beverages, so that
+ * a run on one beverage does not drain an ingredient every other beverage
+ * needs and the containers serve more cups over a shift than first come first
+ * served would.
+ *
+ *   reserve         units of an ingredient held back for a beverage, other
+ *                   beverages cannot take the ingredient below them
+ *   keepMakeable    every other beverage is refused an ingredient whenever
+ *                   taking it would leave fewer than k cups of a beverage
+ *                   makeable
+ *   rateLimit       at most n cups of a beverage per period, in bursts of
+ *                   at most n cups
+ *
+ * Reserves and guards held back for the same ingredient add up. A policy is a
+ * description which can be shared by machines: each machine compiles it at
+ * build time against its own recipes into one floor per container of every
+ * recipe and a rate limiter per beverage, so admitting an order costs a
+ * comparison per ingredient under the monitors the brew takes anyway and a
+ * single compare-and-set for a rate limit.
+ *
+ */
+public final class AdmissionPolicy {
+
+    private final List<Reserve> reserves;
+    private final List<Guard> guards;
+    private final long[] intervalNanos;
+    private final int[] bursts;
+
+    private AdmissionPolicy(List<Reserve> reserves, List<Guard> guards, long[] intervalNanos, int[] bursts) {
+        this.reserves = reserves;
+        this.guards = guards;
+        this.intervalNanos = intervalNanos;
+        this.bursts = bursts;
+    }
+
+    /**
+     * level of every ingredient a beverage must leave in its container
+     *
+     * @param type ordered beverage
+     * @param machine whose recipes the keepMakeable guards are computed with
+     * @return floors by @{@link IngredientType} ordinal
+     */
+    int[] floors(BeverageType type, BaseBeverageMachine machine) {
+        int[] floors = new int[IngredientType.values().length];
+        for (Reserve reserve : reserves) {
+            if (reserve.type != type)
+                floors[reserve.ingredient.ordinal()] += reserve.amount;
+        }
+        for (Guard guard : guards) {
+            if (guard.type == type) continue;
+
+            IngredientReservation recipe = machine.admissionPlan(guard.type);
+            if (recipe == null)
+                throw new IllegalArgumentException("machine does not serve " + guard.type.getFieldDescriptor() +
+                        " kept makeable by its admission policy");
+            for (int i = 0; i < recipe.size(); i++)
+                floors[recipe.container(i).type().ordinal()] += guard.cups * recipe.amount(i);
+        }
+        return floors;
+    }
+
+    /**
+     * @return time between two cups of type at its sustained rate, 0 if unlimited
+     */
+    long intervalNanos(BeverageType type) {
+        return intervalNanos[type.ordinal()];
+    }
+
+    /**
+     * @return cups of type which can be served back to back
+     */
+    int burst(BeverageType type) {
+        return bursts[type.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        return "AdmissionPolicy{reserves=" + reserves + ", keepMakeable=" + guards + "}";
+    }
+
+    private static final class Reserve {
+        private final BeverageType type;
+        private final IngredientType ingredient;
+        private final int amount;
+
+        private Reserve(BeverageType type, IngredientType ingredient, int amount) {
+            this.type = type;
+            this.ingredient = ingredient;
+            this.amount = amount;
+        }
+
+        @Override
+        public String toString() {
+            return amount + " " + ingredient.getFieldDescriptor() + " for " + type.getFieldDescriptor();
+        }
+    }
+
+    private static final class Guard {
+        private final BeverageType type;
+        private final int cups;
+
+        private Guard(BeverageType type, int cups) {
+            this.type = type;
+            this.cups = cups;
+        }
+
+        @Override
+        public String toString() {
+            return cups + " " + type.getFieldDescriptor();
+        }
+    }
+
+    /**
+     * Builder of an admission policy, every rule is optional
+     */
+    public static class Builder {
+        private final List<Reserve> reserves = new ArrayList<>();
+        private final List<Guard> guards = new ArrayList<>();
+        private final long[] intervalNanos = new long[BeverageType.values().length];
+        private final int[] bursts = new int[BeverageType.values().length];
+
+        /**
+         * hold amount units of ingredient back for type, other beverages
+         * cannot take the ingredient below them
+         */
+        public Builder reserve(BeverageType type, IngredientType ingredient, int amount) {
+            if (type == null || ingredient == null || amount < 0)
+                throw new IllegalArgumentException("Illegal argument check[type=" + type + ", ingredient=" +
+                        ingredient + ", amount=" + amount + "]");
+            reserves.add(new Reserve(type, ingredient, amount));
+            return this;
+        }
+
+        /**
+         * refuse other beverages any ingredient they would leave short of
+         * cups cups of type
+         */
+        public Builder keepMakeable(BeverageType type, int cups) {
+            if (type == null || cups < 0)
+                throw new IllegalArgumentException("Illegal argument check[type=" + type + ", cups=" + cups + "]");
+            guards.add(new Guard(type, cups));
+            return this;
+        }
+
+        /**
+         * serve at most cups cups of type per period, replacing any rate
+         * limit of type set before
+         */
+        public Builder rateLimit(BeverageType type, int cups, long period, TimeUnit unit) {
+            if (type == null || cups <= 0 || period <= 0 || unit == null)
+                throw new IllegalArgumentException("Illegal argument check[type=" + type + ", cups=" + cups +
+                        ", period=" + period + "]");
+            intervalNanos[type.ordinal()] = Math.max(1, unit.toNanos(period) / cups);
+            bursts[type.ordinal()] = cups;
+            return this;
+        }
+
+        public AdmissionPolicy build() {
+            return new AdmissionPolicy(Collections.unmodifiableList(new ArrayList<>(reserves)),
+                    Collections.unmodifiableList(new ArrayList<>(guards)), intervalNanos.clone(), bursts.clone());
+        }
+    }
+}
@@ -4,7 +4,16 @@ import org.exceptions.BeverageTypeNotSupportedException;
 import org.exceptions.RequestedQuantityNotPresentException;
 import org.exceptions.RequestedQuantityNotSufficientException;
 
-import java.util.concurrent.Semaphore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -27,17 +36,104 @@ import java.util.concurrent.Semaphore;
  * The concrete will brew a beverage and serve beverage to N people in
  * parallel.
  *
+ * Orders can also be placed without blocking the caller through
+ * @{@link #dispenseAsync(BeverageType)}. Such orders wait for an outlet in a
+ * queue and are handed to an executor only once an outlet is free.
+ *
+ * Blocked callers and asynchronous orders wait in one queue, served first
+ * come first served unless the machine was built with another
+ * @{@link OutletPolicy}.
+ *
+ * @{@link #dispenseResult(BeverageType)} reports the outcome of an order as a
+ * @{@link DispenseResult}, dispense is a thin adapter returning its message.
+ * @{@link #tryDispense(BeverageType, long, TimeUnit)} bounds the wait for an
+ * outlet and turns orders away early when the queue cannot drain in time.
+ *
+ * Brewing is instant unless the machine was built with @{@link BrewTimes}, a
+ * prepared cup then keeps its outlet for the brew time of its beverage.
+ *
+ * A machine built with an @{@link AdmissionPolicy} refuses orders which would
+ * take an ingredient held back for other beverages or exceed the rate limit of
+ * their beverage, see @{@link #tryBrewAdmitted(BeverageType, long)}.
+ *
+ * A machine built with a coalescing window brews orders of the same beverage
+ * reaching their outlets within the window together, see
+ * @{@link OrderCoalescer}.
+ *
+ * A machine built with a @{@link BrewPipeline} draws the ingredients of an
+ * order as it enters the pipeline, sends the cup through the brewing stages
+ * and only then queues it for an outlet, where it is mixed and poured. The
+ * outlets mix some cups while the stages heat the next ones.
+ *
+ * Orders and brews emit @{@link DispenseEvent} and @{@link BrewEvent} flight
+ * recorder events above their configured threshold. While no recording is
+ * running no event object is even allocated.
+ *
  */
 public abstract class BaseBeverageMachine implements BeverageMachine{
 
-    private Semaphore semaphore;
+    private static final long NO_DEADLINE = -1;
+
+    /**
+     * outlets handed out to waiting orders, replaced by builders offering a
+     * policy before the machine is published
+     */
+    private OutletScheduler outlets;
+
+    /**
+     * number of outlets of the machine
+     */
+    private final int outlet;
+
+    /**
+     * results of ordering beverages this machine does not serve, by beverage
+     * ordinal and a last slot for null. Built on first use, a race only builds
+     * an equal result twice.
+     */
+    private final DispenseResult[] notSupported = new DispenseResult[BeverageType.values().length + 1];
+
+    /**
+     * per beverage counters and histograms of every order
+     */
+    private final MachineMetrics metrics = new MachineMetrics();
+
+    /**
+     * queue length, acquire time and utilisation of the outlets
+     */
+    private final OutletMetrics outletMetrics;
+
+    /**
+     * time a prepared cup keeps its outlet, null when brewing is instant.
+     * Set by the builders of the machines offering it.
+     */
+    BrewTimes brewTimes;
+
+    /**
+     * admission policy compiled for this machine, null when every order is
+     * brewed if the ingredients are there
+     */
+    private AdmissionControl admission;
+
+    /**
+     * groups orders of the same beverage reaching their outlets together,
+     * null when every order is brewed on its own
+     */
+    private OrderCoalescer coalescer;
+
+    /**
+     * stages a cup goes through before it queues for an outlet, null when a
+     * cup does all of its brewing on its outlet
+     */
+    private BrewPipeline pipeline;
 
     public BaseBeverageMachine(int outlet) {
         if (outlet <= 0) {
             throw new IllegalArgumentException("number of outlets cannot be negative or zero in beverage machine");
         }
 
-        semaphore = new Semaphore(outlet, true);
+        this.outlet = outlet;
+        outlets = new OutletScheduler(outlet, OutletPolicy.fifo());
+        outletMetrics = new OutletMetrics(outlet);
     }
 
     /**
@@ -51,24 +147,627 @@ public abstract class BaseBeverageMachine implements BeverageMachine{
      */
     @Override
     public String dispense(BeverageType type) {
-        StringBuilder dispenserResult = new StringBuilder();
+        return dispenseResult(type).message();
+    }
+
+    /**
+     * Dispenses a beverage like @{@link #dispense(BeverageType)} but reports the
+     * result as a @{@link DispenseResult}. No message is formatted unless the
+     * caller asks the result for it.
+     *
+     * @param type is one of the BeverageType beverage
+     * @return result of dispensing type
+     */
+    public DispenseResult dispenseResult(BeverageType type) {
+        return dispenseResult(type, OutletPolicy.UNSPECIFIED);
+    }
+
+    /**
+     * Dispenses a beverage like @{@link #dispenseResult(BeverageType)} in an
+     * explicit priority class, honoured by the
+     * @{@link OutletPolicy#priorityClasses(java.util.Map)} policy.
+     *
+     * @param type is one of the BeverageType beverage
+     * @param priorityClass of the order, 0 or more, 0 is served first
+     * @return result of dispensing type
+     */
+    public DispenseResult dispenseResult(BeverageType type, int priorityClass) {
+        if (priorityClass < 0 && priorityClass != OutletPolicy.UNSPECIFIED)
+            throw new IllegalArgumentException("priority class cannot be negative");
+        return dispenseWithin(type, priorityClass, NO_DEADLINE);
+    }
+
+    /**
+     * Dispenses a beverage like @{@link #dispenseResult(BeverageType)}, giving up
+     * if no outlet is free within timeout. The deadline bounds the wait for an
+     * outlet, a cup which got one is brewed to the end.
+     *
+     * On a machine with a @{@link BrewPipeline} the deadline bounds the wait
+     * for the cup to go through the stages and for an outlet together, the
+     * outlet is only waited for as long as the stages left of the timeout.
+     * The ingredients of the order were drawn as it entered the pipeline, a
+     * cup which is not out of the stages or gets no outlet in time is not
+     * poured, its ingredients are lost and it is counted in
+     * @{@link MachineMetrics.BeverageMetrics#lost()}.
+     *
+     * An order is turned away at once, without waiting, when the orders already
+     * waiting could not all get an outlet within timeout even if the outlets
+     * were released right now: each outlet would have to serve more orders
+     * than fit in timeout at the mean time an outlet is held so far. On a
+     * machine with a @{@link BrewPipeline} the cups queued in front of the
+     * stages the order goes through count too, each stage serving as many at
+     * once as its capacity at its mean time.
+     *
+     * @param type is one of the BeverageType beverage
+     * @param timeout longest wait for an outlet, and for the brewing stages
+     *                before it if any
+     * @param unit of timeout
+     * @return result of dispensing type, @{@link BrewStatus#OUTLET_UNAVAILABLE}
+     *          if no outlet was free in time
+     */
+    public DispenseResult tryDispense(BeverageType type, long timeout, TimeUnit unit) {
+        if (timeout < 0 || unit == null)
+            throw new IllegalArgumentException("timeout cannot be negative");
+
+        long timeoutNanos = unit.toNanos(timeout);
+        if (cannotServeWithin(type, timeoutNanos)) {
+            outletMetrics.shed();
+            metrics.recordResult(type, BrewStatus.OUTLET_UNAVAILABLE);
+            return DispenseResult.outletUnavailable(type);
+        }
+        return dispenseWithin(type, OutletPolicy.UNSPECIFIED, timeoutNanos);
+    }
+
+    /**
+     * true if the cups queued in front of the stages type goes through and the
+     * orders waiting for an outlet cannot drain within timeoutNanos, going by
+     * the mean time of each stage and the mean time an outlet was held. Every
+     * outlet and stage is assumed to be released right now, so only the orders
+     * beyond one per outlet or unit of a stage count.
+     */
+    private boolean cannotServeWithin(BeverageType type, long timeoutNanos) {
+        long backlog = pipeline == null ? 0 : pipeline.backlogNanos(type);
+        long hold = outletMetrics.meanHoldNanos();
+        if (hold > 0)
+            backlog += outletMetrics.queueLength() / outlet * hold;
+        return backlog > timeoutNanos;
+    }
+
+    /**
+     * dispense type once an outlet is free, waiting at most timeoutNanos unless
+     * it is @{@link #NO_DEADLINE}. With a pipeline the caller waits for the cup
+     * to go through the stages before it queues for an outlet itself, for the
+     * time left of timeoutNanos.
+     */
+    private DispenseResult dispenseWithin(BeverageType type, int priorityClass, long timeoutNanos) {
+        if (pipeline == null)
+            return dispenseAtOutlet(type, priorityClass, timeoutNanos, null);
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        BrewOutcome drawn = drawIngredients(type, System.nanoTime(), false);
+        if (!drawn.isPrepared()) {
+            metrics.recordResult(type, drawn.status());
+            return result(type, drawn);
+        }
+        CountDownLatch brewed = new CountDownLatch(1);
+        pipeline.brew(type, brewed::countDown);
+        try {
+            if (timeoutNanos == NO_DEADLINE) {
+                brewed.await();
+            } else if (!brewed.await(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                metrics.recordLost(type);
+                metrics.recordResult(type, BrewStatus.OUTLET_UNAVAILABLE);
+                return DispenseResult.outletUnavailable(type);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            metrics.recordLost(type);
+            metrics.recordResult(type, BrewStatus.FAILED);
+            return DispenseResult.failed(type, "outlet wait was interrupted");
+        }
+        long remaining = timeoutNanos == NO_DEADLINE ? NO_DEADLINE : Math.max(0, deadline - System.nanoTime());
+        return dispenseAtOutlet(type, priorityClass, remaining, drawn);
+    }
+
+    /**
+     * dispense type on the calling thread once an outlet is free, waiting at
+     * most timeoutNanos unless it is @{@link #NO_DEADLINE}
+     *
+     * @param drawn outcome of the ingredients drawn as the order entered the
+     *              brewing pipeline, null to draw them on the outlet
+     */
+    private DispenseResult dispenseAtOutlet(BeverageType type, int priorityClass, long timeoutNanos,
+                                            BrewOutcome drawn) {
+        DispenseEvent event = MachineEvents.startDispense();
+        long ordered = System.nanoTime();
+        outletMetrics.waiting();
+        try {
+            if (timeoutNanos == NO_DEADLINE) {
+                outlets.acquire(type, priorityClass);
+            } else if (!outlets.acquire(type, priorityClass, timeoutNanos)) {
+                outletMetrics.abandoned();
+                if (drawn != null)
+                    metrics.recordLost(type);
+                long waited = System.nanoTime() - ordered;
+                metrics.recordOutletWait(type, waited);
+                metrics.recordResult(type, BrewStatus.OUTLET_UNAVAILABLE);
+                DispenseResult result = DispenseResult.outletUnavailable(type);
+                MachineEvents.finishDispense(event, this, result, waited, false);
+                return result;
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            outletMetrics.abandoned();
+            if (drawn != null)
+                metrics.recordLost(type);
+            long waited = System.nanoTime() - ordered;
+            metrics.recordOutletWait(type, waited);
+            metrics.recordResult(type, BrewStatus.FAILED);
+            DispenseResult result = DispenseResult.failed(type, "outlet wait was interrupted");
+            MachineEvents.finishDispense(event, this, result, waited, false);
+            return result;
+        }
+
+        long acquired = outletAcquired(ordered);
+        DispenseResult result;
+        try {
+            result = brewAtOutlet(type, ordered, acquired, drawn);
+        } finally {
+            releaseOutlet(acquired);
+        }
+        MachineEvents.finishDispense(event, this, result, acquired - ordered, false);
+        return result;
+    }
+
+    /**
+     * draw the ingredients of type and send the cup through the brewing
+     * stages, from the last of which it queues for an outlet. An order whose
+     * ingredients cannot be drawn is completed at once.
+     *
+     * @return order completed once the cup is poured
+     */
+    private PendingOrder enterPipeline(BeverageType type, int priorityClass, Executor executor) {
+        PendingOrder order = new PendingOrder(type, priorityClass, executor);
+        BrewOutcome outcome = drawIngredients(type, System.nanoTime(), false);
+        if (!outcome.isPrepared()) {
+            metrics.recordResult(type, outcome.status());
+            order.complete(result(type, outcome));
+            return order;
+        }
+
+        order.drawn = outcome;
+        pipeline.brew(type, () -> queueForOutlet(order));
+        return order;
+    }
+
+    /**
+     * queue an order for an outlet, the order is handed to its executor once
+     * it gets one
+     */
+    private void queueForOutlet(PendingOrder order) {
+        if (order.result.isDone()) {
+            if (order.drawn != null)
+                metrics.recordLost(order.type);
+            return;
+        }
+        order.ordered = System.nanoTime();
+        outletMetrics.waiting();
+        outlets.acquireLater(order.type, order.priorityClass, order);
+        order.result.whenComplete((message, failure) -> {
+            if (failure != null && outlets.withdraw(order)) {
+                outletMetrics.abandoned();
+                if (order.drawn != null)
+                    metrics.recordLost(order.type);
+            }
+        });
+    }
+
+    /**
+     * Dispenses a burst of orders. The recipes of all orders are reserved in one
+     * pass over the ingredient containers through @{@link BatchReservation}, which
+     * serves orders greedily in input order, and the served cups are then poured
+     * together across the outlets, at most one per outlet. Orders the machine cannot reserve in a batch (see
+     * @{@link #reservation(BeverageType)}) go through @{@link #dispense(BeverageType)}.
+     * A machine with an admission policy dispenses the orders one by one, so
+     * every order is admitted against the levels left by the previous ones.
+     * A machine with brew times places every order asynchronously instead, so
+     * the cups brew in parallel on the outlets, and so does a machine with a
+     * brewing pipeline so the cups flow through its stages together.
+     *
+     * @param types beverages ordered together
+     * @return information for every order, in input order
+     */
+    @Override
+    public List<String> dispenseBatch(List<BeverageType> types) {
+        if (types == null)
+            throw new IllegalArgumentException("orders cannot be null");
+        if (brewTimes != null || pipeline != null)
+            return dispenseEach(types);
+        if (admission != null)
+            return BeverageMachine.super.dispenseBatch(types);
+
+        List<IngredientReservation> orders = new ArrayList<>(types.size());
+        for (BeverageType type : types)
+            orders.add(type == null ? null : reservation(type));
+
+        String[] results = new String[types.size()];
+        BatchReservation batch = BatchReservation.reserve(orders);
+        List<BeverageType> cups = new ArrayList<>(types.size());
+        for (int i = 0; i < results.length && batch.isDebited(); i++) {
+            BeverageType type = types.get(i);
+            if (orders.get(i) == null) continue;
+
+            BrewOutcome outcome = batch.outcome(i);
+            BrewEvent event = MachineEvents.startBrew();
+            MachineEvents.finishBrew(event, this, type, outcome);
+            if (outcome.isPrepared())
+                cups.add(type);
+            else
+                metrics.recordResult(type, outcome.status());
+            results[i] = result(type, outcome).message();
+        }
+        pourAtOutlets(cups);
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null)
+                results[i] = dispense(types.get(i));
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * dispense every order of a batch asynchronously, so cups taking time to
+     * brew are brewed in parallel on every outlet, and wait for all of them
+     */
+    private List<String> dispenseEach(List<BeverageType> types) {
+        List<CompletableFuture<String>> orders = new ArrayList<>(types.size());
+        for (BeverageType type : types)
+            orders.add(dispenseAsync(type));
+
+        List<String> results = new ArrayList<>(types.size());
+        for (int i = 0; i < orders.size(); i++) {
+            try {
+                results.add(orders.get(i).get());
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                results.add(DispenseResult.failed(types.get(i), "batch wait was interrupted").message());
+            } catch (ExecutionException ee) {
+                results.add(DispenseResult.failed(types.get(i), ee.getCause().getMessage()).message());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * pour cups whose ingredients are already debited at the outlets, every
+     * cup queueing for one as an order of its own so that the cups are poured
+     * at once on as many outlets as are free, in turn with the orders already
+     * waiting. Every cup counts in the outlet metrics and in the outlet wait,
+     * brew time and results of its beverage. An interrupted caller stops
+     * waiting for the cups, which are still poured.
+     *
+     * @param cups beverages prepared by the batch, in order
+     */
+    private void pourAtOutlets(List<BeverageType> cups) {
+        CompletableFuture<?>[] poured = new CompletableFuture<?>[cups.size()];
+        for (int i = 0; i < poured.length; i++) {
+            PendingOrder order = new PendingOrder(cups.get(i), OutletPolicy.UNSPECIFIED,
+                    DispenseExecutors.defaultExecutor());
+            order.drawn = BrewOutcome.PREPARED;
+            queueForOutlet(order);
+            poured[i] = order.result;
+        }
+
+        try {
+            CompletableFuture.allOf(poured).get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ee) {
+            // a cup the executor rejected is not poured, its outlet went to the next order
+        }
+    }
+
+    /**
+     * reservation of the recipe of a beverage from the ingredient containers,
+     * used to dispense batches of orders in a single pass. Machines which cannot
+     * describe a brew as a reservation return null and their batch orders are
+     * dispensed one by one.
+     *
+     * @param type is one of the BeverageType beverage
+     * @return reservation of one cup of type, null if not supported
+     */
+    protected IngredientReservation reservation(BeverageType type) {
+        return null;
+    }
+
+    /**
+     * Places an order without blocking the caller. The order waits in a queue
+     * until an outlet is free and is then brewed on the default executor of
+     * @{@link DispenseExecutors}, a virtual thread where the JVM has them.
+     *
+     * @param type is one of the BeverageType beverage
+     * @return future completed with the same information as @{@link #dispense(BeverageType)}
+     */
+    public CompletableFuture<String> dispenseAsync(BeverageType type) {
+        return dispenseAsync(type, DispenseExecutors.defaultExecutor());
+    }
+
+    /**
+     * Places an order without blocking the caller. The order waits in a queue
+     * until an outlet is free and is then brewed on executor. No thread is parked
+     * while the order is waiting for an outlet.
+     *
+     * Cancelling the returned future before the order reaches an outlet withdraws
+     * the order from the outlet queue at once, no ingredient is used. Once
+     * brewing has started the cup is brewed and cancellation only discards the
+     * result. On a machine with a
+     * @{@link BrewPipeline} the ingredients are drawn as the order is placed,
+     * before the cup goes through the stages on their own executors.
+     *
+     * @param type is one of the BeverageType beverage
+     * @param executor runs the brew once an outlet is free
+     * @return future completed with the same information as @{@link #dispense(BeverageType)}
+     */
+    public CompletableFuture<String> dispenseAsync(BeverageType type, Executor executor) {
+        if (executor == null)
+            throw new IllegalArgumentException("executor cannot be null");
+
+        if (pipeline != null)
+            return enterPipeline(type, OutletPolicy.UNSPECIFIED, executor).result;
+
+        PendingOrder order = new PendingOrder(type, OutletPolicy.UNSPECIFIED, executor);
+        queueForOutlet(order);
+        return order.result;
+    }
+
+    /**
+     * brew a dispatched order and release its outlet before completing the
+     * future, so whoever waits on the future sees the outlet free again
+     */
+    private void brewPendingOrder(PendingOrder order) {
+        DispenseEvent event = MachineEvents.startDispense();
+        DispenseResult result = null;
+        Throwable failure = null;
+        try {
+            if (!order.result.isDone())
+                result = brewAtOutlet(order.type, order.ordered, order.acquired, order.drawn);
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            releaseOutlet(order.acquired);
+        }
+
+        if (result != null)
+            MachineEvents.finishDispense(event, this, result, order.acquired - order.ordered, true);
+        if (failure != null)
+            order.result.completeExceptionally(failure);
+        else if (result != null)
+            order.complete(result);
+    }
+
+    /**
+     * account for an outlet just taken by an order placed at ordered
+     *
+     * @return @{@link System#nanoTime()} at which the outlet was taken
+     */
+    private long outletAcquired(long ordered) {
+        long acquired = System.nanoTime();
+        outletMetrics.acquired(acquired - ordered);
+        outletMetrics.held(acquired);
+        return acquired;
+    }
+
+    /**
+     * release an outlet taken at acquired and hand it to a waiting order if any
+     */
+    private void releaseOutlet(long acquired) {
+        outletMetrics.released(acquired);
+        outlets.release();
+    }
+
+    /**
+     * brew a beverage on an outlet already held by the caller. The result is
+     * built from the @{@link BrewOutcome} of @{@link #tryBrew(BeverageType)},
+     * an out of stock ingredient goes through no exception.
+     *
+     * @param type is one of the BeverageType beverage
+     * @param ordered @{@link System#nanoTime()} at which the order was placed
+     * @param brewing @{@link System#nanoTime()} at which the outlet was taken
+     * @param drawn outcome of the ingredients drawn as the order entered the
+     *              brewing pipeline, null to draw them on the outlet
+     * @return result of brewing type
+     */
+    private DispenseResult brewAtOutlet(BeverageType type, long ordered, long brewing, BrewOutcome drawn) {
+        BrewOutcome outcome = drawn != null ? drawn : drawIngredients(type, brewing, coalescer != null);
+        if (brewTimes != null && outcome.isPrepared())
+            brewTimes.brew(type, ThreadLocalRandom.current());
+        long brewed = System.nanoTime();
+
+        metrics.recordOutletWait(type, brewing - ordered);
+        metrics.recordBrew(type, brewed - brewing);
+        metrics.recordResult(type, outcome.status());
+        return result(type, outcome);
+    }
+
+    /**
+     * draw the ingredients of type for an order placed at now, together with
+     * the orders of the same beverage if coalesce, as a @{@link BrewEvent}
+     */
+    private BrewOutcome drawIngredients(BeverageType type, long now, boolean coalesce) {
+        BrewEvent event = MachineEvents.startBrew();
+        BrewOutcome outcome;
+        try {
+            outcome = coalesce ? tryBrewCoalesced(type, now) : tryBrewAdmitted(type, now);
+        } catch (RuntimeException e) {
+            outcome = BrewOutcome.failed(e.getMessage());
+        }
+        MachineEvents.finishBrew(event, this, type, outcome);
+        return outcome;
+    }
+
+    /**
+     * Brew like @{@link #tryBrew(BeverageType)} if the admission policy of the
+     * machine lets the order through, which is how dispense brews on an outlet.
+     * Without a policy every order is let through.
+     *
+     * @param type is one of the beverage type
+     * @param now @{@link System#nanoTime()} of the order, or any clock of the
+     *            caller in nanoseconds as long as it is used for every order
+     * @return outcome of the brew, @{@link BrewStatus#NOT_ADMITTED} if the
+     *          policy refused the order
+     */
+    public BrewOutcome tryBrewAdmitted(BeverageType type, long now) {
+        AdmissionControl control = admission;
+        return control == null ? tryBrew(type) : control.tryBrew(this, type, now);
+    }
+
+    /**
+     * brew type together with the orders of type reaching an outlet within the
+     * coalescing window, or on its own if its recipe cannot be reserved for
+     * several cups at once
+     */
+    private BrewOutcome tryBrewCoalesced(BeverageType type, long now) {
+        IngredientReservation plan = null;
+        if (type != null)
+            plan = admission == null ? reservation(type) : admission.coalescablePlan(type);
+        return plan == null ? tryBrewAdmitted(type, now) : coalescer.tryBrew(type, plan);
+    }
+
+    /**
+     * coalesce orders of the same beverage reaching their outlets within
+     * windowNanos, called by builders before the machine is published
+     */
+    void coalescingWindow(long windowNanos) {
+        coalescer = windowNanos <= 0 ? null : new OrderCoalescer(windowNanos, outlet);
+    }
+
+    /**
+     * send cups through the stages of pipeline before they queue for an
+     * outlet, called by builders before the machine is published
+     */
+    void pipeline(BrewPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * @return stages a cup goes through before it queues for an outlet, null
+     *          when a cup does all of its brewing on its outlet
+     */
+    public BrewPipeline pipeline() {
+        return pipeline;
+    }
+
+    /**
+     * @return time a prepared cup keeps its outlet, null when brewing is
+     *          instant
+     */
+    public BrewTimes brewTimes() {
+        return brewTimes;
+    }
+
+    /**
+     * admit orders by policy, called by builders once the brewing modules are
+     * plugged and before the machine is published
+     */
+    void admissionPolicy(AdmissionPolicy policy) {
+        admission = policy == null ? null : new AdmissionControl(policy, this);
+    }
+
+    /**
+     * recipe reservation the admission policy guards, by default the one
+     * batches are reserved with
+     *
+     * @param type is one of the BeverageType beverage
+     * @return reservation of one cup of type, null if the machine has none
+     */
+    IngredientReservation admissionPlan(BeverageType type) {
+        return reservation(type);
+    }
+
+    /**
+     * Metrics of every order dispensed by the machine: count by result, outlet
+     * wait and brew time per beverage. Cups of a batch served in a single
+     * reservation wait for an outlet each and are poured together, their
+     * brew time is only the time they hold the outlet.
+     *
+     * @return live metrics, see @{@link MachineMetrics#snapshot()}
+     */
+    public MachineMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return number of outlets of the machine, cups it can pour at once
+     */
+    public int outlet() {
+        return outlet;
+    }
+
+    /**
+     * @return policy handing out the outlets to waiting orders
+     */
+    public OutletPolicy outletPolicy() {
+        return outlets.policy();
+    }
+
+    /**
+     * hand out the outlets by policy, called by builders before the machine
+     * is published
+     */
+    void outletPolicy(OutletPolicy policy) {
+        if (policy != null)
+            outlets = new OutletScheduler(outlet, policy);
+    }
+
+    /**
+     * Instrumentation of the outlets: orders waiting for one, peak of the queue
+     * over the last minute, time to get an outlet and outlet utilisation.
+     *
+     * @return live outlet metrics, safe to poll at any time
+     */
+    public OutletMetrics outletMetrics() {
+        return outletMetrics;
+    }
+
+    /**
+     * result of a brew, as returned by dispenseResult
+     *
+     * @param type is one of the BeverageType beverage
+     * @param outcome of brewing type
+     * @return canonical result unless the brew failed
+     */
+    DispenseResult result(BeverageType type, BrewOutcome outcome) {
+        if (outcome.status() != BrewStatus.NOT_SUPPORTED)
+            return DispenseResult.of(type, outcome);
+
+        int index = type == null ? notSupported.length - 1 : type.ordinal();
+        DispenseResult result = notSupported[index];
+        if (result == null) {
+            result = DispenseResult.notSupported(type, getClass().getSimpleName());
+            notSupported[index] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Brew without throwing: retrieve the ingredients of type and report the
+     * outcome as a status plus the offending ingredient. This is the path
+     * dispense uses, so running out of an ingredient costs no exception.
+     *
+     * Brewing modules override it, the default implementation bridges to
+     * @{@link #brew(BeverageType)} and maps its exceptions.
+     *
+     * @param type is one of the beverage type
+     * @return outcome of the brew
+     */
+    public BrewOutcome tryBrew(BeverageType type) {
         try {
-            semaphore.acquire();
-            dispenserResult.append(type.getFieldDescriptor());
             brew(type);
-            dispenserResult.append(" ").append(BeverageOutputMessage.PREPARED);
-        }catch (RequestedQuantityNotPresentException | RequestedQuantityNotSufficientException rqnpe){
-            dispenserResult.append(" ").append(BeverageOutputMessage.NOT_PREPARED).append(" ")
-                    .append("because").append(" ").append(rqnpe.getMessage());
+            return BrewOutcome.PREPARED;
         } catch (BeverageTypeNotSupportedException btns) {
-            dispenserResult.append(" ").append(BeverageOutputMessage.NOT_PREPARED).append(" ")
-                    .append("because").append(" ").append(btns.getMessage());
-        } catch (Exception e){
-            dispenserResult.append(" ").append(BeverageOutputMessage.NOT_PREPARED).append(" ")
-                    .append("because").append(" ").append(e.getMessage());
-        }finally {
-            semaphore.release();
-            return dispenserResult.toString();
+            return BrewOutcome.NOT_SUPPORTED;
+        } catch (Exception e) {
+            return BrewOutcome.failed(e.getMessage());
         }
     }
 
@@ -91,4 +790,63 @@ public abstract class BaseBeverageMachine implements BeverageMachine{
             throws BeverageTypeNotSupportedException, RequestedQuantityNotPresentException,
             RequestedQuantityNotSufficientException;
 
+    /**
+     * order placed through dispenseAsync, or sent through the brewing
+     * pipeline, waiting for an outlet
+     */
+    private final class PendingOrder implements OutletScheduler.Grant {
+        private final BeverageType type;
+        private final int priorityClass;
+        private final Executor executor;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        /**
+         * @{@link System#nanoTime()} at which the order queued for an outlet
+         */
+        private long ordered = System.nanoTime();
+
+        /**
+         * outcome of the ingredients drawn as the order entered the brewing
+         * pipeline, null when they are drawn on the outlet
+         */
+        private BrewOutcome drawn;
+
+        /**
+         * @{@link System#nanoTime()} at which the order got an outlet, written
+         * before the order is handed to its executor
+         */
+        private long acquired;
+
+        private PendingOrder(BeverageType type, int priorityClass, Executor executor) {
+            this.type = type;
+            this.priorityClass = priorityClass;
+            this.executor = executor;
+        }
+
+        private void complete(DispenseResult dispensed) {
+            result.complete(dispensed.message());
+        }
+
+        /**
+         * hand the order to its executor, or decline the outlet if the order
+         * was withdrawn meanwhile or the executor rejects it
+         */
+        @Override
+        public boolean granted() {
+            if (result.isDone()) {
+                outletMetrics.abandoned();
+                return false;
+            }
+
+            acquired = outletAcquired(ordered);
+            try {
+                executor.execute(() -> brewPendingOrder(this));
+                return true;
+            } catch (RejectedExecutionException ree) {
+                outletMetrics.released(acquired);
+                result.completeExceptionally(ree);
+                return false;
+            }
+        }
+    }
 }
@@ -0,0 +1,173 @@
+package org.commons.machine;
+
+import org.commons.ingredients.IngredientContainer;
+import org.commons.ingredients.IngredientStatus;
+import org.commons.ingredients.IngredientType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reservation of the recipes of a burst of orders in a single pass over the
+ * ingredient containers.
+ *
+ * The monitors of every container touched by any order are taken once, in the
+ * same global order @{@link IngredientReservation} uses (ascending
+ * @{@link IngredientType} ordinal, identity hash between two containers of the
+ * same type). Orders are then served greedily in input order: an order is served
+ * if what is left after the orders before it covers its whole recipe, otherwise
+ * it is skipped and the following orders still get their chance. The summed
+ * demand of the served orders is debited with one retrieve per container.
+ *
+ * The decision only depends on the container levels and the order of the batch,
+ * so the same batch against the same levels always serves the same orders.
+ *
+ */
+public class BatchReservation {
+
+    /**
+     * lock taken before any container monitor when two containers of the
+     * batch cannot be ordered by type and identity hash
+     */
+    private static final Object TIE_LOCK = new Object();
+
+    private static final Comparator<IngredientContainer> LOCK_ORDER =
+            Comparator.<IngredientContainer>comparingInt(container -> container.type().ordinal())
+                    .thenComparingInt(System::identityHashCode);
+
+    private final List<IngredientReservation> orders;
+    private final IngredientContainer[] containers;
+    private final BrewOutcome[] outcomes;
+    private boolean debited;
+
+    private BatchReservation(List<IngredientReservation> orders) {
+        this.orders = orders;
+        this.outcomes = new BrewOutcome[orders.size()];
+
+        Map<IngredientContainer, Boolean> unique = new IdentityHashMap<>();
+        for (IngredientReservation order : orders) {
+            if (order == null) continue;
+            for (int i = 0; i < order.size(); i++)
+                unique.put(order.container(i), Boolean.TRUE);
+        }
+        List<IngredientContainer> sorted = new ArrayList<>(unique.keySet());
+        sorted.sort(LOCK_ORDER);
+        this.containers = sorted.toArray(new IngredientContainer[0]);
+    }
+
+    /**
+     * Reserve ingredients for a batch of orders in one pass.
+     *
+     * @param orders reservation of every order of the batch, null entries are skipped
+     *               and reported as not served
+     * @return outcome of the batch per order, in input order
+     */
+    public static BatchReservation reserve(List<IngredientReservation> orders) {
+        if (orders == null)
+            throw new IllegalArgumentException("orders cannot be null");
+
+        BatchReservation batch = new BatchReservation(orders);
+        if (batch.hasLockOrderTie()) {
+            synchronized (TIE_LOCK) {
+                batch.lockAndReserve(0);
+            }
+        } else {
+            batch.lockAndReserve(0);
+        }
+        return batch;
+    }
+
+    /**
+     * @return false if a container refused the summed debit (a lock-free container
+     *          drained by someone outside any reservation) and nothing was debited,
+     *          true otherwise
+     */
+    public boolean isDebited() {
+        return debited;
+    }
+
+    /**
+     * @param order index of the order in the batch
+     * @return @{@link BrewOutcome#PREPARED} if ingredients of the order were debited,
+     *          else the first ingredient, in lock order, that was short for it.
+     *          null if the order was not part of the reservation or the batch was
+     *          not debited.
+     */
+    public BrewOutcome outcome(int order) {
+        return debited ? outcomes[order] : null;
+    }
+
+    private boolean hasLockOrderTie() {
+        for (int i = 1; i < containers.length; i++) {
+            if (LOCK_ORDER.compare(containers[i - 1], containers[i]) == 0)
+                return true;
+        }
+        return false;
+    }
+
+    private void lockAndReserve(int index) {
+        if (index == containers.length) {
+            decide();
+            debit();
+            return;
+        }
+
+        synchronized (containers[index]) {
+            lockAndReserve(index + 1);
+        }
+    }
+
+    /**
+     * greedily serve orders in input order against the current levels
+     */
+    private void decide() {
+        Map<IngredientContainer, int[]> left = new IdentityHashMap<>();
+        for (IngredientContainer container : containers)
+            left.put(container, new int[] {container.quantity()});
+
+        for (int o = 0; o < orders.size(); o++) {
+            IngredientReservation order = orders.get(o);
+            if (order == null) continue;
+
+            outcomes[o] = BrewOutcome.PREPARED;
+            for (int i = 0; i < order.size() && outcomes[o].isPrepared(); i++) {
+                IngredientStatus status = IngredientStatus.of(left.get(order.container(i))[0], order.amount(i));
+                outcomes[o] = BrewOutcome.of(status, order.container(i).type());
+            }
+            if (!outcomes[o].isPrepared()) continue;
+
+            for (int i = 0; i < order.size(); i++)
+                left.get(order.container(i))[0] -= order.amount(i);
+        }
+    }
+
+    /**
+     * debit the summed demand of the served orders, one retrieve per container
+     */
+    private void debit() {
+        Map<IngredientContainer, int[]> demand = new IdentityHashMap<>();
+        for (int o = 0; o < orders.size(); o++) {
+            if (outcomes[o] == null || !outcomes[o].isPrepared()) continue;
+            IngredientReservation order = orders.get(o);
+            for (int i = 0; i < order.size(); i++)
+                demand.computeIfAbsent(order.container(i), c -> new int[1])[0] += order.amount(i);
+        }
+
+        for (int done = 0; done < containers.length; done++) {
+            int[] amount = demand.get(containers[done]);
+            if (amount == null || amount[0] == 0) continue;
+            if (containers[done].tryRetrieve(amount[0]) != IngredientStatus.AVAILABLE) {
+                for (int i = 0; i < done; i++) {
+                    int[] debit = demand.get(containers[i]);
+                    if (debit != null && debit[0] > 0)
+                        containers[i].refill(debit[0]);
+                }
+                return;
+            }
+        }
+        debited = true;
+    }
+}
@@ -2,24 +2,57 @@ package org.commons.machine;
 
 import org.commons.ingredients.IngredientType;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Its a recipe book for beverages and stores quantity
  * of different @{@link IngredientType} for making a
  * cup of a particular @{@link org.commons.machine.BeverageType}
+ *
+ * Quantities are kept in an int array indexed by @{@link IngredientType}
+ * ordinal, so reading a quantity neither hashes nor boxes.
+ *
+ * A recipe is built with @{@link #put(IngredientType, int)} and then frozen
+ * with @{@link #freeze()} once a machine is built around it. The frozen form
+ * is immutable, safe to share between threads without locking, and also keeps
+ * the ingredients with a non zero quantity in two compact arrays walked by
+ * @{@link #ingredientCount()}, @{@link #ingredientAt(int)} and
+ * @{@link #quantityAt(int)} without allocating anything.
  */
 public class BeverageComposition {
 
+    private static final IngredientType[] INGREDIENTS = IngredientType.values();
+
     /**
-     * quantity of different @{@link IngredientType}
+     * quantity of different @{@link IngredientType} by ordinal
      *
      */
-    private Map<IngredientType, Integer> ingrQuantity;
+    private final int[] quantities;
+
+    /**
+     * ingredients with a non zero quantity and their quantity, in ordinal
+     * order. null unless the recipe is frozen.
+     */
+    private final IngredientType[] ingredients;
+    private final int[] amounts;
 
     public BeverageComposition(){
-        ingrQuantity = new HashMap<>();
+        quantities = new int[INGREDIENTS.length];
+        ingredients = null;
+        amounts = null;
+    }
+
+    private BeverageComposition(int[] quantities) {
+        int count = 0;
+        for (int quantity : quantities)
+            if (quantity != 0) count++;
+
+        this.quantities = quantities;
+        this.ingredients = new IngredientType[count];
+        this.amounts = new int[count];
+        for (int ordinal = 0, i = 0; ordinal < quantities.length; ordinal++) {
+            if (quantities[ordinal] == 0) continue;
+            ingredients[i] = INGREDIENTS[ordinal];
+            amounts[i++] = quantities[ordinal];
+        }
     }
 
     /**
@@ -31,7 +64,7 @@ public class BeverageComposition {
      * @return quantity of the @{@link IngredientType} = type
      */
     public int getQuantity(IngredientType type){
-        return ingrQuantity.getOrDefault(type, 0);
+        return type == null ? 0 : quantities[type.ordinal()];
     }
 
     /**
@@ -41,11 +74,64 @@ public class BeverageComposition {
      *
      * @param type of ingredient being added or updated
      * @param quantity of the ingredient used in a cup of brewed beverage
+     * @throws IllegalStateException if the recipe is frozen
      */
     public void put(IngredientType type, int quantity) {
         if (type == null || quantity < 0)
             throw new IllegalArgumentException("Illegal argument check[type=" + type + "" +
                     ", quantity=" + quantity + "]");
-        this.ingrQuantity.put(type, quantity);
+        if (isFrozen())
+            throw new IllegalStateException("recipe is frozen and cannot be updated");
+        this.quantities[type.ordinal()] = quantity;
+    }
+
+    /**
+     * @return immutable copy of this recipe, or this recipe if it is already frozen.
+     *          Later puts on this recipe do not change the copy.
+     */
+    public BeverageComposition freeze() {
+        return isFrozen() ? this : new BeverageComposition(quantities.clone());
+    }
+
+    public boolean isFrozen() {
+        return ingredients != null;
+    }
+
+    /**
+     * @return number of ingredients with a non zero quantity
+     */
+    public int ingredientCount() {
+        if (isFrozen())
+            return ingredients.length;
+
+        int count = 0;
+        for (int quantity : quantities)
+            if (quantity != 0) count++;
+        return count;
+    }
+
+    /**
+     * @param index between 0 and @{@link #ingredientCount()}, ingredients are
+     *              ordered by @{@link IngredientType} ordinal
+     * @return ingredient at index among ingredients with a non zero quantity
+     */
+    public IngredientType ingredientAt(int index) {
+        return isFrozen() ? ingredients[index] : INGREDIENTS[ordinalAt(index)];
+    }
+
+    /**
+     * @param index between 0 and @{@link #ingredientCount()}
+     * @return quantity of @{@link #ingredientAt(int)} for the same index
+     */
+    public int quantityAt(int index) {
+        return isFrozen() ? amounts[index] : quantities[ordinalAt(index)];
+    }
+
+    private int ordinalAt(int index) {
+        for (int ordinal = 0, i = 0; ordinal < quantities.length; ordinal++) {
+            if (quantities[ordinal] != 0 && i++ == index)
+                return ordinal;
+        }
+        throw new IndexOutOfBoundsException("index=" + index + ", ingredientCount=" + ingredientCount());
     }
 }
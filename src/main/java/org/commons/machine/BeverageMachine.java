@@ -3,6 +3,7 @@ package org.commons.machine;
 import org.commons.ingredients.IngredientType;
 import org.exceptions.IncorrectIngredientTypeException;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public interface BeverageMachine {
@@ -14,6 +15,24 @@ public interface BeverageMachine {
      */
     public String dispense(BeverageType type);
 
+    /**
+     * Dispense a burst of orders placed together and return information for
+     * every order in the same order as they were placed.
+     * By default every order is dispensed one after the other.
+     *
+     * @param types beverages ordered together
+     * @return information for every order, in input order
+     */
+    public default List<String> dispenseBatch(List<BeverageType> types) {
+        if (types == null)
+            throw new IllegalArgumentException("orders cannot be null");
+
+        List<String> results = new ArrayList<>(types.size());
+        for (BeverageType type : types)
+            results.add(dispense(type));
+        return results;
+    }
+
     /**
      *  query the quantity or level of the ingredient present in the ingredient container
      * @param type it is one of the @{@link IngredientType}.
@@ -1,5 +1,7 @@
 package org.commons.machine;
 
+import org.commons.ingredients.IngredientType;
+
 /**
  * standardising few of the key messages brewed out of the beverage machine
  *
@@ -10,4 +12,26 @@ public class BeverageOutputMessage {
     public static final String QTY_NA = "not available";
     public static final String QTY_NS = "not sufficient";
     public static final String NOT_SUPPORTED = "is not supported";
+    public static final String NO_OUTLET = "no outlet is free in time";
+    public static final String HELD_BACK = "held back for other beverages";
+    public static final String RATE_LIMITED = "over its rate limit";
+
+    /**
+     * name of an ingredient as it appears in messages about a beverage.
+     * Water and milk go into teas and coffee already heated, so there they
+     * are reported as hot_water and hot_milk.
+     *
+     * @param beverage for which the message is written
+     * @param ingredient used in the beverage
+     * @return descriptor of the ingredient
+     */
+    public static String ingredientDescriptor(BeverageType beverage, IngredientType ingredient) {
+        if (beverage != BeverageType.HOT_WATER && beverage != BeverageType.HOT_MILK) {
+            if (ingredient == IngredientType.WATER)
+                return "hot_water";
+            if (ingredient == IngredientType.MILK)
+                return "hot_milk";
+        }
+        return ingredient.getFieldDescriptor();
+    }
 }
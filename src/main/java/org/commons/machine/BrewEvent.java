@@ -0,0 +1,43 @@
+package org.commons.machine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of a brew on an outlet, the retrieval of every
+ * ingredient of a cup. A long brew is time spent waiting for the monitors of
+ * containers shared with other outlets or with a refill.
+ *
+ * Begun and committed through @{@link MachineEvents}.
+ *
+ */
+@Name("org.commons.machine.Brew")
+@Label("Brew")
+@Category({"Beverage Machine"})
+@Description("Retrieval of the ingredients of one cup on an outlet")
+@Threshold("10 ms")
+@StackTrace(false)
+final class BrewEvent extends Event {
+
+    @Label("Machine")
+    String machine;
+
+    @Label("Beverage")
+    String beverage;
+
+    @Label("Status")
+    String status;
+
+    @Label("Ingredient")
+    @Description("Ingredient which was short, if any")
+    String ingredient;
+
+    @Label("Ingredient Level")
+    @Description("Quantity left of the ingredient which was short")
+    int ingredientLevel;
+}
@@ -0,0 +1,141 @@
+package org.commons.machine;
+
+import org.commons.ingredients.IngredientStatus;
+import org.commons.ingredients.IngredientType;
+import org.exceptions.RequestedQuantityNotPresentException;
+import org.exceptions.RequestedQuantityNotSufficientException;
+
+/**
+ * Outcome of a brew: @{@link BrewStatus} plus the offending @{@link IngredientType}
+ * when an ingredient was short.
+ *
+ * Outcomes are immutable and, except for @{@link BrewStatus#FAILED}, canonical:
+ * one instance per (status, ingredient) is created up front, so reporting an
+ * out of stock ingredient costs neither an exception nor an allocation.
+ *
+ */
+public final class BrewOutcome {
+
+    public static final BrewOutcome PREPARED = new BrewOutcome(BrewStatus.PREPARED, null, null);
+    public static final BrewOutcome NOT_SUPPORTED = new BrewOutcome(BrewStatus.NOT_SUPPORTED, null, null);
+    public static final BrewOutcome RATE_LIMITED = new BrewOutcome(BrewStatus.NOT_ADMITTED, null, null);
+
+    private static final BrewOutcome[] NOT_AVAILABLE = shortages(BrewStatus.INGREDIENT_NOT_AVAILABLE);
+    private static final BrewOutcome[] NOT_SUFFICIENT = shortages(BrewStatus.INGREDIENT_NOT_SUFFICIENT);
+    private static final BrewOutcome[] HELD_BACK = shortages(BrewStatus.NOT_ADMITTED);
+
+    private final BrewStatus status;
+    private final IngredientType ingredient;
+    private final String message;
+
+    private BrewOutcome(BrewStatus status, IngredientType ingredient, String message) {
+        this.status = status;
+        this.ingredient = ingredient;
+        this.message = message;
+    }
+
+    private static BrewOutcome[] shortages(BrewStatus status) {
+        IngredientType[] types = IngredientType.values();
+        BrewOutcome[] outcomes = new BrewOutcome[types.length];
+        for (IngredientType type : types)
+            outcomes[type.ordinal()] = new BrewOutcome(status, type, null);
+        return outcomes;
+    }
+
+    /**
+     * outcome of retrieving an ingredient for a cup
+     *
+     * @param status of the retrieval from the container
+     * @param ingredient retrieved
+     * @return @{@link #PREPARED} if available, else the shortage of ingredient
+     */
+    public static BrewOutcome of(IngredientStatus status, IngredientType ingredient) {
+        switch (status) {
+            case NOT_PRESENT:       return NOT_AVAILABLE[ingredient.ordinal()];
+            case NOT_SUFFICIENT:    return NOT_SUFFICIENT[ingredient.ordinal()];
+            default:                return PREPARED;
+        }
+    }
+
+    /**
+     * outcome of a brew refused by an admission policy because it would take
+     * ingredient below the level held back for other beverages
+     *
+     * @param ingredient held back
+     * @return canonical refusal
+     */
+    public static BrewOutcome heldBack(IngredientType ingredient) {
+        return HELD_BACK[ingredient.ordinal()];
+    }
+
+    /**
+     * outcome of a brew which failed for a reason other than a short ingredient
+     *
+     * @param message describing the failure
+     * @return new failed outcome
+     */
+    public static BrewOutcome failed(String message) {
+        return new BrewOutcome(BrewStatus.FAILED, null, message);
+    }
+
+    public BrewStatus status() {
+        return status;
+    }
+
+    /**
+     * @return ingredient which was short or held back, null unless status is
+     *          one of the INGREDIENT_ statuses or a refusal to take an ingredient
+     */
+    public IngredientType ingredient() {
+        return ingredient;
+    }
+
+    /**
+     * @return message of a @{@link BrewStatus#FAILED} outcome, null otherwise
+     */
+    public String message() {
+        return message;
+    }
+
+    public boolean isPrepared() {
+        return status == BrewStatus.PREPARED;
+    }
+
+    /**
+     * reason of a short ingredient the way brewing modules report it,
+     * e.g. "hot_milk is not sufficient"
+     *
+     * @param beverage being brewed
+     * @return reason, null if no ingredient was short
+     */
+    public String shortageReason(BeverageType beverage) {
+        switch (status) {
+            case INGREDIENT_NOT_AVAILABLE:  return BeverageOutputMessage.ingredientDescriptor(beverage, ingredient) +
+                                            " is " + BeverageOutputMessage.QTY_NA;
+            case INGREDIENT_NOT_SUFFICIENT: return BeverageOutputMessage.ingredientDescriptor(beverage, ingredient) +
+                                            " is " + BeverageOutputMessage.QTY_NS;
+            default:                        return null;
+        }
+    }
+
+    /**
+     * bridge to the exception based brew api: throws the exception matching
+     * a short ingredient, does nothing otherwise.
+     *
+     * @param beverage being brewed
+     * @throws RequestedQuantityNotPresentException
+     * @throws RequestedQuantityNotSufficientException
+     */
+    public void raiseIfShort(BeverageType beverage)
+            throws RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException {
+        if (status == BrewStatus.INGREDIENT_NOT_AVAILABLE)
+            throw new RequestedQuantityNotPresentException(shortageReason(beverage));
+        if (status == BrewStatus.INGREDIENT_NOT_SUFFICIENT)
+            throw new RequestedQuantityNotSufficientException(shortageReason(beverage));
+    }
+
+    @Override
+    public String toString() {
+        return ingredient == null ? status.name() : status + "(" + ingredient + ")";
+    }
+}
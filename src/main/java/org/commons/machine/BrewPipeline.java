@@ -0,0 +1,208 @@
+package org.commons.machine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Brewing stages a cup goes through before it reaches an outlet, such as
+ * heating water and steaming milk, each on its own limited hardware. Without
+ * a pipeline a cup does all of its brewing on its outlet. With one the outlet
+ * is only taken for the last step, mixing and pouring (the
+ * @{@link BrewTimes} of the machine), so an outlet mixes one cup while the
+ * stages already heat the next ones.
+ *
+ *   order -> reserve ingredients -> stage 1 -> ... -> stage n -> outlet (mix, pour)
+ *
+ * Every stage has a capacity, the cups it works on at once, and a queue in
+ * front of it: a stage is an executor of capacity daemon threads, each one
+ * standing for a unit of the stage's hardware. Cups flow through the stages
+ * concurrently and a stage without a profile for a beverage is skipped, hot
+ * milk never waits for the water heater.
+ *
+ * A pipeline stands for the hardware of one machine and is not shared between
+ * machines.
+ *
+ */
+public final class BrewPipeline {
+
+    private final List<Stage> stages;
+
+    private BrewPipeline(List<Stage> stages) {
+        this.stages = stages;
+    }
+
+    /**
+     * @return stages in the order cups go through them
+     */
+    public List<Stage> stages() {
+        return stages;
+    }
+
+    /**
+     * send a cup of type through the stages from the first one on, then run next
+     *
+     * @param type of the cup whose ingredients were drawn
+     * @param next continuation run on the thread of the last stage the cup went through
+     */
+    void brew(BeverageType type, Runnable next) {
+        brew(type, 0, next);
+    }
+
+    private void brew(BeverageType type, int from, Runnable next) {
+        for (int i = from; i < stages.size(); i++) {
+            Stage stage = stages.get(i);
+            if (stage.times.profile(type) == null)
+                continue;
+
+            int following = i + 1;
+            stage.executor.execute(() -> {
+                try {
+                    stage.times.brew(type, ThreadLocalRandom.current());
+                } finally {
+                    brew(type, following, next);
+                }
+            });
+            return;
+        }
+        next.run();
+    }
+
+    /**
+     * time a cup of type would wait in front of the stages it goes through,
+     * going by the cups queued at each stage and its mean time
+     *
+     * @param type of the cup
+     * @return nanoseconds of backlog ahead of a cup of type
+     */
+    long backlogNanos(BeverageType type) {
+        long backlog = 0;
+        for (int i = 0; i < stages.size(); i++) {
+            Stage stage = stages.get(i);
+            if (stage.times.profile(type) != null)
+                backlog += stage.backlogNanos();
+        }
+        return backlog;
+    }
+
+    @Override
+    public String toString() {
+        return "BrewPipeline" + stages;
+    }
+
+    /**
+     * a brewing stage with its capacity, queue and time per beverage
+     */
+    public static final class Stage {
+        private final String name;
+        private final int capacity;
+        private final BrewTimes times;
+        private final ThreadPoolExecutor executor;
+
+        /**
+         * mean time of the stage over the beverages it works on
+         */
+        private final long meanNanos;
+
+        private Stage(String name, int capacity, BrewTimes times) {
+            this.name = name;
+            this.capacity = capacity;
+            this.times = times;
+            long total = 0;
+            int profiles = 0;
+            for (BeverageType type : BeverageType.values()) {
+                BrewProfile profile = times.profile(type);
+                if (profile != null) {
+                    total += profile.meanNanos();
+                    profiles++;
+                }
+            }
+            this.meanNanos = profiles == 0 ? 0 : total / profiles;
+            AtomicInteger count = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(capacity, capacity, 1, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "beverage-" + name + "-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return cups the stage works on at once
+         */
+        public int capacity() {
+            return capacity;
+        }
+
+        /**
+         * @return time of the stage per beverage, beverages without a profile skip it
+         */
+        public BrewTimes times() {
+            return times;
+        }
+
+        /**
+         * @return cups waiting for the stage right now
+         */
+        public int queueLength() {
+            return executor.getQueue().size();
+        }
+
+        /**
+         * @return cups the stage is working on right now
+         */
+        public int busy() {
+            return executor.getActiveCount();
+        }
+
+        /**
+         * time before a cup joining the queue now starts on the stage. Every
+         * busy unit is assumed to be free right now, so only the cups beyond
+         * one per unit count, each round taking the mean time of the stage.
+         */
+        long backlogNanos() {
+            return queueLength() / capacity * meanNanos;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + capacity + ")";
+        }
+    }
+
+    /**
+     * Builder of a pipeline, stage by stage in the order cups go through them
+     */
+    public static class Builder {
+        private final List<Stage> stages = new ArrayList<>();
+
+        /**
+         * add a stage working on capacity cups at once for the time times
+         * gives each beverage
+         */
+        public Builder stage(String name, int capacity, BrewTimes times) {
+            if (name == null || capacity <= 0 || times == null)
+                throw new IllegalArgumentException("Illegal argument check[name=" + name + ", capacity=" +
+                        capacity + ", times=" + times + "]");
+            stages.add(new Stage(name, capacity, times));
+            return this;
+        }
+
+        public BrewPipeline build() {
+            if (stages.isEmpty())
+                throw new IllegalArgumentException("argument for " + BrewPipeline.class.getSimpleName() +
+                        " construction is not correct.");
+            return new BrewPipeline(Collections.unmodifiableList(new ArrayList<>(stages)));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.commons.machine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time a beverage takes to brew once its ingredients are drawn: fixed, or drawn
+ * from a uniform or normal distribution, and optionally holding a
+ * @{@link SharedResource} for the whole brew.
+ *
+ * Profiles are immutable. Sampling takes the random generator of the caller,
+ * a thread local one when brewing for real and the seeded one of the
+ * simulation when predicting, so the same profile serves both.
+ *
+ */
+public final class BrewProfile {
+
+    private enum Distribution {
+        FIXED,
+        UNIFORM,
+        NORMAL
+    }
+
+    private final Distribution distribution;
+    private final long first;
+    private final long second;
+    private final SharedResource resource;
+
+    private BrewProfile(Distribution distribution, long first, long second, SharedResource resource) {
+        this.distribution = distribution;
+        this.first = first;
+        this.second = second;
+        this.resource = resource;
+    }
+
+    /**
+     * @param time every brew takes
+     * @param unit of time
+     * @return profile of a fixed brew time
+     */
+    public static BrewProfile fixed(long time, TimeUnit unit) {
+        if (time < 0)
+            throw new IllegalArgumentException("brew time cannot be negative");
+        return new BrewProfile(Distribution.FIXED, unit.toNanos(time), 0, null);
+    }
+
+    /**
+     * @param min shortest brew time
+     * @param max longest brew time
+     * @param unit of min and max
+     * @return profile of brew times uniformly spread between min and max
+     */
+    public static BrewProfile uniform(long min, long max, TimeUnit unit) {
+        if (min < 0 || max < min)
+            throw new IllegalArgumentException("brew time range [" + min + ", " + max + "] is not correct");
+        return new BrewProfile(Distribution.UNIFORM, unit.toNanos(min), unit.toNanos(max), null);
+    }
+
+    /**
+     * @param mean brew time
+     * @param deviation standard deviation of the brew time
+     * @param unit of mean and deviation
+     * @return profile of normally distributed brew times, never below zero
+     */
+    public static BrewProfile normal(long mean, long deviation, TimeUnit unit) {
+        if (mean < 0 || deviation < 0)
+            throw new IllegalArgumentException("brew time mean and deviation cannot be negative");
+        return new BrewProfile(Distribution.NORMAL, unit.toNanos(mean), unit.toNanos(deviation), null);
+    }
+
+    /**
+     * @param resource held for the whole brew
+     * @return same brew times, holding resource
+     */
+    public BrewProfile using(SharedResource resource) {
+        return new BrewProfile(distribution, first, second, resource);
+    }
+
+    /**
+     * @return resource held while brewing, null if none
+     */
+    public SharedResource resource() {
+        return resource;
+    }
+
+    /**
+     * @return expected brew time in nanoseconds, mean of the distribution
+     */
+    public long meanNanos() {
+        switch (distribution) {
+            case UNIFORM:   return first + (second - first) / 2;
+            default:        return first;
+        }
+    }
+
+    /**
+     * @param random generator the time is drawn from
+     * @return brew time in nanoseconds
+     */
+    public long sample(Random random) {
+        switch (distribution) {
+            case UNIFORM:   return first + (long) (random.nextDouble() * (second - first));
+            case NORMAL:    return Math.max(0, first + (long) (random.nextGaussian() * second));
+            default:        return first;
+        }
+    }
+
+    @Override
+    public String toString() {
+        String time;
+        switch (distribution) {
+            case UNIFORM:   time = "uniform " + first + ".." + second + "ns";
+                            break;
+            case NORMAL:    time = "normal " + first + "ns +/- " + second + "ns";
+                            break;
+            default:        time = "fixed " + first + "ns";
+        }
+        return resource == null ? time : time + " using " + resource;
+    }
+}
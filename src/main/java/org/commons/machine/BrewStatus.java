@@ -0,0 +1,37 @@
+package org.commons.machine;
+
+/**
+ * outcome of brewing a cup of beverage, reported without throwing
+ *
+ */
+public enum BrewStatus {
+    /**
+     * every ingredient was retrieved, the cup is prepared
+     */
+    PREPARED,
+    /**
+     * an ingredient container of the recipe is empty
+     */
+    INGREDIENT_NOT_AVAILABLE,
+    /**
+     * an ingredient container of the recipe holds less than a cup needs
+     */
+    INGREDIENT_NOT_SUFFICIENT,
+    /**
+     * machine does not serve the beverage type
+     */
+    NOT_SUPPORTED,
+    /**
+     * brewing failed for any other reason
+     */
+    FAILED,
+    /**
+     * no outlet was free within the deadline of the order, nothing was brewed
+     */
+    OUTLET_UNAVAILABLE,
+    /**
+     * admission policy of the machine refused the order: an ingredient is held
+     * back for other beverages or the beverage is over its rate limit
+     */
+    NOT_ADMITTED
+}
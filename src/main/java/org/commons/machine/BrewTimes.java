@@ -0,0 +1,93 @@
+package org.commons.machine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Brew time profile of every beverage of a machine. Beverages without a
+ * profile brew instantly, as every machine does when it has no brew times.
+ *
+ * A machine built with brew times keeps the outlet of a prepared cup for the
+ * brew time of the cup, and the @{@link org.commons.simulation.Simulation}
+ * uses the same profiles to predict throughput and waits.
+ *
+ */
+public final class BrewTimes {
+
+    private final BrewProfile[] profiles;
+
+    private BrewTimes(BrewProfile[] profiles) {
+        this.profiles = profiles;
+    }
+
+    /**
+     * @param type is one of the BeverageType beverage
+     * @return profile of type, null if it brews instantly
+     */
+    public BrewProfile profile(BeverageType type) {
+        return type == null ? null : profiles[type.ordinal()];
+    }
+
+    /**
+     * brew for as long as the profile of type asks, holding its shared resource
+     * if any. An interrupt cuts the brew short and is kept for the caller.
+     *
+     * @param type of the cup whose ingredients were drawn
+     * @param random generator the brew time is drawn from
+     */
+    void brew(BeverageType type, Random random) {
+        BrewProfile profile = profile(type);
+        if (profile == null)
+            return;
+
+        long time = profile.sample(random);
+        SharedResource resource = profile.resource();
+        if (resource != null)
+            resource.acquire();
+        try {
+            long until = System.nanoTime() + time;
+            for (long left = time; left > 0 && !Thread.currentThread().isInterrupted();
+                 left = until - System.nanoTime())
+                LockSupport.parkNanos(left);
+        } finally {
+            if (resource != null)
+                resource.release();
+        }
+    }
+
+    /**
+     * Builder of brew times, beverage by beverage
+     */
+    public static class Builder {
+        private final BrewProfile[] profiles = new BrewProfile[BeverageType.values().length];
+
+        public Builder profile(BeverageType type, BrewProfile profile) {
+            if (type == null || profile == null)
+                throw new IllegalArgumentException("Illegal argument check[type=" + type + ", profile=" +
+                        profile + "]");
+            profiles[type.ordinal()] = profile;
+            return this;
+        }
+
+        /**
+         * same profile for every beverage
+         */
+        public Builder every(BrewProfile profile) {
+            for (BeverageType type : BeverageType.values())
+                profile(type, profile);
+            return this;
+        }
+
+        /**
+         * shortcut for a fixed brew time
+         */
+        public Builder fixed(BeverageType type, long time, TimeUnit unit) {
+            return profile(type, BrewProfile.fixed(time, unit));
+        }
+
+        public BrewTimes build() {
+            return new BrewTimes(profiles.clone());
+        }
+    }
+}
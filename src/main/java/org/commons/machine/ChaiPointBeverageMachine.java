@@ -38,6 +38,12 @@ import java.util.List;
  *                  leaves syrup,ginger syrup,
  *                  elaichi syrup, coffee syrup and sugar syrup.
  *
+ *  By default brews run concurrently: the outlet semaphore is the only machine
+ *  wide gate and brews contend only on the ingredient containers their recipe
+ *  touches, so a hot water and a hot coffee order never wait on each other.
+ *  @{@link Builder#concurrentBrewing(boolean)} switches back to brewing one
+ *  cup at a time across all outlets.
+ *
  */
 public class ChaiPointBeverageMachine extends BaseBeverageMachine {
 
@@ -48,12 +54,71 @@ public class ChaiPointBeverageMachine extends BaseBeverageMachine {
     private ElaichiTeaMachine elaichiTeaMachine;
     private CoffeeMachine coffeeMachine;
 
+    /**
+     * if false, one cup is brewed at a time across all outlets
+     */
+    private boolean concurrentBrewing;
+
     private ChaiPointBeverageMachine(int outlet){
         super(outlet);
     }
 
+    /**
+     * brew the beverage in the brewing module serving it.
+     * In concurrent brewing mode no machine wide lock is taken, consistency
+     * of shared ingredient containers is kept by the brewing modules.
+     *
+     * @param type is one of the beverage type
+     * @throws BeverageTypeNotSupportedException
+     * @throws RequestedQuantityNotPresentException
+     * @throws RequestedQuantityNotSufficientException
+     */
     @Override
-    public synchronized void brew(BeverageType type) throws BeverageTypeNotSupportedException,
+    public void brew(BeverageType type) throws BeverageTypeNotSupportedException,
+            RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException {
+        if (concurrentBrewing) {
+            brewInModule(type);
+            return;
+        }
+
+        synchronized (this) {
+            brewInModule(type);
+        }
+    }
+
+    /**
+     * brew the beverage in the brewing module serving it without throwing,
+     * the shortage of an ingredient is reported in the returned outcome.
+     *
+     * @param type is one of the beverage type
+     * @return outcome of the brew
+     */
+    @Override
+    public BrewOutcome tryBrew(BeverageType type) {
+        if (concurrentBrewing)
+            return tryBrewInModule(type);
+
+        synchronized (this) {
+            return tryBrewInModule(type);
+        }
+    }
+
+    private BrewOutcome tryBrewInModule(BeverageType type) {
+        if (type == null)
+            return BrewOutcome.NOT_SUPPORTED;
+
+        switch (type) {
+            case HOT_WATER:     return hotWaterMachine.tryBrew(type);
+            case HOT_MILK:      return hotMilkMachine.tryBrew(type);
+            case GREEN_TEA:     return greenTeaMachine.tryBrew(type);
+            case GINGER_TEA:    return gingerTeaMachine.tryBrew(type);
+            case ELAICHI_TEA:   return elaichiTeaMachine.tryBrew(type);
+            case HOT_COFFEE:    return coffeeMachine.tryBrew(type);
+            default:            return BrewOutcome.NOT_SUPPORTED;
+        }
+    }
+
+    private void brewInModule(BeverageType type) throws BeverageTypeNotSupportedException,
             RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException {
         if (type == null)
             throw new BeverageTypeNotSupportedException("BeverageType=null "+
@@ -77,6 +142,42 @@ public class ChaiPointBeverageMachine extends BaseBeverageMachine {
         }
     }
 
+    /**
+     * reservation of the recipe by the brewing module serving the beverage.
+     * In serial brewing mode none is returned so batches are brewed one cup
+     * at a time as well.
+     *
+     * @param type is one of the BeverageType beverage
+     * @return reservation of one cup of type, null if not supported
+     */
+    @Override
+    protected IngredientReservation reservation(BeverageType type) {
+        return concurrentBrewing ? moduleReservation(type) : null;
+    }
+
+    /**
+     * reservation of the recipe by the brewing module serving the beverage,
+     * guarded by the admission policy in serial brewing mode as well
+     */
+    @Override
+    IngredientReservation admissionPlan(BeverageType type) {
+        return moduleReservation(type);
+    }
+
+    private IngredientReservation moduleReservation(BeverageType type) {
+        if (type == null) return null;
+
+        switch (type) {
+            case HOT_WATER:     return hotWaterMachine.reservation(type);
+            case HOT_MILK:      return hotMilkMachine.reservation(type);
+            case GREEN_TEA:     return greenTeaMachine.reservation(type);
+            case GINGER_TEA:    return gingerTeaMachine.reservation(type);
+            case ELAICHI_TEA:   return elaichiTeaMachine.reservation(type);
+            case HOT_COFFEE:    return coffeeMachine.reservation(type);
+            default:            return null;
+        }
+    }
+
     @Override
     public int ingredientLevel(IngredientType type) {
         if (type == null ) return 0;
@@ -104,7 +205,7 @@ public class ChaiPointBeverageMachine extends BaseBeverageMachine {
     }
 
     @Override
-    public synchronized void refillIngredient(IngredientType type, int amount) throws IncorrectIngredientTypeException {
+    public void refillIngredient(IngredientType type, int amount) throws IncorrectIngredientTypeException {
         if (type == null)
             throw new IncorrectIngredientTypeException("Refill of Ingredient Type=" + type +
                     BeverageOutputMessage.NOT_SUPPORTED  + " in " + this.getClass().getSimpleName());
@@ -142,7 +243,7 @@ public class ChaiPointBeverageMachine extends BaseBeverageMachine {
         return ingrList;
     }
 
-    public static class Builder {
+    public static class Builder extends MachineBuilder<Builder> {
         private int outlet;
         private HotWaterMachine hotWaterMachine;
         private HotMilkMachine hotMilkMachine;
@@ -150,6 +251,7 @@ public class ChaiPointBeverageMachine extends BaseBeverageMachine {
         private GingerTeaMachine gingerTeaMachine;
         private ElaichiTeaMachine elaichiTeaMachine;
         private CoffeeMachine coffeeMachine;
+        private boolean concurrentBrewing = true;
 
         public Builder outlet(int outlet) {
             this.outlet = outlet;
@@ -186,6 +288,15 @@ public class ChaiPointBeverageMachine extends BaseBeverageMachine {
             return this;
         }
 
+        /**
+         * concurrent brewing (default) lets every outlet brew in parallel,
+         * false brews one cup at a time across all outlets.
+         */
+        public Builder concurrentBrewing(boolean concurrentBrewing) {
+            this.concurrentBrewing = concurrentBrewing;
+            return this;
+        }
+
         public ChaiPointBeverageMachine build(){
             if (hotWaterMachine == null || hotMilkMachine == null || greenTeaMachine == null ||
                     gingerTeaMachine == null || elaichiTeaMachine == null || coffeeMachine == null)
@@ -199,6 +310,8 @@ public class ChaiPointBeverageMachine extends BaseBeverageMachine {
             chaiPointBeverageMachine.gingerTeaMachine = gingerTeaMachine;
             chaiPointBeverageMachine.elaichiTeaMachine = elaichiTeaMachine;
             chaiPointBeverageMachine.coffeeMachine = coffeeMachine;
+            chaiPointBeverageMachine.concurrentBrewing = concurrentBrewing;
+            configure(chaiPointBeverageMachine);
             return chaiPointBeverageMachine;
         }
     }
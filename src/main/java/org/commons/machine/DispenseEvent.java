@@ -0,0 +1,49 @@
+package org.commons.machine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of an order, lasting from the order being placed
+ * until its result is known, outlet wait included. Orders placed with
+ * dispenseAsync wait for an outlet without a thread, their event starts when
+ * an outlet is free and the wait is only reported in @{@link #outletWait}.
+ *
+ * Begun and committed through @{@link MachineEvents}.
+ *
+ */
+@Name("org.commons.machine.Dispense")
+@Label("Dispense")
+@Category({"Beverage Machine"})
+@Description("Order of a beverage, from placing it to its result")
+@Threshold("20 ms")
+@StackTrace(false)
+final class DispenseEvent extends Event {
+
+    @Label("Beverage")
+    String beverage;
+
+    @Label("Status")
+    String status;
+
+    @Label("Ingredient")
+    @Description("Ingredient which was short, if any")
+    String ingredient;
+
+    @Label("Ingredient Level")
+    @Description("Quantity left of the ingredient which was short")
+    int ingredientLevel;
+
+    @Label("Outlet Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long outletWait;
+
+    @Label("Asynchronous")
+    boolean asynchronous;
+}
@@ -0,0 +1,84 @@
+package org.commons.machine;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors brewing the orders handed out by
+ * @{@link BaseBeverageMachine#dispenseAsync(BeverageType)}.
+ *
+ * Orders waiting for an outlet sit in the machine's queue and only reach the
+ * executor once an outlet is free, so the executor only ever runs brews.
+ * Where the JVM has virtual threads (java 21+) they are used by default,
+ * otherwise a pool of daemon platform threads is used.
+ *
+ */
+public final class DispenseExecutors {
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+    private DispenseExecutors() {
+    }
+
+    /**
+     * @return true if the running JVM can create virtual thread executors
+     */
+    public static boolean virtualThreadsAvailable() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * executor starting a virtual thread per brew.
+     * throws @{@link UnsupportedOperationException} if the JVM has no virtual threads.
+     *
+     * @return new virtual thread per task executor
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR == null)
+            throw new UnsupportedOperationException("virtual threads are not supported by java " +
+                    System.getProperty("java.version"));
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("virtual threads cannot be created", e);
+        }
+    }
+
+    /**
+     * executor used by dispenseAsync when the caller does not provide one.
+     * virtual thread per brew if available, else cached daemon platform threads.
+     *
+     * @return shared default executor
+     */
+    public static Executor defaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    private static Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static class DefaultExecutorHolder {
+        private static final Executor EXECUTOR = virtualThreadsAvailable() ?
+                newVirtualThreadExecutor() : Executors.newCachedThreadPool(new DaemonThreadFactory());
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "beverage-dispense-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
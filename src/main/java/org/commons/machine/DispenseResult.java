@@ -0,0 +1,191 @@
+package org.commons.machine;
+
+import org.commons.ingredients.IngredientType;
+
+/**
+ * Result of dispensing a cup of beverage: the beverage, the @{@link BrewStatus}
+ * of the brew and the ingredient which was short, if any.
+ *
+ * Callers which only need to know whether the cup was prepared look at
+ * @{@link #status()} and never pay for a message. The human readable message,
+ * the one @{@link BeverageMachine#dispense(BeverageType)} returns, is built on
+ * the first call to @{@link #message()} and kept in the result.
+ *
+ * Results of prepared cups, of short ingredients and of orders which got no
+ * outlet in time are canonical: one instance
+ * per (beverage, status, ingredient) is created up front, so each of their
+ * messages is built at most once for the lifetime of the JVM and then reused.
+ *
+ */
+public final class DispenseResult {
+
+    private static final BeverageType[] BEVERAGES = BeverageType.values();
+    private static final IngredientType[] INGREDIENTS = IngredientType.values();
+
+    /**
+     * canonical results indexed by beverage, status and short ingredient.
+     * The last beverage slot stands for a null beverage and the last
+     * ingredient slot for no ingredient.
+     */
+    private static final DispenseResult[][][] RESULTS = canonicalResults();
+
+    private final BeverageType beverage;
+    private final BrewStatus status;
+    private final IngredientType ingredient;
+
+    /**
+     * machine name of a @{@link BrewStatus#NOT_SUPPORTED} result,
+     * failure message of a @{@link BrewStatus#FAILED} result, null otherwise
+     */
+    private final String reason;
+
+    private volatile String message;
+
+    private DispenseResult(BeverageType beverage, BrewStatus status, IngredientType ingredient, String reason) {
+        this.beverage = beverage;
+        this.status = status;
+        this.ingredient = ingredient;
+        this.reason = reason;
+    }
+
+    private static DispenseResult[][][] canonicalResults() {
+        DispenseResult[][][] results =
+                new DispenseResult[BEVERAGES.length + 1][BrewStatus.values().length][INGREDIENTS.length + 1];
+        for (int b = 0; b <= BEVERAGES.length; b++) {
+            BeverageType beverage = b < BEVERAGES.length ? BEVERAGES[b] : null;
+            results[b][BrewStatus.PREPARED.ordinal()][INGREDIENTS.length] =
+                    new DispenseResult(beverage, BrewStatus.PREPARED, null, null);
+            results[b][BrewStatus.OUTLET_UNAVAILABLE.ordinal()][INGREDIENTS.length] =
+                    new DispenseResult(beverage, BrewStatus.OUTLET_UNAVAILABLE, null, null);
+            for (IngredientType ingredient : INGREDIENTS) {
+                results[b][BrewStatus.INGREDIENT_NOT_AVAILABLE.ordinal()][ingredient.ordinal()] =
+                        new DispenseResult(beverage, BrewStatus.INGREDIENT_NOT_AVAILABLE, ingredient, null);
+                results[b][BrewStatus.INGREDIENT_NOT_SUFFICIENT.ordinal()][ingredient.ordinal()] =
+                        new DispenseResult(beverage, BrewStatus.INGREDIENT_NOT_SUFFICIENT, ingredient, null);
+                results[b][BrewStatus.NOT_ADMITTED.ordinal()][ingredient.ordinal()] =
+                        new DispenseResult(beverage, BrewStatus.NOT_ADMITTED, ingredient, null);
+            }
+            results[b][BrewStatus.NOT_ADMITTED.ordinal()][INGREDIENTS.length] =
+                    new DispenseResult(beverage, BrewStatus.NOT_ADMITTED, null, null);
+        }
+        return results;
+    }
+
+    private static int index(BeverageType beverage) {
+        return beverage == null ? BEVERAGES.length : beverage.ordinal();
+    }
+
+    /**
+     * result of a brew which prepared the cup or found an ingredient short
+     *
+     * @param beverage dispensed
+     * @param outcome of brewing beverage, either prepared, one of the INGREDIENT_
+     *                statuses or not admitted
+     * @return canonical result
+     */
+    public static DispenseResult of(BeverageType beverage, BrewOutcome outcome) {
+        switch (outcome.status()) {
+            case PREPARED:                  return RESULTS[index(beverage)][BrewStatus.PREPARED.ordinal()][INGREDIENTS.length];
+            case INGREDIENT_NOT_AVAILABLE:
+            case INGREDIENT_NOT_SUFFICIENT: return RESULTS[index(beverage)][outcome.status().ordinal()][outcome.ingredient().ordinal()];
+            case NOT_ADMITTED:              return RESULTS[index(beverage)][BrewStatus.NOT_ADMITTED.ordinal()][
+                                                    outcome.ingredient() == null ? INGREDIENTS.length : outcome.ingredient().ordinal()];
+            case FAILED:                    return failed(beverage, outcome.message());
+            default:                        throw new IllegalArgumentException(
+                                                    "result of " + outcome + " depends on the machine, use notSupported");
+        }
+    }
+
+    /**
+     * result of ordering a beverage from a machine which does not serve it
+     *
+     * @param beverage ordered
+     * @param machine name of the machine, as it appears in the message
+     * @return new result
+     */
+    public static DispenseResult notSupported(BeverageType beverage, String machine) {
+        return new DispenseResult(beverage, BrewStatus.NOT_SUPPORTED, null, machine);
+    }
+
+    /**
+     * result of a dispense which failed for a reason other than a short ingredient
+     *
+     * @param beverage ordered
+     * @param reason of the failure
+     * @return new result
+     */
+    public static DispenseResult failed(BeverageType beverage, String reason) {
+        return new DispenseResult(beverage, BrewStatus.FAILED, null, reason);
+    }
+
+    /**
+     * result of an order which got no outlet within its deadline
+     *
+     * @param beverage ordered
+     * @return canonical result
+     */
+    public static DispenseResult outletUnavailable(BeverageType beverage) {
+        return RESULTS[index(beverage)][BrewStatus.OUTLET_UNAVAILABLE.ordinal()][INGREDIENTS.length];
+    }
+
+    public BeverageType beverage() {
+        return beverage;
+    }
+
+    public BrewStatus status() {
+        return status;
+    }
+
+    /**
+     * @return ingredient which was short or held back, null unless status is
+     *          one of the INGREDIENT_ statuses or a refusal to take an ingredient
+     */
+    public IngredientType ingredient() {
+        return ingredient;
+    }
+
+    public boolean isPrepared() {
+        return status == BrewStatus.PREPARED;
+    }
+
+    /**
+     * @return information if beverage is prepared or not with relevant information,
+     *          e.g. "hot_coffee cannot be prepared because hot_milk is not sufficient"
+     */
+    public String message() {
+        String built = message;
+        if (built == null) {
+            built = buildMessage();
+            message = built;
+        }
+        return built;
+    }
+
+    private String buildMessage() {
+        String descriptor = beverage == null ? "null" : beverage.getFieldDescriptor();
+        switch (status) {
+            case PREPARED:      return descriptor + " " + BeverageOutputMessage.PREPARED;
+            case NOT_SUPPORTED: return descriptor + " " + BeverageOutputMessage.NOT_PREPARED + " because " +
+                                        "BeverageType=" + beverage + " " + BeverageOutputMessage.NOT_SUPPORTED +
+                                        " in " + reason;
+            case FAILED:        return descriptor + " " + BeverageOutputMessage.NOT_PREPARED + " because " + reason;
+            case OUTLET_UNAVAILABLE:
+                                return descriptor + " " + BeverageOutputMessage.NOT_PREPARED + " because " +
+                                        BeverageOutputMessage.NO_OUTLET;
+            case NOT_ADMITTED:  return descriptor + " " + BeverageOutputMessage.NOT_PREPARED + " because " +
+                                        (ingredient == null
+                                                ? descriptor + " is " + BeverageOutputMessage.RATE_LIMITED
+                                                : BeverageOutputMessage.ingredientDescriptor(beverage, ingredient) +
+                                                        " is " + BeverageOutputMessage.HELD_BACK);
+            default:            return descriptor + " " + BeverageOutputMessage.NOT_PREPARED + " because " +
+                                        BeverageOutputMessage.ingredientDescriptor(beverage, ingredient) + " is " +
+                                        (status == BrewStatus.INGREDIENT_NOT_AVAILABLE
+                                                ? BeverageOutputMessage.QTY_NA : BeverageOutputMessage.QTY_NS);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return message();
+    }
+}
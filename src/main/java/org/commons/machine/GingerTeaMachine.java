@@ -39,6 +39,12 @@ public class GingerTeaMachine extends BaseBeverageMachine {
      */
     private Map<IngredientType, IngredientContainer> ingredientContainer;
 
+    /**
+     * all-or-nothing debit of the recipe from the ingredient containers
+     * which may be shared with other brewing modules
+     */
+    private IngredientReservation reservation;
+
     /**
      * number of outlets of the ginger tea beverage machine
      * @param outlet
@@ -52,7 +58,9 @@ public class GingerTeaMachine extends BaseBeverageMachine {
      *  if type is null or not ginger tea then it throws
      *  @{@link BeverageTypeNotSupportedException}
      *  method is thread-safe and consistency is maintained while retrieving
-     *  ingredients parallely for different request.
+     *  ingredients parallely for different request. Ingredients are debited
+     *  through @{@link IngredientReservation}, so either every ingredient of
+     *  the recipe is retrieved or none of them.
      *
      * @param type can be one of the @{@link BeverageType}.
      *             But it only supports GINGER_TEA and throws exception
@@ -62,88 +70,39 @@ public class GingerTeaMachine extends BaseBeverageMachine {
      * @throws BeverageTypeNotSupportedException
      */
     @Override
-    public synchronized void brew(BeverageType type) throws BeverageTypeNotSupportedException,
+    public void brew(BeverageType type) throws BeverageTypeNotSupportedException,
             RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException {
         if (type == null || type != BeverageType.GINGER_TEA )
             throw new BeverageTypeNotSupportedException("BeverageType="+ type + " " +
                     BeverageOutputMessage.NOT_SUPPORTED + " in " + this.getClass().getSimpleName());
 
-        checkAvailability();
-        ingredientContainer.get(IngredientType.WATER)
-                .retrieve(beverageRecipe.getQuantity(IngredientType.WATER));
-        ingredientContainer.get(IngredientType.MILK)
-                .retrieve(beverageRecipe.getQuantity(IngredientType.MILK));
-        ingredientContainer.get(IngredientType.TEA_LEAVES_SYRUP)
-                .retrieve(beverageRecipe.getQuantity(IngredientType.TEA_LEAVES_SYRUP));
-        ingredientContainer.get(IngredientType.GINGER_SYRUP)
-                .retrieve(beverageRecipe.getQuantity(IngredientType.GINGER_SYRUP));
-        ingredientContainer.get(IngredientType.SUGAR_SYRUP)
-                .retrieve(beverageRecipe.getQuantity(IngredientType.SUGAR_SYRUP));
-    }
-
-    /**
-     *  check availability of the ingredient in the container,
-     *  generally checked before retrieving the ingredients.
-     *  And if any of the ingredient is not present or is not insufficient,
-     *  it throws either of the two exceptions.
-     * if quantity = 0, then it throws @{@link RequestedQuantityNotPresentException}
-     * if quantity < required amount, then it throws @{@link RequestedQuantityNotSufficientException}
-     *
-     * @throws RequestedQuantityNotPresentException
-     * @throws RequestedQuantityNotSufficientException
-     */
-    private void checkAvailability()
-            throws RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException {
-        checkHotWater();
-        checkHotMilk();
-        ingredientContainer.get(IngredientType.TEA_LEAVES_SYRUP)
-                .check(beverageRecipe.getQuantity(IngredientType.TEA_LEAVES_SYRUP));
-        ingredientContainer.get(IngredientType.GINGER_SYRUP)
-                .check(beverageRecipe.getQuantity(IngredientType.GINGER_SYRUP));
-        ingredientContainer.get(IngredientType.SUGAR_SYRUP)
-                .check(beverageRecipe.getQuantity(IngredientType.SUGAR_SYRUP));
+        reservation.tryReserve().raiseIfShort(type);
     }
 
     /**
-     *  check availability of water in the container, generally checked while checking other ingredients.
-     *  And if it is not present or is not insufficient, it throws either
-     *  of the two exceptions.
-     *  if quantity = 0, then it throws @{@link RequestedQuantityNotPresentException}
-     *  if quantity < required amount, then it throws @{@link RequestedQuantityNotSufficientException}
+     *  retrieve ingredients for ginger tea without throwing, the shortage of an
+     *  ingredient is reported in the returned outcome.
      *
-     * @throws RequestedQuantityNotPresentException
-     * @throws RequestedQuantityNotSufficientException
+     * @param type can be one of the @{link BeverageType}.
+     *             But it only supports GINGER_TEA.
+     * @return outcome of the brew
      */
-    private void checkHotWater()
-            throws RequestedQuantityNotSufficientException, RequestedQuantityNotPresentException {
-        try {
-            ingredientContainer.get(IngredientType.WATER).check(beverageRecipe.getQuantity(IngredientType.WATER));
-        } catch (RequestedQuantityNotPresentException rqnpe) {
-            throw new RequestedQuantityNotPresentException("hot_water is " + BeverageOutputMessage.QTY_NA);
-        } catch (RequestedQuantityNotSufficientException e) {
-            throw new RequestedQuantityNotSufficientException("hot_water is " + BeverageOutputMessage.QTY_NS);
-        }
+    @Override
+    public BrewOutcome tryBrew(BeverageType type) {
+        if (type != BeverageType.GINGER_TEA)
+            return BrewOutcome.NOT_SUPPORTED;
+        return reservation.tryReserve();
     }
 
     /**
-     *  check availability of milk in the container, generally checked while checking other ingredients.
-     *  And if it is not present or is not insufficient, it throws either
-     * of the two exceptions.
-     * if quantity = 0, then it throws @{@link RequestedQuantityNotPresentException}
-     * if quantity < required amount, then it throws @{@link RequestedQuantityNotSufficientException}
+     * reservation of the recipe, used to dispense batches of orders
      *
-     * @throws RequestedQuantityNotPresentException
-     * @throws RequestedQuantityNotSufficientException
+     * @param type is one of the BeverageType beverage
+     * @return reservation of one cup if type is GINGER_TEA, else null
      */
-    private void checkHotMilk()
-            throws RequestedQuantityNotSufficientException, RequestedQuantityNotPresentException {
-        try {
-            ingredientContainer.get(IngredientType.MILK).check(beverageRecipe.getQuantity(IngredientType.MILK));
-        } catch (RequestedQuantityNotPresentException rqnpe) {
-            throw new RequestedQuantityNotPresentException("hot_milk is " + BeverageOutputMessage.QTY_NA);
-        } catch (RequestedQuantityNotSufficientException e) {
-            throw new RequestedQuantityNotSufficientException("hot_milk is " + BeverageOutputMessage.QTY_NS);
-        }
+    @Override
+    protected IngredientReservation reservation(BeverageType type) {
+        return type == BeverageType.GINGER_TEA ? reservation : null;
     }
 
     /**
@@ -298,7 +257,8 @@ public class GingerTeaMachine extends BaseBeverageMachine {
 
             GingerTeaMachine gingerTeaMachine = new GingerTeaMachine(outlet);
             gingerTeaMachine.ingredientContainer = ingredientContainer;
-            gingerTeaMachine.beverageRecipe = beverageRecipe;
+            gingerTeaMachine.beverageRecipe = beverageRecipe.freeze();
+            gingerTeaMachine.reservation = new IngredientReservation(gingerTeaMachine.beverageRecipe, ingredientContainer);
             return gingerTeaMachine;
         }
     }
@@ -38,6 +38,12 @@ public class GreenTeaMachine extends BaseBeverageMachine {
      */
     private Map<IngredientType, IngredientContainer> ingredientContainer;
 
+    /**
+     * all-or-nothing debit of the recipe from the ingredient containers
+     * which may be shared with other brewing modules
+     */
+    private IngredientReservation reservation;
+
     /**
      * number of outlets of the green tea beverage machine
      * @param outlet
@@ -51,7 +57,9 @@ public class GreenTeaMachine extends BaseBeverageMachine {
      *  if type is null or not green tea then it throws
      *  @{@link BeverageTypeNotSupportedException}
      *  method is thread-safe and consistency is maintained while retrieving
-     *  ingredients parallely for different request.
+     *  ingredients parallely for different request. Ingredients are debited
+     *  through @{@link IngredientReservation}, so either every ingredient of
+     *  the recipe is retrieved or none of them.
      *
      * @param type can be one of the @{@link BeverageType}.
      *             But it only supports GREEN_TEA and throws exception
@@ -61,64 +69,39 @@ public class GreenTeaMachine extends BaseBeverageMachine {
      * @throws BeverageTypeNotSupportedException
      */
     @Override
-    public synchronized void brew(BeverageType type) throws RequestedQuantityNotPresentException,
+    public void brew(BeverageType type) throws RequestedQuantityNotPresentException,
             RequestedQuantityNotSufficientException, BeverageTypeNotSupportedException {
         if (type == null || type != BeverageType.GREEN_TEA )
             throw new BeverageTypeNotSupportedException("BeverageType="+ type + " " +
                     BeverageOutputMessage.NOT_SUPPORTED + " in " + this.getClass().getSimpleName());
 
-        checkAvailability();
-        ingredientContainer.get(IngredientType.WATER)
-                .retrieve(beverageRecipe.getQuantity(IngredientType.WATER));
-        ingredientContainer.get(IngredientType.GREEN_MIXTURE)
-                .retrieve(beverageRecipe.getQuantity(IngredientType.GREEN_MIXTURE));
-        ingredientContainer.get(IngredientType.GINGER_SYRUP)
-                .retrieve(beverageRecipe.getQuantity(IngredientType.GINGER_SYRUP));
-        ingredientContainer.get(IngredientType.SUGAR_SYRUP)
-                .retrieve(beverageRecipe.getQuantity(IngredientType.SUGAR_SYRUP));
+        reservation.tryReserve().raiseIfShort(type);
     }
 
     /**
-     *  check availability of the ingredient in the container,
-     *  generally checked before retrieving the ingredients.
-     *  And if any of the ingredient is not present or is not insufficient,
-     *  it throws either of the two exceptions.
-     * if quantity = 0, then it throws @{@link RequestedQuantityNotPresentException}
-     * if quantity < required amount, then it throws @{@link RequestedQuantityNotSufficientException}
+     *  retrieve ingredients for green tea without throwing, the shortage of an
+     *  ingredient is reported in the returned outcome.
      *
-     * @throws RequestedQuantityNotPresentException
-     * @throws RequestedQuantityNotSufficientException
+     * @param type can be one of the @{link BeverageType}.
+     *             But it only supports GREEN_TEA.
+     * @return outcome of the brew
      */
-    private void checkAvailability()
-            throws RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException {
-        checkHotWater();
-        ingredientContainer.get(IngredientType.GREEN_MIXTURE)
-                .check(beverageRecipe.getQuantity(IngredientType.GREEN_MIXTURE));
-        ingredientContainer.get(IngredientType.GINGER_SYRUP)
-                .check(beverageRecipe.getQuantity(IngredientType.GINGER_SYRUP));
-        ingredientContainer.get(IngredientType.SUGAR_SYRUP)
-                .check(beverageRecipe.getQuantity(IngredientType.SUGAR_SYRUP));
+    @Override
+    public BrewOutcome tryBrew(BeverageType type) {
+        if (type != BeverageType.GREEN_TEA)
+            return BrewOutcome.NOT_SUPPORTED;
+        return reservation.tryReserve();
     }
 
     /**
-     *  check availability of water in the container, generally checked while checking other ingredients.
-     *  And if it is not present or is not insufficient, it throws either
-     * of the two exceptions.
-     * if quantity = 0, then it throws @{@link RequestedQuantityNotPresentException}
-     * if quantity < required amount, then it throws @{@link RequestedQuantityNotSufficientException}
+     * reservation of the recipe, used to dispense batches of orders
      *
-     * @throws RequestedQuantityNotPresentException
-     * @throws RequestedQuantityNotSufficientException
+     * @param type is one of the BeverageType beverage
+     * @return reservation of one cup if type is GREEN_TEA, else null
      */
-    private void checkHotWater()
-            throws RequestedQuantityNotSufficientException, RequestedQuantityNotPresentException {
-        try {
-            ingredientContainer.get(IngredientType.WATER).check(beverageRecipe.getQuantity(IngredientType.WATER));
-        } catch (RequestedQuantityNotPresentException rqnpe) {
-            throw new RequestedQuantityNotPresentException("hot_water is " + BeverageOutputMessage.QTY_NA);
-        } catch (RequestedQuantityNotSufficientException e) {
-            throw new RequestedQuantityNotSufficientException("hot_water is " + BeverageOutputMessage.QTY_NS);
-        }
+    @Override
+    protected IngredientReservation reservation(BeverageType type) {
+        return type == BeverageType.GREEN_TEA ? reservation : null;
     }
 
     /**
@@ -259,8 +242,9 @@ public class GreenTeaMachine extends BaseBeverageMachine {
                         " construction is not correct.");
 
             GreenTeaMachine greenTeaMachine = new GreenTeaMachine(outlet);
-            greenTeaMachine.beverageRecipe = beverageRecipe;
+            greenTeaMachine.beverageRecipe = beverageRecipe.freeze();
             greenTeaMachine.ingredientContainer = ingredientContainer;
+            greenTeaMachine.reservation = new IngredientReservation(greenTeaMachine.beverageRecipe, ingredientContainer);
             return greenTeaMachine;
         }
     }
@@ -8,6 +8,7 @@ import org.exceptions.RequestedQuantityNotPresentException;
 import org.exceptions.RequestedQuantityNotSufficientException;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -31,6 +32,11 @@ public class HotMilkMachine extends BaseBeverageMachine {
      */
     private IngredientContainer milkContainer;
 
+    /**
+     * reservation of the recipe from the container, used to dispense batches of orders
+     */
+    private IngredientReservation reservation;
+
     /**
      * number of outlets of the hot milk beverage machine
      * @param outlet
@@ -44,7 +50,8 @@ public class HotMilkMachine extends BaseBeverageMachine {
      *  if type is null or not hot milk then it throws
      *  @{@link BeverageTypeNotSupportedException}
      *  method is thread-safe and consistency is maintained while retrieving
-     *  ingredients parallely for different request.
+     *  ingredients parallely for different request, the container checks and
+     *  debits in one atomic step so no machine wide lock is needed.
      *
      * @param type can be one of the @{@link BeverageType}.
      *             But it only supports HOT_MILK and throws exception
@@ -54,30 +61,40 @@ public class HotMilkMachine extends BaseBeverageMachine {
      * @throws BeverageTypeNotSupportedException
      */
     @Override
-    public synchronized void brew(BeverageType type)
+    public void brew(BeverageType type)
             throws RequestedQuantityNotPresentException,
             RequestedQuantityNotSufficientException, BeverageTypeNotSupportedException {
         if (type == null || type != BeverageType.HOT_MILK )
             throw new BeverageTypeNotSupportedException("BeverageType="+ type + " " +
                     BeverageOutputMessage.NOT_SUPPORTED + " in " + this.getClass().getSimpleName());
-        checkAvailability();
-        milkContainer.retrieve(beverageRecipe.getQuantity(IngredientType.MILK));
+        tryBrew(type).raiseIfShort(type);
     }
 
     /**
-     *  check availability of the ingredient in the container,
-     *  generally checked before retrieving the ingredients.
-     *  And if any of the ingredient is not present or is not insufficient, it throws either
-     * of the two exceptions.
-     * if quantity = 0, then it throws @{@link RequestedQuantityNotPresentException}
-     * if quantity < required amount, then it throws @{@link RequestedQuantityNotSufficientException}
+     *  retrieve ingredients for hot milk without throwing, the shortage of
+     *  milk is reported in the returned outcome.
      *
-     * @throws RequestedQuantityNotPresentException
-     * @throws RequestedQuantityNotSufficientException
+     * @param type can be one of the @{link BeverageType}.
+     *             But it only supports HOT_MILK.
+     * @return outcome of the brew
+     */
+    @Override
+    public BrewOutcome tryBrew(BeverageType type) {
+        if (type != BeverageType.HOT_MILK)
+            return BrewOutcome.NOT_SUPPORTED;
+        return BrewOutcome.of(milkContainer.tryRetrieve(beverageRecipe.getQuantity(IngredientType.MILK)),
+                IngredientType.MILK);
+    }
+
+    /**
+     * reservation of the recipe, used to dispense batches of orders
+     *
+     * @param type is one of the BeverageType beverage
+     * @return reservation of one cup if type is HOT_MILK, else null
      */
-    private void checkAvailability()
-            throws RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException{
-        milkContainer.check(beverageRecipe.getQuantity(IngredientType.MILK));
+    @Override
+    protected IngredientReservation reservation(BeverageType type) {
+        return type == BeverageType.HOT_MILK ? reservation : null;
     }
 
     /**
@@ -161,7 +178,9 @@ public class HotMilkMachine extends BaseBeverageMachine {
 
             HotMilkMachine hotMilkMachine = new HotMilkMachine(outlet);
             hotMilkMachine.milkContainer = milkContainer;
-            hotMilkMachine.beverageRecipe = beverageRecipe;
+            hotMilkMachine.beverageRecipe = beverageRecipe.freeze();
+            hotMilkMachine.reservation = new IngredientReservation(hotMilkMachine.beverageRecipe,
+                    Collections.singletonMap(IngredientType.MILK, milkContainer));
             return hotMilkMachine;
         }
     }
@@ -5,6 +5,7 @@ import org.commons.ingredients.IngredientType;
 import org.exceptions.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -29,6 +30,11 @@ public class HotWaterMachine extends BaseBeverageMachine {
      */
     private IngredientContainer waterContainer;
 
+    /**
+     * reservation of the recipe from the container, used to dispense batches of orders
+     */
+    private IngredientReservation reservation;
+
     /**
      * number of outlets of the hot water beverage machine
      * @param outlet
@@ -41,7 +47,8 @@ public class HotWaterMachine extends BaseBeverageMachine {
      *  retrieve ingredients for hot water.
      *  if type is null or not hot water then it throws @{@link BeverageTypeNotSupportedException}
      *  method is thread-safe and consistency is maintained while retrieving
-     *  ingredients parallely for different request.
+     *  ingredients parallely for different request, the container checks and
+     *  debits in one atomic step so no machine wide lock is needed.
      *
      * @param type can be one of the @{@link BeverageType}. But it only supports HOT_WATER and throws exception
      *             on any other value of type.
@@ -50,29 +57,39 @@ public class HotWaterMachine extends BaseBeverageMachine {
      * @throws BeverageTypeNotSupportedException
      */
     @Override
-    public synchronized void brew(BeverageType type) throws RequestedQuantityNotPresentException,
+    public void brew(BeverageType type) throws RequestedQuantityNotPresentException,
             RequestedQuantityNotSufficientException, BeverageTypeNotSupportedException {
         if (type == null || type != BeverageType.HOT_WATER )
             throw new BeverageTypeNotSupportedException("BeverageType="+ type + " " + BeverageOutputMessage.NOT_SUPPORTED
                     + " in " + this.getClass().getSimpleName());
-        checkAvailability();
-        waterContainer.retrieve(beverageRecipe.getQuantity(IngredientType.WATER));
+        tryBrew(type).raiseIfShort(type);
     }
 
     /**
-     *  check availability of the ingredient in the container,
-     *  generally checked before retrieving the ingredients.
-     *  And if any of the ingredient is not present or is not insufficient, it throws either
-     * of the two exceptions.
-     * if quantity = 0, then it throws @{@link RequestedQuantityNotPresentException}
-     * if quantity < required amount, then it throws @{@link RequestedQuantityNotSufficientException}
+     *  retrieve ingredients for hot water without throwing, the shortage of
+     *  water is reported in the returned outcome.
      *
-     * @throws RequestedQuantityNotPresentException
-     * @throws RequestedQuantityNotSufficientException
+     * @param type can be one of the @{link BeverageType}.
+     *             But it only supports HOT_WATER.
+     * @return outcome of the brew
+     */
+    @Override
+    public BrewOutcome tryBrew(BeverageType type) {
+        if (type != BeverageType.HOT_WATER)
+            return BrewOutcome.NOT_SUPPORTED;
+        return BrewOutcome.of(waterContainer.tryRetrieve(beverageRecipe.getQuantity(IngredientType.WATER)),
+                IngredientType.WATER);
+    }
+
+    /**
+     * reservation of the recipe, used to dispense batches of orders
+     *
+     * @param type is one of the BeverageType beverage
+     * @return reservation of one cup if type is HOT_WATER, else null
      */
-    private void checkAvailability()
-            throws RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException{
-        waterContainer.check(beverageRecipe.getQuantity(IngredientType.WATER));
+    @Override
+    protected IngredientReservation reservation(BeverageType type) {
+        return type == BeverageType.HOT_WATER ? reservation : null;
     }
 
     /**
@@ -153,7 +170,9 @@ public class HotWaterMachine extends BaseBeverageMachine {
                     + HotWaterMachine.class.getSimpleName() + " construction is not correct.");
             HotWaterMachine hotWaterMachine = new HotWaterMachine(outlet);
             hotWaterMachine.waterContainer = waterContainer;
-            hotWaterMachine.beverageRecipe = beverageRecipe;
+            hotWaterMachine.beverageRecipe = beverageRecipe.freeze();
+            hotWaterMachine.reservation = new IngredientReservation(hotWaterMachine.beverageRecipe,
+                    Collections.singletonMap(IngredientType.WATER, waterContainer));
             return hotWaterMachine;
         }
     }
@@ -0,0 +1,202 @@
+package org.commons.machine;
+
+import org.commons.ingredients.IngredientContainer;
+import org.commons.ingredients.IngredientStatus;
+import org.commons.ingredients.IngredientType;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * All-or-nothing reservation of a @{@link BeverageComposition} from a set of
+ * ingredient containers. Either every container is debited with the quantity
+ * the recipe asks for, or none of them is.
+ *
+ * Containers are shared between brewing modules (ginger tea and green tea both
+ * draw from the same water and sugar syrup containers), so the reservation
+ * locks the monitor of every container it touches in a fixed global order -
+ * ascending @{@link IngredientType} ordinal. A brewing module holds at most one
+ * container per ingredient type, hence every reservation acquires its monitors
+ * in strictly increasing order and two reservations can never deadlock.
+ * Brews that share no container never wait on each other.
+ *
+ * While the monitors are held the availability is checked and then every
+ * container is debited. Should a container still refuse the debit (a lock-free
+ * container debited by someone not going through a reservation), the debits
+ * already done are refilled before the failure is reported.
+ *
+ * Shortage is reported as a @{@link BrewOutcome}, never as an exception, so an
+ * empty container costs no stack trace on the dispense path.
+ *
+ * A reservation may carry a floor per container, the level an
+ * @{@link AdmissionPolicy} holds back for other beverages. A debit which would
+ * take a container below its floor is refused, checked under the same monitors
+ * as the availability.
+ *
+ */
+public class IngredientReservation {
+
+    private static final Comparator<IngredientContainer> LOCK_ORDER =
+            Comparator.comparingInt(container -> container.type().ordinal());
+
+    /**
+     * containers of the recipe sorted in global lock order
+     */
+    private final IngredientContainer[] containers;
+
+    /**
+     * quantity of one cup debited from the container at the same index
+     */
+    private final int[] amounts;
+
+    /**
+     * level the container at the same index must keep after the debit,
+     * null when nothing is held back
+     */
+    private final int[] floors;
+
+    /**
+     * reservation of recipe from the containers of a brewing module.
+     *
+     * @param recipe quantity of every ingredient needed for one cup, read once here
+     * @param ingredientContainer containers of the brewing module, one per ingredient type
+     */
+    public IngredientReservation(BeverageComposition recipe,
+                                 Map<IngredientType, IngredientContainer> ingredientContainer) {
+        if (recipe == null || ingredientContainer == null || ingredientContainer.isEmpty())
+            throw new IllegalArgumentException("argument for " + IngredientReservation.class.getSimpleName() +
+                    " construction is not correct.");
+
+        this.containers = ingredientContainer.values().toArray(new IngredientContainer[0]);
+        Arrays.sort(this.containers, LOCK_ORDER);
+        this.amounts = new int[containers.length];
+        this.floors = null;
+        for (int i = 0; i < containers.length; i++)
+            amounts[i] = recipe.getQuantity(containers[i].type());
+    }
+
+    private IngredientReservation(IngredientContainer[] containers, int[] amounts, int[] floors) {
+        this.containers = containers;
+        this.amounts = amounts;
+        this.floors = floors;
+    }
+
+    /**
+     * compile recipe into a flat plan over the ingredients it actually uses:
+     * one container slot and one amount per ingredient with a non zero quantity,
+     * already in global lock order.
+     *
+     * @param recipe quantity of every ingredient needed for one cup
+     * @param containerByType containers indexed by @{@link IngredientType} ordinal
+     * @return reservation executing the plan
+     * @throws IllegalArgumentException if an ingredient of recipe has no container
+     */
+    static IngredientReservation compile(BeverageComposition recipe, IngredientContainer[] containerByType) {
+        BeverageComposition frozen = recipe.freeze();
+        IngredientContainer[] containers = new IngredientContainer[frozen.ingredientCount()];
+        int[] amounts = new int[containers.length];
+        for (int i = 0; i < containers.length; i++) {
+            IngredientType type = frozen.ingredientAt(i);
+            containers[i] = containerByType[type.ordinal()];
+            if (containers[i] == null)
+                throw new IllegalArgumentException("no ingredient container for " + type.getFieldDescriptor());
+            amounts[i] = frozen.quantityAt(i);
+        }
+        return new IngredientReservation(containers, amounts, null);
+    }
+
+    /**
+     * the same reservation refusing to take any container below a floor
+     *
+     * @param floorByType level to keep by @{@link IngredientType} ordinal
+     * @return guarded reservation, this one if no floor applies to its containers
+     */
+    IngredientReservation withFloors(int[] floorByType) {
+        int[] floors = new int[containers.length];
+        boolean guarded = false;
+        for (int i = 0; i < containers.length; i++) {
+            floors[i] = floorByType[containers[i].type().ordinal()];
+            guarded |= floors[i] > 0;
+        }
+        return guarded ? new IngredientReservation(containers, amounts, floors) : this;
+    }
+
+    /**
+     * Debit every container with the recipe quantity or none of them.
+     * Availability is checked container by container in lock order and the
+     * first short ingredient is reported.
+     *
+     * @return @{@link BrewOutcome#PREPARED} if every container was debited,
+     *          else the shortage that prevented it
+     */
+    public BrewOutcome tryReserve() {
+        return lockAndReserve(0, 1);
+    }
+
+    /**
+     * Debit every container with cups times the recipe quantity or none of
+     * them, the reservation of several cups of the same beverage brewed
+     * together.
+     *
+     * @param cups number of cups reserved at once, 1 or more
+     * @return @{@link BrewOutcome#PREPARED} if every container was debited for
+     *          all the cups, else the shortage that prevented it
+     */
+    BrewOutcome tryReserve(int cups) {
+        return lockAndReserve(0, cups);
+    }
+
+    /**
+     * @return number of containers touched by the reservation
+     */
+    int size() {
+        return containers.length;
+    }
+
+    /**
+     * @param index position in global lock order
+     * @return container at index
+     */
+    IngredientContainer container(int index) {
+        return containers[index];
+    }
+
+    /**
+     * @param index position in global lock order
+     * @return quantity of one cup debited from container at index
+     */
+    int amount(int index) {
+        return amounts[index];
+    }
+
+    private BrewOutcome lockAndReserve(int index, int cups) {
+        if (index == containers.length)
+            return checkAndDebit(cups);
+
+        synchronized (containers[index]) {
+            return lockAndReserve(index + 1, cups);
+        }
+    }
+
+    private BrewOutcome checkAndDebit(int cups) {
+        for (int i = 0; i < containers.length; i++) {
+            int amount = amounts[i] * cups;
+            IngredientStatus status = containers[i].status(amount);
+            if (status != IngredientStatus.AVAILABLE)
+                return BrewOutcome.of(status, containers[i].type());
+            if (floors != null && containers[i].quantity() - amount < floors[i])
+                return BrewOutcome.heldBack(containers[i].type());
+        }
+
+        for (int debited = 0; debited < containers.length; debited++) {
+            IngredientStatus status = containers[debited].tryRetrieve(amounts[debited] * cups);
+            if (status != IngredientStatus.AVAILABLE) {
+                for (int i = 0; i < debited; i++)
+                    containers[i].refill(amounts[i] * cups);
+                return BrewOutcome.of(status, containers[debited].type());
+            }
+        }
+        return BrewOutcome.PREPARED;
+    }
+}
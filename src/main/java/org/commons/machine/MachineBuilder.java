@@ -0,0 +1,88 @@
+package org.commons.machine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Options of the outlets and of the brewing every builder of a beverage
+ * machine offers on top of its own brewing modules: brew times, outlet policy,
+ * admission policy, order coalescing and brewing pipeline. The builder of a
+ * machine applies them with @{@link #configure(BaseBeverageMachine)} once its
+ * brewing modules are plugged.
+ *
+ * @param <B> type of the machine builder, returned by every option
+ */
+public abstract class MachineBuilder<B extends MachineBuilder<B>> {
+    private BrewTimes brewTimes;
+    private OutletPolicy outletPolicy;
+    private AdmissionPolicy admissionPolicy;
+    private long coalescingWindowNanos;
+    private BrewPipeline pipeline;
+
+    MachineBuilder() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private B self() {
+        return (B) this;
+    }
+
+    /**
+     * time a prepared cup keeps its outlet, brewing is instant without it
+     */
+    public B brewTimes(BrewTimes brewTimes) {
+        this.brewTimes = brewTimes;
+        return self();
+    }
+
+    /**
+     * order in which waiting orders get an outlet, first come first served
+     * without it
+     */
+    public B outletPolicy(OutletPolicy outletPolicy) {
+        this.outletPolicy = outletPolicy;
+        return self();
+    }
+
+    /**
+     * rules refusing orders which would starve other beverages of shared
+     * ingredients, every order is admitted without it
+     */
+    public B admissionPolicy(AdmissionPolicy admissionPolicy) {
+        this.admissionPolicy = admissionPolicy;
+        return self();
+    }
+
+    /**
+     * brew orders of the same beverage reaching their outlets within the
+     * window together, every order is brewed on its own without it or with a
+     * window of 0
+     */
+    public B coalescingWindow(long window, TimeUnit unit) {
+        if (window < 0 || unit == null)
+            throw new IllegalArgumentException("Illegal argument check[window=" + window + ", unit=" + unit + "]");
+        this.coalescingWindowNanos = unit.toNanos(window);
+        return self();
+    }
+
+    /**
+     * stages, such as heating water and steaming milk, a cup goes through
+     * before it queues for an outlet, the whole brew keeps the outlet
+     * without it
+     */
+    public B pipeline(BrewPipeline pipeline) {
+        this.pipeline = pipeline;
+        return self();
+    }
+
+    /**
+     * apply the options to a machine whose brewing modules are plugged, before
+     * it is published
+     */
+    void configure(BaseBeverageMachine machine) {
+        machine.brewTimes = brewTimes;
+        machine.outletPolicy(outletPolicy);
+        machine.admissionPolicy(admissionPolicy);
+        machine.coalescingWindow(coalescingWindowNanos);
+        machine.pipeline(pipeline);
+    }
+}
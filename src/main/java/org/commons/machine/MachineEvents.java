@@ -0,0 +1,102 @@
+package org.commons.machine;
+
+import jdk.jfr.EventType;
+import org.commons.metrics.FlightRecording;
+
+/**
+ * Begins and commits the @{@link DispenseEvent} and @{@link BrewEvent} flight
+ * recorder events of the machines. The event classes extend jdk.jfr.Event and
+ * are only loaded once a recording runs, so dispensing works the same on JVMs
+ * without flight recorder, where no recording ever runs.
+ *
+ * A running recording with an event disabled does not allocate it either,
+ * the enabled setting of its type is checked before.
+ *
+ */
+final class MachineEvents {
+
+    private MachineEvents() {
+    }
+
+    /**
+     * @return dispense event begun now, or null when no flight recording
+     *          records it
+     */
+    static DispenseEvent startDispense() {
+        if (!FlightRecording.isRunning() || !Types.DISPENSE.isEnabled())
+            return null;
+        DispenseEvent event = new DispenseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * end and commit event if it lasted longer than the configured threshold
+     *
+     * @param event begun by @{@link #startDispense()}, may be null
+     * @param machine which dispensed the order
+     * @param result of the order
+     * @param outletWaitNanos time the order waited for an outlet
+     * @param asynchronous true for orders placed with dispenseAsync
+     */
+    static void finishDispense(DispenseEvent event, BeverageMachine machine, DispenseResult result,
+                               long outletWaitNanos, boolean asynchronous) {
+        if (event == null)
+            return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.beverage = result.beverage() == null ? null : result.beverage().getFieldDescriptor();
+            event.status = result.status().name();
+            if (result.ingredient() != null) {
+                event.ingredient = result.ingredient().getFieldDescriptor();
+                event.ingredientLevel = machine.ingredientLevel(result.ingredient());
+            }
+            event.outletWait = outletWaitNanos;
+            event.asynchronous = asynchronous;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return brew event begun now, or null when no flight recording records it
+     */
+    static BrewEvent startBrew() {
+        if (!FlightRecording.isRunning() || !Types.BREW.isEnabled())
+            return null;
+        BrewEvent event = new BrewEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * end and commit event if it lasted longer than the configured threshold
+     *
+     * @param event begun by @{@link #startBrew()}, may be null
+     * @param machine which brewed
+     * @param type beverage brewed
+     * @param outcome of the brew
+     */
+    static void finishBrew(BrewEvent event, BeverageMachine machine, BeverageType type, BrewOutcome outcome) {
+        if (event == null)
+            return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.machine = machine.getClass().getSimpleName();
+            event.beverage = type == null ? null : type.getFieldDescriptor();
+            event.status = outcome.status().name();
+            if (outcome.ingredient() != null) {
+                event.ingredient = outcome.ingredient().getFieldDescriptor();
+                event.ingredientLevel = machine.ingredientLevel(outcome.ingredient());
+            }
+            event.commit();
+        }
+    }
+
+    /**
+     * event types, looked up the first time a recording runs
+     */
+    private static final class Types {
+        private static final EventType DISPENSE = EventType.getEventType(DispenseEvent.class);
+        private static final EventType BREW = EventType.getEventType(BrewEvent.class);
+    }
+}
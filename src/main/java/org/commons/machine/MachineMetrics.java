@@ -0,0 +1,223 @@
+package org.commons.machine;
+
+import org.commons.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a beverage machine, per @{@link BeverageType}: number of orders
+ * by @{@link BrewStatus}, time spent waiting for an outlet, time spent
+ * brewing once an outlet was taken and cups lost in a brewing pipeline.
+ *
+ * Everything is recorded in counters and @{@link LatencyHistogram}s created with
+ * the machine, recording takes no lock and allocates nothing so metrics stay on
+ * at full load. @{@link #snapshot()} never blocks dispensing.
+ *
+ * Orders for a null beverage are kept apart and reported by
+ * @{@link Snapshot#beverage(BeverageType)} for null.
+ *
+ */
+public class MachineMetrics {
+
+    private static final BeverageType[] BEVERAGES = BeverageType.values();
+    private static final BrewStatus[] STATUSES = BrewStatus.values();
+
+    /**
+     * metrics by beverage ordinal, the last slot is for null beverages
+     */
+    private final Recorder[] recorders = new Recorder[BEVERAGES.length + 1];
+
+    MachineMetrics() {
+        for (int i = 0; i < recorders.length; i++)
+            recorders[i] = new Recorder();
+    }
+
+    private Recorder recorder(BeverageType type) {
+        return recorders[type == null ? BEVERAGES.length : type.ordinal()];
+    }
+
+    /**
+     * @param type ordered
+     * @param nanos spent waiting for a free outlet
+     */
+    void recordOutletWait(BeverageType type, long nanos) {
+        recorder(type).outletWait.record(nanos);
+    }
+
+    /**
+     * @param type ordered
+     * @param nanos spent brewing on the outlet
+     */
+    void recordBrew(BeverageType type, long nanos) {
+        recorder(type).brew.record(nanos);
+    }
+
+    /**
+     * @param type ordered
+     * @param status result of the order
+     */
+    void recordResult(BeverageType type, BrewStatus status) {
+        recorder(type).results[status.ordinal()].increment();
+    }
+
+    /**
+     * @param type ordered
+     */
+    void recordLost(BeverageType type) {
+        recorder(type).lost.increment();
+    }
+
+    /**
+     * @return copy of the metrics at this point in time
+     */
+    public Snapshot snapshot() {
+        BeverageMetrics[] beverages = new BeverageMetrics[recorders.length];
+        for (int i = 0; i < recorders.length; i++)
+            beverages[i] = recorders[i].snapshot(i < BEVERAGES.length ? BEVERAGES[i] : null);
+        return new Snapshot(beverages);
+    }
+
+    private static class Recorder {
+        private final LongAdder[] results = new LongAdder[STATUSES.length];
+        private final LatencyHistogram outletWait = new LatencyHistogram();
+        private final LatencyHistogram brew = new LatencyHistogram();
+        private final LongAdder lost = new LongAdder();
+
+        private Recorder() {
+            for (int i = 0; i < results.length; i++)
+                results[i] = new LongAdder();
+        }
+
+        private BeverageMetrics snapshot(BeverageType type) {
+            long[] counts = new long[results.length];
+            for (int i = 0; i < results.length; i++)
+                counts[i] = results[i].sum();
+            return new BeverageMetrics(type, counts, outletWait.snapshot(), brew.snapshot(), lost.sum());
+        }
+    }
+
+    /**
+     * metrics of every beverage at one point in time
+     */
+    public static class Snapshot {
+        private final BeverageMetrics[] beverages;
+
+        private Snapshot(BeverageMetrics[] beverages) {
+            this.beverages = beverages;
+        }
+
+        /**
+         * @param type one of the @{@link BeverageType}, null for orders without a beverage
+         * @return metrics of the beverage
+         */
+        public BeverageMetrics beverage(BeverageType type) {
+            return beverages[type == null ? BEVERAGES.length : type.ordinal()];
+        }
+
+        /**
+         * @return number of orders of every beverage
+         */
+        public long dispensed() {
+            long dispensed = 0;
+            for (BeverageMetrics beverage : beverages)
+                dispensed += beverage.dispensed();
+            return dispensed;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (BeverageMetrics beverage : beverages) {
+                if (beverage.dispensed() > 0)
+                    builder.append(beverage).append(System.lineSeparator());
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * metrics of one beverage at one point in time
+     */
+    public static class BeverageMetrics {
+        private final BeverageType type;
+        private final long[] results;
+        private final LatencyHistogram.Snapshot outletWait;
+        private final LatencyHistogram.Snapshot brew;
+        private final long lost;
+
+        private BeverageMetrics(BeverageType type, long[] results, LatencyHistogram.Snapshot outletWait,
+                                LatencyHistogram.Snapshot brew, long lost) {
+            this.type = type;
+            this.results = results;
+            this.outletWait = outletWait;
+            this.brew = brew;
+            this.lost = lost;
+        }
+
+        public BeverageType type() {
+            return type;
+        }
+
+        /**
+         * @return number of orders whatever their result
+         */
+        public long dispensed() {
+            long dispensed = 0;
+            for (long count : results)
+                dispensed += count;
+            return dispensed;
+        }
+
+        /**
+         * @param status result of an order
+         * @return number of orders with this result
+         */
+        public long count(BrewStatus status) {
+            return results[status.ordinal()];
+        }
+
+        /**
+         * @return number of orders not prepared, whatever the reason
+         */
+        public long failed() {
+            return dispensed() - count(BrewStatus.PREPARED);
+        }
+
+        /**
+         * @return time orders waited for a free outlet
+         */
+        public LatencyHistogram.Snapshot outletWait() {
+            return outletWait;
+        }
+
+        /**
+         * @return time spent brewing on an outlet
+         */
+        public LatencyHistogram.Snapshot brew() {
+            return brew;
+        }
+
+        /**
+         * @return number of cups whose ingredients were drawn as they entered a
+         *          @{@link BrewPipeline} but which were never poured, their order
+         *          gave up waiting for them or for an outlet
+         */
+        public long lost() {
+            return lost;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(type == null ? "null" : type.getFieldDescriptor())
+                    .append(": dispensed=").append(dispensed());
+            for (BrewStatus status : STATUSES) {
+                if (results[status.ordinal()] > 0)
+                    builder.append(", ").append(status).append('=').append(results[status.ordinal()]);
+            }
+            if (lost > 0)
+                builder.append(", lost=").append(lost);
+            return builder.append(", outletWait[").append(outletWait).append("], brew[").append(brew)
+                    .append(']').toString();
+        }
+    }
+}
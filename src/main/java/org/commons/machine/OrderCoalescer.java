@@ -0,0 +1,147 @@
+package org.commons.machine;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Coalescing of orders of the same beverage reaching their outlets at nearly
+ * the same time. The first order of a beverage to reach an outlet opens a
+ * group and waits up to the coalescing window for other orders of the same
+ * beverage to join it, or until every outlet is in the group. Its recipe is
+ * then reserved once for all the cups of the group, which takes every shared
+ * container lock once instead of once per cup, and each order goes on to pour
+ * its cup at its own outlet.
+ *
+ * When the containers cannot hold the cups of the whole group, every order of
+ * the group brews its own cup as if it had not been coalesced, so coalescing
+ * never serves fewer cups than brewing one by one would.
+ *
+ * The order opening a group keeps its outlet for the window, coalescing trades
+ * that latency for less lock traffic on the shared containers during bursts.
+ *
+ */
+final class OrderCoalescer {
+
+    private final long windowNanos;
+    private final int outlets;
+
+    /**
+     * group open for each beverage by ordinal, guarded by the lock of the
+     * beverage
+     */
+    private final Group[] open = new Group[BeverageType.values().length];
+    private final Object[] locks = new Object[BeverageType.values().length];
+
+    OrderCoalescer(long windowNanos, int outlets) {
+        if (windowNanos <= 0)
+            throw new IllegalArgumentException("coalescing window must be positive");
+        this.windowNanos = windowNanos;
+        this.outlets = outlets;
+        for (int i = 0; i < locks.length; i++)
+            locks[i] = new Object();
+    }
+
+    /**
+     * brew a cup of type together with the other orders of type arriving
+     * within the window
+     *
+     * @param plan reservation of one cup of type
+     * @return outcome of the cup of this order
+     */
+    BrewOutcome tryBrew(BeverageType type, IngredientReservation plan) {
+        int ordinal = type.ordinal();
+        Group group;
+        boolean leader = false;
+        synchronized (locks[ordinal]) {
+            group = open[ordinal];
+            if (group == null) {
+                group = new Group(Thread.currentThread());
+                open[ordinal] = group;
+                leader = true;
+            }
+            group.join(outlets);
+            if (group.cups == outlets)
+                open[ordinal] = null;
+        }
+
+        BrewOutcome outcome = leader ? lead(ordinal, group, plan) : group.await();
+        return outcome.isPrepared() || group.cups == 1 ? outcome : plan.tryReserve();
+    }
+
+    /**
+     * wait for the group to fill up or the window to end, then reserve every
+     * cup of the group at once
+     */
+    private BrewOutcome lead(int ordinal, Group group, IngredientReservation plan) {
+        group.fillWithin(windowNanos, outlets);
+        int cups;
+        synchronized (locks[ordinal]) {
+            if (open[ordinal] == group)
+                open[ordinal] = null;
+            cups = group.cups;
+        }
+
+        BrewOutcome outcome;
+        try {
+            outcome = plan.tryReserve(cups);
+        } catch (RuntimeException e) {
+            outcome = BrewOutcome.failed(e.getMessage());
+        }
+        group.complete(outcome);
+        return outcome;
+    }
+
+    private static final class Group {
+        private final Thread leader;
+
+        /**
+         * orders in the group, written under the lock of the beverage and
+         * final once the group is closed
+         */
+        private volatile int cups;
+        private BrewOutcome outcome;
+
+        private Group(Thread leader) {
+            this.leader = leader;
+        }
+
+        private void join(int outlets) {
+            cups++;
+            if (cups == outlets && Thread.currentThread() != leader)
+                LockSupport.unpark(leader);
+        }
+
+        /**
+         * park the leader until every outlet is in the group or the window
+         * ends. Parking rather than waiting on the monitor keeps windows
+         * shorter than a millisecond exact.
+         */
+        private void fillWithin(long windowNanos, int outlets) {
+            long deadline = System.nanoTime() + windowNanos;
+            for (long remaining = windowNanos; cups < outlets && remaining > 0;
+                 remaining = deadline - System.nanoTime()) {
+                if (leader.isInterrupted())
+                    return;
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+
+        private synchronized void complete(BrewOutcome outcome) {
+            this.outcome = outcome;
+            notifyAll();
+        }
+
+        private synchronized BrewOutcome await() {
+            boolean interrupted = false;
+            while (outcome == null) {
+                try {
+                    wait();
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            return outcome;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package org.commons.machine;
+
+import org.commons.metrics.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentation of the outlets of a beverage machine: how many orders wait
+ * for an outlet, the peak of that queue over a sliding window, how long it takes
+ * to get an outlet and how busy the outlets are.
+ *
+ * Orders blocked in dispense and orders queued by dispenseAsync are both counted
+ * as waiting. Like @{@link MachineMetrics} everything is lock-free and allocation
+ * free on the dispense path, and every getter can be polled at any time.
+ *
+ * The mean time an outlet is held, over the recent releases, estimates how
+ * long a queue of orders takes to drain. Orders shed because of it are
+ * counted apart from orders which waited for an outlet and gave up.
+ *
+ * Utilisation is kept as busy outlet time: the time every outlet was held,
+ * including outlets still held when polled. Two @{@link Snapshot}s give the
+ * utilisation between them, which is what sizing the number of outlets needs.
+ *
+ */
+public class OutletMetrics {
+
+    /**
+     * default sliding window of the waiting peak
+     */
+    public static final long DEFAULT_WINDOW_SECONDS = 60;
+
+    private static final int DEPTH_BITS = 24;
+    private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+    private static final int HOLD_WEIGHT = 8;
+
+    private final int outlets;
+    private final long origin = System.nanoTime();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LatencyHistogram acquireTime = new LatencyHistogram();
+
+    /**
+     * peak of waiting per slot of the window, packed as slot number above
+     * @{@link #DEPTH_BITS} and peak below, so a stale slot is recognised and
+     * reset with a single compare-and-set
+     */
+    private final AtomicLongArray peaks;
+    private final long slotNanos;
+
+    private final AtomicInteger held = new AtomicInteger();
+    private final LongAdder heldSince = new LongAdder();
+    private final LongAdder releasedBusyNanos = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    /**
+     * moving average of the time an outlet is held, each release weighing
+     * 1/@{@link #HOLD_WEIGHT}. Updated without synchronisation: concurrent
+     * releases may lose an update, which an estimate can afford.
+     */
+    private volatile long meanHoldNanos;
+
+    OutletMetrics(int outlets) {
+        this(outlets, TimeUnit.SECONDS.toNanos(DEFAULT_WINDOW_SECONDS), (int) DEFAULT_WINDOW_SECONDS);
+    }
+
+    /**
+     * @param outlets number of outlets of the machine
+     * @param windowNanos length of the sliding window of the waiting peak
+     * @param slots number of slots the window is divided into, the window slides
+     *              one slot at a time
+     */
+    OutletMetrics(int outlets, long windowNanos, int slots) {
+        if (windowNanos <= 0 || slots <= 0 || windowNanos < slots)
+            throw new IllegalArgumentException("window of " + windowNanos + "ns cannot be divided in " + slots +
+                    " slots");
+        this.outlets = outlets;
+        this.peaks = new AtomicLongArray(slots);
+        this.slotNanos = windowNanos / slots;
+    }
+
+    /**
+     * an order starts waiting for an outlet
+     */
+    void waiting() {
+        int depth = waiting.incrementAndGet();
+        long slot = (System.nanoTime() - origin) / slotNanos;
+        int index = (int) (slot % peaks.length());
+        long packed = (slot << DEPTH_BITS) | Math.min(depth, DEPTH_MASK);
+        while (true) {
+            long current = peaks.get(index);
+            if ((current >>> DEPTH_BITS) == slot && (current & DEPTH_MASK) >= depth)
+                return;
+            if (peaks.compareAndSet(index, current, packed))
+                return;
+        }
+    }
+
+    /**
+     * an order waiting for an outlet got one
+     *
+     * @param waitNanos time the order waited
+     */
+    void acquired(long waitNanos) {
+        waiting.decrementAndGet();
+        acquireTime.record(waitNanos);
+    }
+
+    /**
+     * an order stopped waiting without an outlet, cancelled or interrupted
+     */
+    void abandoned() {
+        waiting.decrementAndGet();
+    }
+
+    /**
+     * an outlet is taken. Held times are kept relative to the creation of
+     * the metrics so that summing them cannot overflow.
+     *
+     * @param now @{@link System#nanoTime()} at which it was taken
+     */
+    void held(long now) {
+        held.incrementAndGet();
+        heldSince.add(now - origin);
+    }
+
+    /**
+     * an outlet taken at heldAt is released
+     *
+     * @param heldAt @{@link System#nanoTime()} at which it was taken
+     */
+    void released(long heldAt) {
+        long now = System.nanoTime();
+        releasedBusyNanos.add(now - heldAt);
+        heldSince.add(origin - heldAt);
+        held.decrementAndGet();
+
+        long hold = now - heldAt;
+        long mean = meanHoldNanos;
+        meanHoldNanos = mean == 0 ? Math.max(1, hold) : Math.max(1, mean + (hold - mean) / HOLD_WEIGHT);
+    }
+
+    /**
+     * an order was turned away without waiting, its deadline could not be met
+     */
+    void shed() {
+        shed.increment();
+    }
+
+    /**
+     * @return number of orders waiting for an outlet right now
+     */
+    public int queueLength() {
+        return Math.max(0, waiting.get());
+    }
+
+    /**
+     * @return largest number of orders waiting for an outlet at once within the
+     *          sliding window, at least the current queue length
+     */
+    public int peakQueueLength() {
+        long slot = (System.nanoTime() - origin) / slotNanos;
+        long peak = queueLength();
+        for (int i = 0; i < peaks.length(); i++) {
+            long packed = peaks.get(i);
+            if (slot - (packed >>> DEPTH_BITS) < peaks.length())
+                peak = Math.max(peak, packed & DEPTH_MASK);
+        }
+        return (int) peak;
+    }
+
+    /**
+     * @return number of outlets held right now
+     */
+    public int busyOutlets() {
+        return Math.max(0, held.get());
+    }
+
+    /**
+     * @return mean time an outlet was held over the recent releases, 0 until
+     *          an outlet was released
+     */
+    public long meanHoldNanos() {
+        return meanHoldNanos;
+    }
+
+    /**
+     * @return number of orders turned away without waiting because the queue
+     *          ahead of them could not drain within their deadline
+     */
+    public long shedOrders() {
+        return shed.sum();
+    }
+
+    /**
+     * @return distribution of the time orders waited to get an outlet
+     */
+    public LatencyHistogram.Snapshot acquireTime() {
+        return acquireTime.snapshot();
+    }
+
+    /**
+     * @return outlet busy time and elapsed time at this point
+     */
+    public Snapshot snapshot() {
+        long elapsed = System.nanoTime() - origin;
+        long busy = releasedBusyNanos.sum() + (long) busyOutlets() * elapsed - heldSince.sum();
+        return new Snapshot(outlets, elapsed, Math.max(0, busy));
+    }
+
+    /**
+     * busy outlet time of a machine at one point in time
+     */
+    public static class Snapshot {
+        private final int outlets;
+        private final long elapsedNanos;
+        private final long busyNanos;
+
+        private Snapshot(int outlets, long elapsedNanos, long busyNanos) {
+            this.outlets = outlets;
+            this.elapsedNanos = elapsedNanos;
+            this.busyNanos = busyNanos;
+        }
+
+        /**
+         * @return time since the machine was built
+         */
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return sum of the time every outlet was held since the machine was built
+         */
+        public long busyNanos() {
+            return busyNanos;
+        }
+
+        /**
+         * @return share of outlet time spent busy since the machine was built,
+         *          between 0 and 1
+         */
+        public double utilisation() {
+            return ratio(busyNanos, elapsedNanos);
+        }
+
+        /**
+         * @param earlier snapshot of the same machine
+         * @return share of outlet time spent busy between earlier and this
+         *          snapshot, between 0 and 1
+         */
+        public double utilisationSince(Snapshot earlier) {
+            return ratio(busyNanos - earlier.busyNanos, elapsedNanos - earlier.elapsedNanos);
+        }
+
+        private double ratio(long busy, long elapsed) {
+            if (elapsed <= 0)
+                return 0;
+            return Math.min(1, Math.max(0, (double) busy / ((double) elapsed * outlets)));
+        }
+    }
+}
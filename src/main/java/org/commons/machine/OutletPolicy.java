@@ -0,0 +1,133 @@
+package org.commons.machine;
+
+import java.util.Map;
+
+/**
+ * Order in which orders waiting for an outlet get one. Every waiting order is
+ * given a rank when it starts waiting, the lowest rank gets the next free
+ * outlet and orders of equal rank are served in arrival order.
+ *
+ *   @{@link #fifo()}                  first come first served, the default
+ *   @{@link #shortestBrewFirst}       quick beverages overtake slow ones, with
+ *                                     aging so slow ones are not starved
+ *   @{@link #priorityClasses(Map)}    lower classes first, in arrival order
+ *                                     within a class
+ *
+ * Ranks are fixed when an order starts waiting. Aging is expressed in them:
+ * a rank growing with the arrival time is the same as the rank of every
+ * waiting order shrinking as it waits.
+ *
+ */
+public abstract class OutletPolicy {
+
+    /**
+     * priority class of an order placed without one
+     */
+    public static final int UNSPECIFIED = -1;
+
+    private static final OutletPolicy FIFO = new OutletPolicy() {
+        @Override
+        public long rank(BeverageType type, int priorityClass, long waitingSince) {
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return "fifo";
+        }
+    };
+
+    OutletPolicy() {
+    }
+
+    /**
+     * @param type beverage ordered, null only for an order of no beverage,
+     *             which the machine turns away as not supported
+     * @param priorityClass of the order, @{@link #UNSPECIFIED} if none was given
+     * @param waitingSince nanoseconds from an origin fixed for the machine to
+     *                     the moment the order started waiting
+     * @return rank of the order, lower ranks get an outlet first
+     */
+    public abstract long rank(BeverageType type, int priorityClass, long waitingSince);
+
+    /**
+     * @return first come first served
+     */
+    public static OutletPolicy fifo() {
+        return FIFO;
+    }
+
+    /**
+     * Shortest expected brew first. An order waiting for w nanoseconds is
+     * ranked as if its brew were aging * w nanoseconds shorter, so an order
+     * expected to brew d nanoseconds longer than another is overtaken by it
+     * only if the other arrived less than d / aging nanoseconds later. With
+     * aging 0 a steady stream of quick orders can starve slow ones.
+     *
+     * @param expected brew times, orders of beverages without a profile and
+     *                 unsupported orders of no beverage are expected to brew
+     *                 instantly
+     * @param aging expected brew time an order gains per unit of time waited
+     * @return shortest brew first policy
+     */
+    public static OutletPolicy shortestBrewFirst(BrewTimes expected, double aging) {
+        if (expected == null || aging < 0 || Double.isNaN(aging))
+            throw new IllegalArgumentException("argument for shortest brew first policy is not correct.");
+        BeverageType[] types = BeverageType.values();
+        long[] brewNanos = new long[types.length];
+        for (BeverageType type : types) {
+            BrewProfile profile = expected.profile(type);
+            brewNanos[type.ordinal()] = profile == null ? 0 : profile.meanNanos();
+        }
+
+        return new OutletPolicy() {
+            @Override
+            public long rank(BeverageType type, int priorityClass, long waitingSince) {
+                long brew = type == null ? 0 : brewNanos[type.ordinal()];
+                return brew + (long) (aging * waitingSince);
+            }
+
+            @Override
+            public String toString() {
+                return "shortest brew first, aging " + aging;
+            }
+        };
+    }
+
+    /**
+     * Strict priority classes, class 0 first. An order placed with a class
+     * (see @{@link BaseBeverageMachine#dispenseResult(BeverageType, int)}) keeps
+     * it, others get the class of their beverage, the cups of a batch too.
+     * Beverages without a class and unsupported orders of no beverage come
+     * after every class.
+     *
+     * @param classes priority class of beverages, 0 or more
+     * @return priority class policy
+     */
+    public static OutletPolicy priorityClasses(Map<BeverageType, Integer> classes) {
+        if (classes == null)
+            throw new IllegalArgumentException("argument for priority class policy is not correct.");
+        BeverageType[] types = BeverageType.values();
+        long[] classByType = new long[types.length];
+        for (BeverageType type : types) {
+            Integer priorityClass = classes.get(type);
+            if (priorityClass != null && priorityClass < 0)
+                throw new IllegalArgumentException("priority class of " + type + " cannot be negative");
+            classByType[type.ordinal()] = priorityClass == null ? Integer.MAX_VALUE : priorityClass;
+        }
+
+        return new OutletPolicy() {
+            @Override
+            public long rank(BeverageType type, int priorityClass, long waitingSince) {
+                if (priorityClass != UNSPECIFIED)
+                    return priorityClass;
+                return type == null ? Integer.MAX_VALUE : classByType[type.ordinal()];
+            }
+
+            @Override
+            public String toString() {
+                return "priority classes " + classes;
+            }
+        };
+    }
+}
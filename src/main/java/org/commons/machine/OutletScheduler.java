@@ -0,0 +1,224 @@
+package org.commons.machine;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Outlets of a machine handed out by an @{@link OutletPolicy}. Callers of
+ * dispense park until they are given an outlet, asynchronous orders wait as a
+ * callback, and both kinds share one queue ordered by the policy.
+ *
+ * A released outlet is handed straight to the first waiting order, so an
+ * outlet is never free while orders wait. Taking a free outlet costs an
+ * uncontended lock and allocates nothing, the queue is only touched when
+ * every outlet is busy.
+ *
+ */
+final class OutletScheduler {
+
+    /**
+     * asynchronous order given an outlet
+     */
+    interface Grant {
+        /**
+         * @return false if the order declined the outlet, withdrawn or failed,
+         *          the outlet then goes to the next waiting order
+         */
+        boolean granted();
+    }
+
+    private final OutletPolicy policy;
+    private final long origin = System.nanoTime();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> waiting = new PriorityQueue<>();
+    private int free;
+    private long arrivals;
+
+    OutletScheduler(int outlets, OutletPolicy policy) {
+        if (policy == null)
+            throw new IllegalArgumentException("outlet policy cannot be null");
+        this.free = outlets;
+        this.policy = policy;
+    }
+
+    OutletPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * park until given an outlet
+     *
+     * @throws InterruptedException if interrupted before getting one
+     */
+    void acquire(BeverageType type, int priorityClass) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        Waiter waiter = takeOrWait(type, priorityClass, null);
+        if (waiter != null)
+            await(waiter, false, 0);
+    }
+
+    /**
+     * park until given an outlet or until timeoutNanos elapsed
+     *
+     * @return true if given an outlet, false if none was free in time
+     * @throws InterruptedException if interrupted before getting one
+     */
+    boolean acquire(BeverageType type, int priorityClass, long timeoutNanos) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        Waiter waiter = takeOrWait(type, priorityClass, null);
+        return waiter == null || await(waiter, true, System.nanoTime() + timeoutNanos);
+    }
+
+    /**
+     * park until waiter is given an outlet. A waiter interrupted or out of
+     * time is withdrawn from the queue, unless it was given an outlet in the
+     * meantime: the outlet is then on its way and is waited for.
+     *
+     * @return true if given an outlet, false if withdrawn at the deadline
+     * @throws InterruptedException if withdrawn on interrupt
+     */
+    private boolean await(Waiter waiter, boolean timed, long deadline)
+            throws InterruptedException {
+        boolean interrupted = false;
+        boolean granting = false;
+        try {
+            while (!waiter.granted) {
+                if (timed && !granting) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        if (withdraw(waiter))
+                            return false;
+                        granting = true;
+                        continue;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
+
+                if (Thread.interrupted()) {
+                    if (!granting) {
+                        if (withdraw(waiter)) {
+                            interrupted = false;
+                            throw new InterruptedException();
+                        }
+                        granting = true;
+                    }
+                    interrupted = true;
+                }
+            }
+            return true;
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * give an outlet to grant, now if one is free, else once released
+     */
+    void acquireLater(BeverageType type, int priorityClass, Grant grant) {
+        if (takeOrWait(type, priorityClass, grant) == null && !grant.granted())
+            release();
+    }
+
+    /**
+     * withdraw grant from the queue, an asynchronous order given up before it
+     * got an outlet
+     *
+     * @return true if grant was waiting and is withdrawn, false if it was
+     *          given an outlet or never waited
+     */
+    boolean withdraw(Grant grant) {
+        lock.lock();
+        try {
+            return waiting.removeIf(waiter -> waiter.grant == grant);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * release an outlet, handing it to the first waiting order if any
+     */
+    void release() {
+        while (true) {
+            Waiter next;
+            lock.lock();
+            try {
+                next = waiting.poll();
+                if (next == null) {
+                    free++;
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (next.thread != null) {
+                next.granted = true;
+                LockSupport.unpark(next.thread);
+                return;
+            }
+            if (next.grant.granted())
+                return;
+        }
+    }
+
+    /**
+     * @return null if a free outlet was taken, else the waiter queued
+     */
+    private Waiter takeOrWait(BeverageType type, int priorityClass, Grant grant) {
+        lock.lock();
+        try {
+            if (free > 0) {
+                free--;
+                return null;
+            }
+            Waiter waiter = new Waiter(policy.rank(type, priorityClass, System.nanoTime() - origin), arrivals++,
+                    grant == null ? Thread.currentThread() : null, grant);
+            waiting.add(waiter);
+            return waiter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if waiter was still waiting and is withdrawn, false if it
+     *          was given an outlet meanwhile
+     */
+    private boolean withdraw(Waiter waiter) {
+        lock.lock();
+        try {
+            return waiting.remove(waiter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Waiter implements Comparable<Waiter> {
+        private final long rank;
+        private final long arrival;
+        private final Thread thread;
+        private final Grant grant;
+        private volatile boolean granted;
+
+        private Waiter(long rank, long arrival, Thread thread, Grant grant) {
+            this.rank = rank;
+            this.arrival = arrival;
+            this.thread = thread;
+            this.grant = grant;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            if (rank != other.rank)
+                return Long.compare(rank, other.rank);
+            return Long.compare(arrival, other.arrival);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.commons.machine;
+
+import org.commons.ingredients.IngredientContainer;
+import org.commons.ingredients.IngredientType;
+import org.exceptions.BeverageTypeNotSupportedException;
+import org.exceptions.IncorrectIngredientTypeException;
+import org.exceptions.RequestedQuantityNotPresentException;
+import org.exceptions.RequestedQuantityNotSufficientException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Recipe driven beverage machine which brews any set of beverages from any
+ *  set of ingredient containers, paralelly for outlet number of people.
+ *
+ *   Recipe beverage machine = Noutlet Base beverage machine +
+ *                             one brewing module per recipe +
+ *                             pluggable ingredient container per ingredient.
+ *
+ *  Where @{@link HotWaterMachine}, @{@link GreenTeaMachine} and the other
+ *  brewing modules hard code their ingredients, this machine compiles every
+ *  recipe at build time into a flat plan of container slots and amounts
+ *  (@{@link IngredientReservation}) indexed by @{@link BeverageType} ordinal.
+ *  Brewing a cup is an array lookup followed by the same reservation loop
+ *  for every beverage, with no switch over beverage or ingredient types.
+ *
+ *  Only ingredients with a non zero quantity in a recipe are part of its plan,
+ *  so an empty container never stops a beverage which does not use it.
+ *
+ */
+public class RecipeBeverageMachine extends BaseBeverageMachine {
+
+    /**
+     * compiled recipe per beverage, null for beverages not served
+     */
+    private IngredientReservation[] plans;
+
+    /**
+     * ingredient containers indexed by @{@link IngredientType} ordinal,
+     * null for ingredients the machine does not hold
+     */
+    private IngredientContainer[] containers;
+
+    /**
+     * largest quantity any recipe needs of an ingredient, by ordinal
+     */
+    private int[] largestAmount;
+
+    private RecipeBeverageMachine(int outlet) {
+        super(outlet);
+    }
+
+    /**
+     * retrieve ingredients of the beverage by running its compiled plan.
+     * Either every ingredient of the recipe is retrieved or none of them.
+     *
+     * @param type is one of the beverage type
+     * @throws BeverageTypeNotSupportedException if no recipe was added for type
+     * @throws RequestedQuantityNotPresentException
+     * @throws RequestedQuantityNotSufficientException
+     */
+    @Override
+    public void brew(BeverageType type) throws BeverageTypeNotSupportedException,
+            RequestedQuantityNotPresentException, RequestedQuantityNotSufficientException {
+        IngredientReservation plan = plan(type);
+        if (plan == null)
+            throw new BeverageTypeNotSupportedException("BeverageType="+ type + " " +
+                    BeverageOutputMessage.NOT_SUPPORTED + " in " + this.getClass().getSimpleName());
+
+        plan.tryReserve().raiseIfShort(type);
+    }
+
+    /**
+     * retrieve ingredients of the beverage without throwing, the shortage of
+     * an ingredient is reported in the returned outcome.
+     *
+     * @param type is one of the beverage type
+     * @return outcome of the brew
+     */
+    @Override
+    public BrewOutcome tryBrew(BeverageType type) {
+        IngredientReservation plan = plan(type);
+        return plan == null ? BrewOutcome.NOT_SUPPORTED : plan.tryReserve();
+    }
+
+    /**
+     * compiled plan of the recipe, used to dispense batches of orders
+     *
+     * @param type is one of the BeverageType beverage
+     * @return reservation of one cup of type, null if not served
+     */
+    @Override
+    protected IngredientReservation reservation(BeverageType type) {
+        return plan(type);
+    }
+
+    private IngredientReservation plan(BeverageType type) {
+        return type == null ? null : plans[type.ordinal()];
+    }
+
+    /**
+     * @param type is one of the BeverageType beverage
+     * @return true if a recipe was added for type
+     */
+    public boolean serves(BeverageType type) {
+        return plan(type) != null;
+    }
+
+    /**
+     * @param type it is one of the @{@link IngredientType}.
+     * @return quantity of the ingredient in its container, 0 if the machine
+     *          has no container for it
+     */
+    @Override
+    public int ingredientLevel(IngredientType type) {
+        IngredientContainer container = container(type);
+        return container == null ? 0 : container.quantity();
+    }
+
+    /**
+     * Refill of an ingredient the machine holds a container for
+     *
+     * @param type it is one of @{@link IngredientType}.
+     *             if the machine has no container for the ingredient
+     *             @{@link IncorrectIngredientTypeException} is thrown
+     * @param amount quantity of the ingredient being refilled
+     * @throws IncorrectIngredientTypeException
+     */
+    @Override
+    public void refillIngredient(IngredientType type, int amount) throws IncorrectIngredientTypeException {
+        IngredientContainer container = container(type);
+        if (container == null)
+            throw new IncorrectIngredientTypeException("Refill of Ingredient Type=" + type +
+                    BeverageOutputMessage.NOT_SUPPORTED  + " in " + this.getClass().getSimpleName());
+        container.refill(amount);
+    }
+
+    private IngredientContainer container(IngredientType type) {
+        return type == null ? null : containers[type.ordinal()];
+    }
+
+    /**
+     * List ingredients running low in the ingredient containers. An ingredient
+     * is running low when its quantity is not sufficient for a cup of at least
+     * one of the recipes using it.
+     *
+     * @return list of ingredients running low, in @{@link IngredientType} order
+     */
+    @Override
+    public List<IngredientType> ingredientsRunningLow() {
+        List<IngredientType> ingredientTypeList = new ArrayList<>();
+        for (int ordinal = 0; ordinal < containers.length; ordinal++) {
+            if (containers[ordinal] != null && containers[ordinal].quantity() < largestAmount[ordinal])
+                ingredientTypeList.add(containers[ordinal].type());
+        }
+        return ingredientTypeList;
+    }
+
+    /**
+     * Builder pattern to build a recipe beverage machine. Recipes and containers
+     * can be added in any order, recipes are compiled in @{@link #build()}.
+     */
+    public static class Builder extends MachineBuilder<Builder> {
+        private int outlet;
+        private IngredientContainer[] containers = new IngredientContainer[IngredientType.values().length];
+        private BeverageComposition[] recipes = new BeverageComposition[BeverageType.values().length];
+
+        public Builder outlet(int outlet) {
+            this.outlet = outlet;
+            return this;
+        }
+
+        /**
+         * plug the container of an ingredient, replacing any container of the
+         * same ingredient type added before
+         */
+        public Builder addIngredientContainer(IngredientContainer container) {
+            if (container == null)
+                throw new IllegalArgumentException("ingredient container cannot be null");
+            containers[container.type().ordinal()] = container;
+            return this;
+        }
+
+        /**
+         * add the recipe of a beverage, replacing any recipe of the same beverage
+         * added before. The recipe is frozen, later puts on it do not change the
+         * machine.
+         */
+        public Builder addRecipe(BeverageType type, BeverageComposition beverageRecipe) {
+            if (type == null || beverageRecipe == null)
+                throw new IllegalArgumentException("Illegal argument check[type=" + type + "" +
+                        ", recipe=" + beverageRecipe + "]");
+            recipes[type.ordinal()] = beverageRecipe.freeze();
+            return this;
+        }
+
+        public RecipeBeverageMachine build() {
+            IngredientReservation[] plans = new IngredientReservation[recipes.length];
+            int[] largestAmount = new int[containers.length];
+            boolean anyRecipe = false;
+            for (int ordinal = 0; ordinal < recipes.length; ordinal++) {
+                BeverageComposition recipe = recipes[ordinal];
+                if (recipe == null) continue;
+
+                anyRecipe = true;
+                plans[ordinal] = IngredientReservation.compile(recipe, containers);
+                for (int i = 0; i < recipe.ingredientCount(); i++) {
+                    int ingredient = recipe.ingredientAt(i).ordinal();
+                    largestAmount[ingredient] = Math.max(largestAmount[ingredient], recipe.quantityAt(i));
+                }
+            }
+            if (!anyRecipe)
+                throw new IllegalArgumentException("argument for " + RecipeBeverageMachine.class.getSimpleName() +
+                        " construction is not correct.");
+
+            RecipeBeverageMachine recipeBeverageMachine = new RecipeBeverageMachine(outlet);
+            recipeBeverageMachine.plans = plans;
+            recipeBeverageMachine.containers = containers.clone();
+            recipeBeverageMachine.largestAmount = largestAmount;
+            configure(recipeBeverageMachine);
+            return recipeBeverageMachine;
+        }
+    }
+}
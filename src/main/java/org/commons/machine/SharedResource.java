@@ -0,0 +1,51 @@
+package org.commons.machine;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Equipment shared by the outlets of a machine which limits how many brews
+ * run at once, a heater with two elements for instance. A brew whose
+ * @{@link BrewProfile} uses the resource holds one unit of its capacity for the
+ * whole brew, and outlets wait for a unit when all of them are taken.
+ *
+ */
+public class SharedResource {
+
+    private final String name;
+    private final int capacity;
+    private final Semaphore units;
+
+    /**
+     * @param name of the equipment, e.g. heater
+     * @param capacity number of brews it serves at once
+     */
+    public SharedResource(String name, int capacity) {
+        if (name == null || capacity <= 0)
+            throw new IllegalArgumentException("argument for " + SharedResource.class.getSimpleName() +
+                    " construction is not correct.");
+        this.name = name;
+        this.capacity = capacity;
+        this.units = new Semaphore(capacity, true);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    void acquire() {
+        units.acquireUninterruptibly();
+    }
+
+    void release() {
+        units.release();
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + capacity + ")";
+    }
+}
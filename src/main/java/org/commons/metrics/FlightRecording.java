@@ -0,0 +1,87 @@
+package org.commons.metrics;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tells whether a flight recording is running in the JVM, so custom events
+ * are only allocated while something can record them.
+ *
+ * Checking an event with shouldCommit needs the event object first, and
+ * escape analysis is not guaranteed to remove it. Instead the state of every
+ * recording is tracked through a @{@link FlightRecorderListener} and
+ * @{@link #isRunning()} is a single volatile read. Neither this class nor the
+ * listener starts flight recorder.
+ *
+ * The machine runs on Java 8 JVMs without flight recorder (8 before u262,
+ * OpenJ9). The jdk.jfr classes are only touched by the listener, registered
+ * once when this class is loaded; where they are missing
+ * @{@link #isAvailable()} is false, @{@link #isRunning()} stays false and no
+ * event class is ever loaded.
+ *
+ */
+public final class FlightRecording {
+
+    private static volatile boolean running;
+    private static final boolean AVAILABLE = listen();
+
+    private FlightRecording() {
+    }
+
+    private static boolean listen() {
+        try {
+            RecordingListener.register();
+            return true;
+        } catch (LinkageError | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the JVM has flight recorder, whether or not it records
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * @return true while at least one recording is running
+     */
+    public static boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * state of every recording, the only class referring to jdk.jfr
+     */
+    private static final class RecordingListener implements FlightRecorderListener {
+
+        private static final Set<Recording> RUNNING = ConcurrentHashMap.newKeySet();
+
+        private static void register() {
+            FlightRecorder.addListener(new RecordingListener());
+            if (FlightRecorder.isInitialized()) {
+                for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings())
+                    changed(recording);
+            }
+        }
+
+        @Override
+        public void recordingStateChanged(Recording recording) {
+            changed(recording);
+        }
+
+        private static synchronized void changed(Recording recording) {
+            if (recording.getState() == RecordingState.RUNNING)
+                RUNNING.add(recording);
+            else
+                RUNNING.remove(recording);
+            running = !RUNNING.isEmpty();
+        }
+    }
+}
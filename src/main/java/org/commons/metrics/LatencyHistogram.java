@@ -0,0 +1,150 @@
+package org.commons.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds with log-linear buckets.
+ *
+ * Every power of two range is split in @{@link #SUB_BUCKETS} linear buckets, so
+ * a recorded value is known within 1/16 (about 6%) of itself whatever its
+ * magnitude. Values below 16ns get a bucket each and values above
+ * @{@link #MAX_TRACKABLE} (about 18 minutes) are counted in the last bucket.
+ *
+ * Memory is fixed when the histogram is created and recording allocates
+ * nothing: a bucket is found with a few shifts and incremented atomically.
+ * Snapshots are read without any lock and never block recording, so a
+ * snapshot taken while values are recorded may miss some of them but every
+ * bucket it reports is a count that really existed.
+ *
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * linear buckets per power of two
+     */
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * largest value told apart from larger ones, 2^40 - 1 nanoseconds
+     */
+    public static final long MAX_TRACKABLE = (1L << 40) - 1;
+
+    private static final int BUCKETS = index(MAX_TRACKABLE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * record a duration, negative durations are recorded as 0
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : nanos;
+        counts.incrementAndGet(index(Math.min(value, MAX_TRACKABLE)));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return copy of the histogram at this point in time
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, sum.sum(), max.get());
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int mantissa = (int) (value >>> shift);
+        return SUB_BUCKETS * (shift + 1) + mantissa - SUB_BUCKETS;
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int shift = index / SUB_BUCKETS - 1;
+        long mantissa = SUB_BUCKETS + index % SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * immutable copy of a @{@link LatencyHistogram}
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return number of recorded durations
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @return largest recorded duration in nanoseconds, 0 if none
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * @return mean recorded duration in nanoseconds, 0 if none
+         */
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return upper bound of the bucket holding the percentile, never
+         *          above @{@link #max()}. @{@link #max()} if the percentile lies
+         *          above @{@link #MAX_TRACKABLE}, 0 if nothing was recorded.
+         */
+        public long percentile(double percentile) {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException("percentile should be between 0 and 100");
+            if (count == 0)
+                return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return i == counts.length - 1 ? max : Math.min(highestValue(i), max);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + (long) mean() + "ns, p50=" + percentile(50) + "ns, p99=" +
+                    percentile(99) + "ns, max=" + max + "ns";
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package org.commons.reactive;
+
+import org.commons.machine.BaseBeverageMachine;
+import org.commons.machine.BeverageType;
+import org.commons.machine.DispenseExecutors;
+import org.commons.machine.DispenseResult;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Reactive dispense endpoint of a @{@link BaseBeverageMachine}: subscribes to
+ * a publisher of @{@link BeverageType} orders and publishes the
+ * @{@link DispenseResult} of every order.
+ *
+ *   orders publisher -> DispenseProcessor (one order per outlet) -> results subscriber
+ *
+ * Demand follows the capacity of the machine instead of piling orders into an
+ * unbounded queue. The processor asks its publisher for an order only while
+ * fewer orders than the machine has outlets are in flight, and only while the
+ * subscriber of the results requested more results than are in flight. A
+ * poured cup frees its outlet and so asks for the next order. A slow
+ * subscriber of the results slows down the orders, so does a slow machine.
+ *
+ * Every order is dispensed with @{@link BaseBeverageMachine#dispenseResult(BeverageType)}
+ * on the executor of the processor, so a result is the one a synchronous
+ * dispense of the same order returns: the same status and the same message,
+ * an out of stock ingredient is a result and not an error. Results are
+ * published as the cups are poured, which is not always the order in which
+ * they were ordered; @{@link DispenseResult#beverage()} tells which beverage a
+ * result is for.
+ *
+ * The results complete, or fail with the error of the orders, once every
+ * order in flight was poured. A processor serves one subscriber and one
+ * publisher; it does not keep the machine for itself, orders placed by other
+ * callers wait for the outlets alongside its own.
+ *
+ */
+public class DispenseProcessor implements Flow.Processor<BeverageType, DispenseResult> {
+
+    private static final Flow.Subscription REFUSED = new Flow.Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final BaseBeverageMachine machine;
+    private final Executor executor;
+    private final int outlets;
+
+    /**
+     * subscription to the orders, null until subscribed
+     */
+    private Flow.Subscription upstream;
+
+    /**
+     * subscriber of the results, null until it was handed its subscription
+     */
+    private Flow.Subscriber<? super DispenseResult> downstream;
+    private boolean subscribed;
+
+    /**
+     * results requested by the subscriber and not yet published, orders
+     * requested from the publisher and not yet received, orders being
+     * dispensed and results waiting to be published. Guarded by this.
+     */
+    private long requested;
+    private long asked;
+    private int dispensing;
+    private final Queue<DispenseResult> poured = new ArrayDeque<>();
+
+    /**
+     * set once the orders completed or failed with error
+     */
+    private boolean done;
+    private Throwable error;
+
+    /**
+     * non positive request of the subscriber, published as its error
+     */
+    private IllegalArgumentException invalidRequest;
+    private boolean cancelled;
+    private boolean terminated;
+
+    /**
+     * true while a thread publishes results, the only one signalling the
+     * subscriber and requesting orders
+     */
+    private boolean emitting;
+
+    /**
+     * processor dispensing on the default executor of @{@link DispenseExecutors}
+     *
+     * @param machine dispensing the orders
+     */
+    public DispenseProcessor(BaseBeverageMachine machine) {
+        this(machine, DispenseExecutors.defaultExecutor());
+    }
+
+    /**
+     * @param machine dispensing the orders
+     * @param executor runs the dispense of every order, at most one task per
+     *                 outlet of machine at a time
+     */
+    public DispenseProcessor(BaseBeverageMachine machine, Executor executor) {
+        if (machine == null || executor == null)
+            throw new IllegalArgumentException("argument for " + DispenseProcessor.class.getSimpleName() +
+                    " construction is not correct.");
+        this.machine = machine;
+        this.executor = executor;
+        this.outlets = machine.outlet();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (subscription == null)
+            throw new NullPointerException("subscription cannot be null");
+
+        boolean accepted;
+        synchronized (this) {
+            accepted = upstream == null && !cancelled;
+            if (accepted)
+                upstream = subscription;
+        }
+        if (!accepted) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(BeverageType type) {
+        if (type == null)
+            throw new NullPointerException("order cannot be null");
+
+        synchronized (this) {
+            if (cancelled || done)
+                return;
+            asked = Math.max(0, asked - 1);
+            dispensing++;
+        }
+        try {
+            executor.execute(() -> poured(dispense(type)));
+        } catch (RejectedExecutionException ree) {
+            poured(DispenseResult.failed(type, "order was rejected by its executor"));
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (throwable == null)
+            throw new NullPointerException("error cannot be null");
+
+        synchronized (this) {
+            if (done)
+                return;
+            done = true;
+            error = throwable;
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            done = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super DispenseResult> subscriber) {
+        if (subscriber == null)
+            throw new NullPointerException("subscriber cannot be null");
+
+        boolean accepted;
+        synchronized (this) {
+            accepted = !subscribed;
+            subscribed = true;
+        }
+        if (!accepted) {
+            subscriber.onSubscribe(REFUSED);
+            subscriber.onError(new IllegalStateException(DispenseProcessor.class.getSimpleName() +
+                    " serves a single subscriber"));
+            return;
+        }
+
+        subscriber.onSubscribe(new ResultSubscription());
+        synchronized (this) {
+            downstream = subscriber;
+        }
+        drain();
+    }
+
+    private DispenseResult dispense(BeverageType type) {
+        try {
+            return machine.dispenseResult(type);
+        } catch (RuntimeException e) {
+            return DispenseResult.failed(type, e.getMessage());
+        }
+    }
+
+    private void poured(DispenseResult result) {
+        synchronized (this) {
+            dispensing--;
+            if (!cancelled)
+                poured.add(result);
+        }
+        drain();
+    }
+
+    /**
+     * publish the results the subscriber requested, ask for the orders the
+     * outlets and the demand allow and signal the end of the results. A
+     * thread finding another one emitting leaves the work to it, which looks
+     * at the state again before it stops.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (emitting)
+                return;
+            emitting = true;
+        }
+
+        while (true) {
+            Flow.Subscriber<? super DispenseResult> subscriber;
+            Flow.Subscription subscription;
+            List<DispenseResult> results = Collections.emptyList();
+            long ask = 0;
+            boolean cancel = false;
+            boolean terminate = false;
+            Throwable failure = null;
+
+            synchronized (this) {
+                subscriber = downstream;
+                subscription = upstream;
+                if (subscriber != null && !terminated) {
+                    if (invalidRequest != null) {
+                        terminate = true;
+                        failure = invalidRequest;
+                        cancel = true;
+                        cancelled = true;
+                        poured.clear();
+                    } else if (!cancelled) {
+                        if (requested > 0 && !poured.isEmpty())
+                            results = new ArrayList<>(poured.size());
+                        while (requested > 0 && !poured.isEmpty()) {
+                            results.add(poured.poll());
+                            if (requested != Long.MAX_VALUE)
+                                requested--;
+                        }
+                        if (done && poured.isEmpty() && dispensing == 0) {
+                            terminate = true;
+                            failure = error;
+                        }
+                    }
+                    terminated = terminate;
+                }
+
+                if (subscription != null && !done && !cancelled) {
+                    long inFlight = asked + dispensing;
+                    ask = Math.min(outlets - inFlight, requested - inFlight - poured.size());
+                    if (ask > 0)
+                        asked += ask;
+                }
+
+                if (results.isEmpty() && ask <= 0 && !terminate) {
+                    emitting = false;
+                    return;
+                }
+            }
+
+            for (DispenseResult result : results)
+                subscriber.onNext(result);
+            if (ask > 0)
+                subscription.request(ask);
+            if (cancel && subscription != null)
+                subscription.cancel();
+            if (terminate) {
+                if (failure == null)
+                    subscriber.onComplete();
+                else
+                    subscriber.onError(failure);
+            }
+        }
+    }
+
+    /**
+     * demand of the subscriber of the results
+     */
+    private final class ResultSubscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            synchronized (DispenseProcessor.this) {
+                if (n <= 0) {
+                    if (invalidRequest == null)
+                        invalidRequest = new IllegalArgumentException("non positive request " + n);
+                } else {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription subscription;
+            synchronized (DispenseProcessor.this) {
+                if (cancelled)
+                    return;
+                cancelled = true;
+                poured.clear();
+                subscription = upstream;
+            }
+            if (subscription != null)
+                subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.commons.reactive;
+
+/**
+ * Interfaces of reactive streams, the same as java.util.concurrent.Flow of
+ * Java 9 and later, for the Java 8 the machine is built for. A publisher and
+ * a subscriber of Flow, or of the org.reactivestreams interfaces, are plugged
+ * in with a one line adapter per interface, and moving to the JDK interfaces
+ * is a change of import.
+ *
+ * A subscriber receives at most as many items as it requested through its
+ * @{@link Subscription}, this is how a slow consumer holds back a fast
+ * producer.
+ *
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    /**
+     * producer of items received by subscribers as they request them
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+
+        /**
+         * add subscriber, which is handed its subscription through
+         * @{@link Subscriber#onSubscribe(Subscription)}. A publisher refusing
+         * the subscriber signals @{@link Subscriber#onError(Throwable)}.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * receiver of items, called one signal at a time
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * first signal, nothing is received before the subscriber requests it
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * next item, never more items than requested
+         */
+        void onNext(T item);
+
+        /**
+         * last signal if the publisher failed
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * last signal if every item was published
+         */
+        void onComplete();
+    }
+
+    /**
+     * link between a publisher and one subscriber
+     */
+    public interface Subscription {
+
+        /**
+         * add n items to the demand of the subscriber, a non positive n is
+         * signalled as @{@link IllegalArgumentException} to the subscriber
+         */
+        void request(long n);
+
+        /**
+         * stop receiving items, eventually
+         */
+        void cancel();
+    }
+
+    /**
+     * stage both subscriber of items and publisher of what it makes of them
+     */
+    public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+}
@@ -0,0 +1,117 @@
+package org.commons.simulation;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Single threaded scheduler of a simulation running on a @{@link VirtualClock}.
+ *
+ * Tasks run in the order of the virtual time they are due at. Tasks due at the
+ * same instant - two customers ordering in the same millisecond, an outlet
+ * freed as another order arrives - are what threads of a real machine would
+ * race on; the scheduler orders them by a rank drawn from a random generator
+ * seeded once. The same seed and the same tasks scheduled in the same order
+ * therefore always run in exactly the same interleaving, and another seed
+ * explores another one.
+ *
+ */
+public class SeededScheduler {
+
+    private final long seed;
+    private final Random random;
+    private final VirtualClock clock = new VirtualClock();
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+    private long scheduled;
+
+    public SeededScheduler(long seed) {
+        this.seed = seed;
+        this.random = new Random(seed);
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public VirtualClock clock() {
+        return clock;
+    }
+
+    /**
+     * @return seeded generator shared by everything random in the simulation,
+     *          so brew times drawn from it replay with the seed too
+     */
+    Random random() {
+        return random;
+    }
+
+    /**
+     * @param at virtual time the action is due at, not before now
+     * @param action to run
+     */
+    public void schedule(long at, Runnable action) {
+        if (at < clock.now() || action == null)
+            throw new IllegalArgumentException("task cannot be scheduled at " + at + ", now is " + clock.now());
+        tasks.add(new Task(at, random.nextLong(), scheduled++, action));
+    }
+
+    /**
+     * @param delay from now, in nanoseconds
+     * @param action to run
+     */
+    public void scheduleAfter(long delay, Runnable action) {
+        schedule(clock.now() + delay, action);
+    }
+
+    /**
+     * advance the clock to the next task due and run it
+     *
+     * @return false if no task was left
+     */
+    public boolean runNext() {
+        Task task = tasks.poll();
+        if (task == null)
+            return false;
+        clock.advanceTo(task.at);
+        task.action.run();
+        return true;
+    }
+
+    /**
+     * run tasks, including the ones they schedule, until none is left
+     */
+    public void run() {
+        while (runNext()) {
+            // every task is run by runNext
+        }
+    }
+
+    /**
+     * @return number of tasks not run yet
+     */
+    public int pending() {
+        return tasks.size();
+    }
+
+    private static class Task implements Comparable<Task> {
+        private final long at;
+        private final long rank;
+        private final long sequence;
+        private final Runnable action;
+
+        private Task(long at, long rank, long sequence, Runnable action) {
+            this.at = at;
+            this.rank = rank;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (at != other.at)
+                return Long.compare(at, other.at);
+            if (rank != other.rank)
+                return Long.compare(rank, other.rank);
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package org.commons.simulation;
+
+import org.commons.ingredients.IngredientType;
+import org.commons.loadgen.LoadProfile;
+import org.commons.machine.BaseBeverageMachine;
+import org.commons.machine.BeverageType;
+import org.commons.machine.BrewOutcome;
+import org.commons.machine.BrewPipeline;
+import org.commons.machine.BrewProfile;
+import org.commons.machine.BrewStatus;
+import org.commons.machine.BrewTimes;
+import org.commons.machine.DispenseResult;
+import org.commons.machine.OutletPolicy;
+import org.commons.machine.SharedResource;
+import org.exceptions.IncorrectIngredientTypeException;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deterministic discrete event simulation of a @{@link BaseBeverageMachine}
+ * on a @{@link VirtualClock}. Orders and refills are scheduled at virtual
+ * times, outlets are modelled after the machine (as many as it has, handed to
+ * waiting orders by its @{@link OutletPolicy}) and brewing runs the
+ * machine's own @{@link BaseBeverageMachine#tryBrewAdmitted(BeverageType, long)}
+ * against its real ingredient containers, drawing the ingredients when an
+ * order gets its outlet. Rate limits of its admission policy run on virtual
+ * time.
+ *
+ * With @{@link BrewTimes}, the machine's own unless the simulation is given
+ * others, a prepared cup keeps its outlet for a brew time drawn
+ * from the profile of its beverage, waiting first for the
+ * @{@link SharedResource} of the profile if any. The
+ * @{@link SimulationReport} of the run then predicts cups per hour, queue
+ * lengths and outlet waits of a site for an outlet count and an order mix.
+ *
+ * The @{@link BrewPipeline} of the machine is modelled too: an order draws its
+ * ingredients as it arrives, goes through every stage serving its beverage,
+ * waiting for one of the capacity units of the stage and holding it for a time
+ * drawn from the stage, and only then waits for an outlet.
+ *
+ * Everything runs on the calling thread. Which of the orders placed at the
+ * same instant reaches the containers first is decided by the
+ * @{@link SeededScheduler}, which also draws the brew times, so the same seed
+ * replays bit for bit the same interleaving of a whole day of orders in
+ * milliseconds, and other seeds explore the other interleavings a real machine
+ * could produce. Interleaving is modelled at the granularity of orders and
+ * refills: races inside a brew are the business of the stress tests.
+ *
+ * A simulation runs once, the machine it drives keeps the resulting levels.
+ *
+ */
+public class Simulation {
+
+    private final BaseBeverageMachine machine;
+    private final BrewTimes brewTimes;
+    private final SeededScheduler scheduler;
+    private final SimulationTrace trace = new SimulationTrace();
+    private final OutletPolicy policy;
+    private final Queue<Order> waiting = new PriorityQueue<>();
+    private final Map<SharedResource, Resource> resources = new IdentityHashMap<>();
+    private final BrewPipeline pipeline;
+    private final Resource[] stages;
+    private final int outlets;
+    private int freeOutlets;
+    private int orders;
+    private long arrivals;
+    private boolean ran;
+
+    /**
+     * integrals over virtual time of the queue length and of the busy outlets,
+     * accumulated up to lastChange
+     */
+    private long lastChange;
+    private double queuedNanos;
+    private double busyNanos;
+    private int longestQueue;
+
+    private Simulation(BaseBeverageMachine machine, BrewTimes brewTimes, long seed) {
+        this.machine = machine;
+        this.brewTimes = brewTimes != null ? brewTimes : machine.brewTimes();
+        this.scheduler = new SeededScheduler(seed);
+        this.policy = machine.outletPolicy();
+        this.outlets = machine.outlet();
+        this.freeOutlets = outlets;
+        this.pipeline = machine.pipeline();
+        this.stages = new Resource[pipeline == null ? 0 : pipeline.stages().size()];
+        for (int i = 0; i < stages.length; i++)
+            stages[i] = new Resource(pipeline.stages().get(i).capacity());
+    }
+
+    /**
+     * place an order at a virtual time
+     *
+     * @param at time since the start of the simulation
+     * @param unit of at
+     * @param type beverage ordered
+     * @return this simulation
+     */
+    public Simulation order(long at, TimeUnit unit, BeverageType type) {
+        Order order = new Order(orders++, type, unit.toNanos(at));
+        scheduler.schedule(order.placedAt, () -> arrive(order));
+        return this;
+    }
+
+    /**
+     * place every order of a load profile, at its recorded time or at the
+     * arrival rate of the profile. Orders of a profile without either are all
+     * placed at the start.
+     *
+     * @param profile order stream
+     * @return this simulation
+     */
+    public Simulation orders(LoadProfile profile) {
+        for (int i = 0; i < profile.orders().size(); i++)
+            order(Math.max(0, profile.offsetNanos(i)), TimeUnit.NANOSECONDS, profile.orders().get(i).type());
+        return this;
+    }
+
+    /**
+     * refill an ingredient at a virtual time
+     *
+     * @param at time since the start of the simulation
+     * @param unit of at
+     * @param type ingredient refilled
+     * @param amount refilled
+     * @return this simulation
+     */
+    public Simulation refill(long at, TimeUnit unit, IngredientType type, int amount) {
+        scheduler.schedule(unit.toNanos(at), () -> refill(type, amount));
+        return this;
+    }
+
+    /**
+     * run every order and refill scheduled
+     *
+     * @return what happened, in the order it happened, with its report
+     */
+    public SimulationTrace run() {
+        if (ran)
+            throw new IllegalStateException("simulation already ran");
+        ran = true;
+        scheduler.run();
+        account();
+        trace.report(new SimulationReport(outlets, scheduler.clock().now(), trace.served(), queuedNanos,
+                busyNanos, longestQueue));
+        return trace;
+    }
+
+    /**
+     * @return virtual clock of the simulation
+     */
+    public VirtualClock clock() {
+        return scheduler.clock();
+    }
+
+    public long seed() {
+        return scheduler.seed();
+    }
+
+    /**
+     * add the queue length and busy outlets since the last change to their
+     * integrals, called before either changes
+     */
+    private void account() {
+        long now = scheduler.clock().now();
+        queuedNanos += (double) waiting.size() * (now - lastChange);
+        busyNanos += (double) (outlets - freeOutlets) * (now - lastChange);
+        lastChange = now;
+    }
+
+    private void arrive(Order order) {
+        if (pipeline == null) {
+            queue(order);
+            return;
+        }
+
+        order.drawn = brew(order.type);
+        if (!order.drawn.isPrepared()) {
+            long now = scheduler.clock().now();
+            trace.served(new SimulationTrace.Served(order.index, order.type, order.placedAt, now, now,
+                    order.drawn));
+            return;
+        }
+        throughStages(order, 0);
+    }
+
+    /**
+     * send order through the stages of the pipeline serving its beverage from
+     * the stage at index from on, then queue it for an outlet
+     */
+    private void throughStages(Order order, int from) {
+        for (int i = from; i < stages.length; i++) {
+            BrewProfile profile = pipeline.stages().get(i).times().profile(order.type);
+            if (profile == null)
+                continue;
+
+            Resource stage = stages[i];
+            int following = i + 1;
+            stage.acquire(() -> scheduler.scheduleAfter(profile.sample(scheduler.random()), () -> {
+                stage.release();
+                throughStages(order, following);
+            }));
+            return;
+        }
+        queue(order);
+    }
+
+    private void queue(Order order) {
+        account();
+        if (freeOutlets == 0) {
+            order.rank = policy.rank(order.type, OutletPolicy.UNSPECIFIED, order.placedAt);
+            order.arrival = arrivals++;
+            waiting.add(order);
+            longestQueue = Math.max(longestQueue, waiting.size());
+            return;
+        }
+        freeOutlets--;
+        start(order);
+    }
+
+    private void start(Order order) {
+        long startedAt = scheduler.clock().now();
+        DispenseResult result = order.drawn != null ? order.drawn : brew(order.type);
+        BrewProfile profile = brewTimes == null || !result.isPrepared() ? null : brewTimes.profile(order.type);
+        if (profile == null) {
+            scheduler.schedule(startedAt, () -> pour(order, startedAt, result));
+            return;
+        }
+
+        long brewTime = profile.sample(scheduler.random());
+        if (profile.resource() == null) {
+            scheduler.scheduleAfter(brewTime, () -> pour(order, startedAt, result));
+            return;
+        }
+        Resource resource = resources.computeIfAbsent(profile.resource(),
+                shared -> new Resource(shared.capacity()));
+        resource.acquire(() -> scheduler.scheduleAfter(brewTime, () -> {
+            resource.release();
+            pour(order, startedAt, result);
+        }));
+    }
+
+    private void pour(Order order, long startedAt, DispenseResult result) {
+        account();
+        trace.served(new SimulationTrace.Served(order.index, order.type, order.placedAt, startedAt,
+                scheduler.clock().now(), result));
+        Order next = waiting.poll();
+        if (next == null)
+            freeOutlets++;
+        else
+            start(next);
+    }
+
+    private DispenseResult brew(BeverageType type) {
+        BrewOutcome outcome;
+        try {
+            outcome = machine.tryBrewAdmitted(type, scheduler.clock().now());
+        } catch (RuntimeException e) {
+            outcome = BrewOutcome.failed(e.getMessage());
+        }
+        if (outcome.status() == BrewStatus.NOT_SUPPORTED)
+            return DispenseResult.notSupported(type, machine.getClass().getSimpleName());
+        return DispenseResult.of(type, outcome);
+    }
+
+    private void refill(IngredientType type, int amount) {
+        boolean accepted = true;
+        try {
+            machine.refillIngredient(type, amount);
+        } catch (IncorrectIngredientTypeException iite) {
+            accepted = false;
+        }
+        trace.refilled(new SimulationTrace.Refilled(scheduler.clock().now(), type, amount, accepted));
+    }
+
+    private static class Order implements Comparable<Order> {
+        private final int index;
+        private final BeverageType type;
+        private final long placedAt;
+
+        /**
+         * rank given by the outlet policy and rank of arrival in the queue,
+         * set when the order starts waiting for an outlet
+         */
+        private long rank;
+        private long arrival;
+
+        /**
+         * result of the ingredients drawn as the order entered the pipeline,
+         * null when they are drawn on the outlet
+         */
+        private DispenseResult drawn;
+
+        private Order(int index, BeverageType type, long placedAt) {
+            this.index = index;
+            this.type = type;
+            this.placedAt = placedAt;
+        }
+
+        @Override
+        public int compareTo(Order other) {
+            if (rank != other.rank)
+                return Long.compare(rank, other.rank);
+            return Long.compare(arrival, other.arrival);
+        }
+    }
+
+    /**
+     * units of a shared resource or of a pipeline stage free in the
+     * simulation, and the brews waiting for one, first come first served
+     */
+    private static class Resource {
+        private int free;
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+
+        private Resource(int capacity) {
+            this.free = capacity;
+        }
+
+        private void acquire(Runnable brew) {
+            if (free == 0) {
+                waiting.add(brew);
+                return;
+            }
+            free--;
+            brew.run();
+        }
+
+        private void release() {
+            Runnable next = waiting.poll();
+            if (next == null)
+                free++;
+            else
+                next.run();
+        }
+    }
+
+    /**
+     * Builder of a simulation of a machine with a seed
+     */
+    public static class Builder {
+        private BaseBeverageMachine machine;
+        private BrewTimes brewTimes;
+        private long seed;
+
+        public Builder machine(BaseBeverageMachine machine) {
+            this.machine = machine;
+            return this;
+        }
+
+        /**
+         * time a prepared cup keeps its outlet, the brew times of the machine
+         * when not set and brewing is instant when the machine has none either
+         */
+        public Builder brewTimes(BrewTimes brewTimes) {
+            this.brewTimes = brewTimes;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Simulation build() {
+            if (machine == null)
+                throw new IllegalArgumentException("argument for " + Simulation.class.getSimpleName() +
+                        " construction is not correct.");
+            return new Simulation(machine, brewTimes, seed);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.commons.simulation;
+
+import org.commons.metrics.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capacity prediction of a simulation: cups per hour, how long orders waited
+ * for an outlet, how many waited at once and how busy the outlets were. Run the
+ * same orders against machines with different outlet counts to size a site.
+ *
+ * Rates are over the virtual time of the whole run, from the start of the
+ * simulation to the last cup poured or refill done.
+ *
+ */
+public class SimulationReport {
+
+    private static final double NANOS_PER_HOUR = TimeUnit.HOURS.toNanos(1);
+
+    private final int outlets;
+    private final long elapsedNanos;
+    private final long orders;
+    private final long prepared;
+    private final LatencyHistogram outletWait = new LatencyHistogram();
+    private final double meanQueueLength;
+    private final int longestQueue;
+    private final double utilisation;
+
+    SimulationReport(int outlets, long elapsedNanos, List<SimulationTrace.Served> served, double queuedNanos,
+                     double busyNanos, int longestQueue) {
+        this.outlets = outlets;
+        this.elapsedNanos = elapsedNanos;
+        this.orders = served.size();
+        long prepared = 0;
+        for (SimulationTrace.Served order : served) {
+            outletWait.record(order.outletWait());
+            if (order.result().isPrepared())
+                prepared++;
+        }
+        this.prepared = prepared;
+        this.meanQueueLength = elapsedNanos == 0 ? 0 : queuedNanos / elapsedNanos;
+        this.longestQueue = longestQueue;
+        this.utilisation = elapsedNanos == 0 ? 0 : busyNanos / ((double) elapsedNanos * outlets);
+    }
+
+    public int outlets() {
+        return outlets;
+    }
+
+    /**
+     * @return virtual time of the run
+     */
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return orders served, prepared or not
+     */
+    public long orders() {
+        return orders;
+    }
+
+    /**
+     * @return cups prepared
+     */
+    public long prepared() {
+        return prepared;
+    }
+
+    /**
+     * @return cups prepared per hour of virtual time
+     */
+    public double cupsPerHour() {
+        return elapsedNanos == 0 ? 0 : prepared * NANOS_PER_HOUR / elapsedNanos;
+    }
+
+    /**
+     * @return time orders waited for an outlet
+     */
+    public LatencyHistogram.Snapshot outletWait() {
+        return outletWait.snapshot();
+    }
+
+    /**
+     * @return number of orders waiting for an outlet, averaged over virtual time
+     */
+    public double meanQueueLength() {
+        return meanQueueLength;
+    }
+
+    /**
+     * @return largest number of orders waiting for an outlet at once
+     */
+    public int longestQueue() {
+        return longestQueue;
+    }
+
+    /**
+     * @return share of outlet time spent brewing, between 0 and 1
+     */
+    public double utilisation() {
+        return utilisation;
+    }
+
+    public void print(PrintStream out) {
+        LatencyHistogram.Snapshot wait = outletWait();
+        out.printf("outlets           %d%n", outlets);
+        out.printf("orders            %d in %.2f h, %d prepared%n", orders, elapsedNanos / NANOS_PER_HOUR, prepared);
+        out.printf("throughput        %.1f cups/h%n", cupsPerHour());
+        out.printf("outlet wait (s)   mean=%.1f p50=%.1f p90=%.1f p99=%.1f max=%.1f%n", seconds(wait.mean()),
+                seconds(wait.percentile(50)), seconds(wait.percentile(90)), seconds(wait.percentile(99)),
+                seconds(wait.max()));
+        out.printf("queue length      mean=%.2f max=%d%n", meanQueueLength, longestQueue);
+        out.printf("utilisation       %.1f%%%n", utilisation * 100);
+    }
+
+    private static double seconds(double nanos) {
+        return nanos / TimeUnit.SECONDS.toNanos(1);
+    }
+}
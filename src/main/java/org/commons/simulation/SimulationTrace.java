@@ -0,0 +1,207 @@
+package org.commons.simulation;
+
+import org.commons.ingredients.IngredientType;
+import org.commons.machine.BeverageType;
+import org.commons.machine.DispenseResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything that happened in a simulation, in the order it happened: every
+ * order served with the virtual times it was placed, got an outlet and was
+ * poured, and every refill. Two runs with the same seed give traces with the
+ * same @{@link #toString()}, which makes a trace a reproducible record of one
+ * interleaving.
+ *
+ */
+public class SimulationTrace {
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Served> served = new ArrayList<>();
+    private SimulationReport report;
+
+    SimulationTrace() {
+    }
+
+    void report(SimulationReport report) {
+        this.report = report;
+    }
+
+    /**
+     * @return throughput, waits, queue length and utilisation of the run
+     */
+    public SimulationReport report() {
+        return report;
+    }
+
+    void served(Served order) {
+        entries.add(order);
+        served.add(order);
+    }
+
+    void refilled(Refilled refill) {
+        entries.add(refill);
+    }
+
+    /**
+     * @return orders and refills in the order they completed
+     */
+    public List<Entry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return orders in the order they were poured
+     */
+    public List<Served> served() {
+        return Collections.unmodifiableList(served);
+    }
+
+    /**
+     * @return one line per entry, prefixed with its virtual time
+     */
+    @Override
+    public String toString() {
+        StringBuilder trace = new StringBuilder();
+        for (Entry entry : entries)
+            trace.append(entry).append('\n');
+        return trace.toString();
+    }
+
+    /**
+     * @param nanos virtual time
+     * @return time of day as hh:mm:ss.nnnnnnnnn
+     */
+    static String time(long nanos) {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(nanos);
+        StringBuilder time = new StringBuilder(18);
+        pad(time, seconds / 3600, 2).append(':');
+        pad(time, seconds / 60 % 60, 2).append(':');
+        pad(time, seconds % 60, 2).append('.');
+        return pad(time, nanos % TimeUnit.SECONDS.toNanos(1), 9).toString();
+    }
+
+    private static StringBuilder pad(StringBuilder builder, long value, int digits) {
+        String text = Long.toString(value);
+        for (int i = text.length(); i < digits; i++)
+            builder.append('0');
+        return builder.append(text);
+    }
+
+    /**
+     * something which happened at a virtual time
+     */
+    public abstract static class Entry {
+        private final long at;
+
+        Entry(long at) {
+            this.at = at;
+        }
+
+        /**
+         * @return virtual time it completed at
+         */
+        public long at() {
+            return at;
+        }
+    }
+
+    /**
+     * an order which went through an outlet
+     */
+    public static class Served extends Entry {
+        private final int order;
+        private final BeverageType beverage;
+        private final long placedAt;
+        private final long startedAt;
+        private final DispenseResult result;
+
+        Served(int order, BeverageType beverage, long placedAt, long startedAt, long pouredAt,
+               DispenseResult result) {
+            super(pouredAt);
+            this.order = order;
+            this.beverage = beverage;
+            this.placedAt = placedAt;
+            this.startedAt = startedAt;
+            this.result = result;
+        }
+
+        /**
+         * @return number of the order, in the order orders were added to the simulation
+         */
+        public int order() {
+            return order;
+        }
+
+        public BeverageType beverage() {
+            return beverage;
+        }
+
+        public long placedAt() {
+            return placedAt;
+        }
+
+        /**
+         * @return virtual time the order got an outlet and its ingredients were drawn
+         */
+        public long startedAt() {
+            return startedAt;
+        }
+
+        /**
+         * @return time the order waited for an outlet
+         */
+        public long outletWait() {
+            return startedAt - placedAt;
+        }
+
+        public DispenseResult result() {
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return time(at()) + " #" + order + " " + result.message();
+        }
+    }
+
+    /**
+     * a refill of an ingredient by the operator
+     */
+    public static class Refilled extends Entry {
+        private final IngredientType ingredient;
+        private final int amount;
+        private final boolean accepted;
+
+        Refilled(long at, IngredientType ingredient, int amount, boolean accepted) {
+            super(at);
+            this.ingredient = ingredient;
+            this.amount = amount;
+            this.accepted = accepted;
+        }
+
+        public IngredientType ingredient() {
+            return ingredient;
+        }
+
+        public int amount() {
+            return amount;
+        }
+
+        /**
+         * @return false if the machine holds no container of the ingredient
+         */
+        public boolean isAccepted() {
+            return accepted;
+        }
+
+        @Override
+        public String toString() {
+            return time(at()) + " refill " + amount + " " + ingredient.getFieldDescriptor() +
+                    (accepted ? "" : " refused");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.commons.simulation;
+
+/**
+ * Time of a simulation in nanoseconds since it started. The clock only moves
+ * when the @{@link SeededScheduler} runs the next task, jumping straight to
+ * the time the task is due, so idle stretches of a simulated day cost nothing.
+ *
+ */
+public final class VirtualClock {
+
+    private long now;
+
+    VirtualClock() {
+    }
+
+    /**
+     * @return nanoseconds elapsed in the simulation
+     */
+    public long now() {
+        return now;
+    }
+
+    void advanceTo(long time) {
+        if (time < now)
+            throw new IllegalStateException("virtual clock cannot go back from " + now + " to " + time);
+        now = time;
+    }
+}
@@ -0,0 +1,120 @@
+package org.commons.machine;
+
+import org.commons.ingredients.AtomicIngredientContainer;
+import org.commons.ingredients.IngredientStatus;
+import org.commons.ingredients.IngredientType;
+import org.exceptions.RequestedQuantityNotPresentException;
+import org.exceptions.RequestedQuantityNotSufficientException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AtomicIngredientContainerTest {
+
+    /**
+     * This method test all the apis exposed by atomic ingredient container
+     * @throws RequestedQuantityNotSufficientException
+     * @throws RequestedQuantityNotPresentException
+     */
+    @Test
+    public void testAPI() throws RequestedQuantityNotSufficientException,
+            RequestedQuantityNotPresentException {
+        AtomicIngredientContainer aic = new AtomicIngredientContainer(IngredientType.SUGAR_SYRUP, 20);
+
+        Assert.assertEquals(IngredientType.SUGAR_SYRUP, aic.type());
+        Assert.assertEquals(20, aic.quantity());
+
+        aic.retrieve(10);
+        Assert.assertEquals(10, aic.quantity());
+
+        Exception ex = null;
+        try {
+            aic.retrieve(20);
+        } catch (RequestedQuantityNotSufficientException rqns) {
+            ex = rqns;
+        }
+        Assert.assertEquals(true, ex != null);
+        Assert.assertEquals(10, aic.quantity());
+
+        Assert.assertEquals(IngredientStatus.NOT_SUFFICIENT, aic.tryRetrieve(11));
+        Assert.assertEquals(IngredientStatus.AVAILABLE, aic.tryRetrieve(10));
+        Assert.assertEquals(0, aic.quantity());
+        Assert.assertEquals(IngredientStatus.NOT_PRESENT, aic.tryRetrieve(1));
+        Assert.assertEquals(IngredientStatus.NOT_PRESENT, aic.status(1));
+
+        try {
+            ex = null;
+            aic.check(10);
+        } catch (RequestedQuantityNotPresentException rqnp) {
+            ex = rqnp;
+        }
+        Assert.assertEquals(true, ex != null);
+
+        aic.refill(30);
+        Assert.assertEquals(30, aic.quantity());
+
+        try {
+            ex = null;
+            aic.refill(-1);
+        } catch (IllegalArgumentException ile) {
+            ex = ile;
+        }
+        Assert.assertEquals(true, ex != null);
+
+        try {
+            ex = null;
+            aic = new AtomicIngredientContainer(null, 20);
+        } catch (IllegalArgumentException ile) {
+            ex = ile;
+        }
+        Assert.assertEquals(true, ex != null);
+    }
+
+    /**
+     * many threads racing tryRetrieve and refill on one container should
+     * neither over-draw it nor lose any refill
+     */
+    @Test
+    public void testConcurrentRetrieveAndRefill() throws InterruptedException {
+        final AtomicIngredientContainer aic = new AtomicIngredientContainer(IngredientType.WATER, 1000);
+        final AtomicInteger retrieved = new AtomicInteger();
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads + 1);
+
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < 10000; j++) {
+                        if (aic.tryRetrieve(7) == IngredientStatus.AVAILABLE)
+                            retrieved.addAndGet(7);
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        new Thread(() -> {
+            try {
+                start.await();
+                for (int j = 0; j < 1000; j++)
+                    aic.refill(5);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } finally {
+                done.countDown();
+            }
+        }).start();
+
+        start.countDown();
+        done.await();
+
+        Assert.assertEquals(true, aic.quantity() >= 0);
+        Assert.assertEquals(1000 + 5 * 1000, aic.quantity() + retrieved.get());
+    }
+}
@@ -5,8 +5,18 @@ import org.exceptions.IncorrectIngredientTypeException;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 public class BaseBaverageMachineTest {
@@ -85,6 +95,251 @@ public class BaseBaverageMachineTest {
     }
 
 
+    /**
+     * testing that async orders queue up without a parked thread per order,
+     * are brewed once an outlet frees up and can be withdrawn while queued
+     */
+    @Test
+    public void testDispenseAsync() throws Exception {
+        final CountDownLatch brewing = new CountDownLatch(1);
+        final AtomicInteger brewed = new AtomicInteger();
+        BaseBeverageMachine machine = new BaseBeverageMachine(1) {
+            @Override
+            public void brew(BeverageType type) {
+                brewed.incrementAndGet();
+                try {
+                    brewing.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public int ingredientLevel(IngredientType type) {
+                return 0;
+            }
+
+            @Override
+            public void refillIngredient(IngredientType type, int amount) {
+            }
+
+            @Override
+            public List<IngredientType> ingredientsRunningLow() {
+                return null;
+            }
+        };
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            CompletableFuture<String> first = machine.dispenseAsync(BeverageType.HOT_WATER, executor);
+            CompletableFuture<String> second = machine.dispenseAsync(BeverageType.HOT_MILK, executor);
+            CompletableFuture<String> third = machine.dispenseAsync(BeverageType.GREEN_TEA, executor);
+
+            Thread.sleep(200);
+            Assert.assertEquals(1, brewed.get());
+            Assert.assertEquals(false, second.isDone());
+            Assert.assertEquals(true, third.cancel(true));
+
+            brewing.countDown();
+            Assert.assertEquals(true, first.get(5, TimeUnit.SECONDS).contains(BeverageOutputMessage.PREPARED));
+            Assert.assertEquals(true, second.get(5, TimeUnit.SECONDS).contains("hot_milk"));
+            Assert.assertEquals(2, brewed.get());
+
+            Assert.assertEquals(true, machine.dispense(BeverageType.HOT_WATER)
+                    .contains(BeverageOutputMessage.PREPARED));
+            Assert.assertEquals(true, machine.dispenseAsync(BeverageType.HOT_WATER).get(5, TimeUnit.SECONDS)
+                    .contains(BeverageOutputMessage.PREPARED));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * orders blocked on the only outlet or queued asynchronously are counted as
+     * waiting, and the held outlet as busy
+     */
+    @Test
+    public void testOutletMetrics() throws Exception {
+        final CountDownLatch brewing = new CountDownLatch(1);
+        final BaseBeverageMachine machine = new BaseBeverageMachine(1) {
+            @Override
+            public void brew(BeverageType type) {
+                try {
+                    brewing.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public int ingredientLevel(IngredientType type) {
+                return 0;
+            }
+
+            @Override
+            public void refillIngredient(IngredientType type, int amount) {
+            }
+
+            @Override
+            public List<IngredientType> ingredientsRunningLow() {
+                return null;
+            }
+        };
+        OutletMetrics outletMetrics = machine.outletMetrics();
+        OutletMetrics.Snapshot start = outletMetrics.snapshot();
+
+        Thread first = new Thread(() -> machine.dispense(BeverageType.HOT_WATER));
+        Thread second = new Thread(() -> machine.dispense(BeverageType.HOT_WATER));
+        first.start();
+        for (int i = 0; i < 100 && outletMetrics.busyOutlets() < 1; i++)
+            Thread.sleep(20);
+        second.start();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            CompletableFuture<String> third = machine.dispenseAsync(BeverageType.HOT_MILK, executor);
+            for (int i = 0; i < 100 && outletMetrics.queueLength() < 2; i++)
+                Thread.sleep(20);
+
+            Assert.assertEquals(2, outletMetrics.queueLength());
+            Assert.assertEquals(2, outletMetrics.peakQueueLength());
+            Assert.assertEquals(1, outletMetrics.busyOutlets());
+
+            Thread.sleep(50);
+            brewing.countDown();
+            first.join();
+            second.join();
+            third.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(0, outletMetrics.queueLength());
+        Assert.assertEquals(2, outletMetrics.peakQueueLength());
+        Assert.assertEquals(0, outletMetrics.busyOutlets());
+        Assert.assertEquals(3, outletMetrics.acquireTime().count());
+        Assert.assertEquals(true, outletMetrics.acquireTime().max() >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        OutletMetrics.Snapshot end = outletMetrics.snapshot();
+        Assert.assertEquals(true, end.busyNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertEquals(true, end.utilisationSince(start) > 0);
+        Assert.assertEquals(true, end.utilisationSince(start) <= 1);
+    }
+
+    /**
+     * an order which gets no outlet within its deadline is reported as outlet
+     * unavailable, and once brew times are known an order behind a queue which
+     * cannot drain in time is turned away without waiting
+     */
+    /**
+     * orders cancelled while waiting for an outlet leave the queue at once and
+     * no longer make tryDispense turn orders away
+     */
+    @Test
+    public void testCancelledOrdersLeaveQueue() throws Exception {
+        final AtomicReference<CountDownLatch> brewing = new AtomicReference<>(new CountDownLatch(1));
+        final Semaphore started = new Semaphore(0);
+        final BaseBeverageMachine machine = gatedMachine(brewing, started);
+
+        CompletableFuture<String> first = machine.dispenseAsync(BeverageType.HOT_MILK);
+        started.acquire();
+        Thread.sleep(100);
+        brewing.getAndSet(new CountDownLatch(1)).countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<String> blocking = machine.dispenseAsync(BeverageType.HOT_MILK);
+        started.acquire();
+        List<CompletableFuture<String>> cancelled = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            cancelled.add(machine.dispenseAsync(BeverageType.HOT_MILK));
+        Assert.assertEquals(10, machine.outletMetrics().queueLength());
+        for (CompletableFuture<String> order : cancelled)
+            order.cancel(false);
+        Assert.assertEquals(0, machine.outletMetrics().queueLength());
+
+        ExecutorService customer = Executors.newSingleThreadExecutor();
+        try {
+            Future<DispenseResult> order = customer.submit(() ->
+                    machine.tryDispense(BeverageType.HOT_WATER, 500, TimeUnit.MILLISECONDS));
+            Thread.sleep(20);
+            brewing.get().countDown();
+            Assert.assertEquals(true, order.get(5, TimeUnit.SECONDS).isPrepared());
+            blocking.get(5, TimeUnit.SECONDS);
+        } finally {
+            customer.shutdownNow();
+        }
+        Assert.assertEquals(0, machine.outletMetrics().shedOrders());
+    }
+
+    /**
+     * single outlet machine whose brews release a permit of started and wait
+     * for the latch in brewing
+     */
+    private BaseBeverageMachine gatedMachine(AtomicReference<CountDownLatch> brewing, Semaphore started) {
+        return new BaseBeverageMachine(1) {
+            @Override
+            public void brew(BeverageType type) {
+                started.release();
+                try {
+                    brewing.get().await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public int ingredientLevel(IngredientType type) {
+                return 0;
+            }
+
+            @Override
+            public void refillIngredient(IngredientType type, int amount) {
+            }
+
+            @Override
+            public List<IngredientType> ingredientsRunningLow() {
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void testTryDispense() throws Exception {
+        final AtomicReference<CountDownLatch> brewing = new AtomicReference<>(new CountDownLatch(1));
+        final BaseBeverageMachine machine = gatedMachine(brewing, new Semaphore(0));
+
+        CompletableFuture<String> first = machine.dispenseAsync(BeverageType.HOT_MILK);
+        while (machine.outletMetrics().busyOutlets() < 1)
+            Thread.sleep(1);
+        long start = System.nanoTime();
+        DispenseResult result = machine.tryDispense(BeverageType.HOT_WATER, 50, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(BrewStatus.OUTLET_UNAVAILABLE, result.status());
+        Assert.assertEquals(true, System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertEquals("hot_water " + BeverageOutputMessage.NOT_PREPARED + " because " +
+                BeverageOutputMessage.NO_OUTLET, result.message());
+        Assert.assertEquals(0, machine.outletMetrics().shedOrders());
+        Assert.assertEquals(0, machine.outletMetrics().queueLength());
+
+        Thread.sleep(200);
+        brewing.getAndSet(new CountDownLatch(1)).countDown();
+        first.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(true, machine.outletMetrics().meanHoldNanos() >= TimeUnit.MILLISECONDS.toNanos(200));
+
+        CompletableFuture<String> second = machine.dispenseAsync(BeverageType.HOT_MILK);
+        CompletableFuture<String> third = machine.dispenseAsync(BeverageType.HOT_MILK);
+        while (machine.outletMetrics().queueLength() < 1)
+            Thread.sleep(1);
+        result = machine.tryDispense(BeverageType.HOT_WATER, 50, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(BrewStatus.OUTLET_UNAVAILABLE, result.status());
+        Assert.assertEquals(1, machine.outletMetrics().shedOrders());
+
+        brewing.get().countDown();
+        second.get(5, TimeUnit.SECONDS);
+        third.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(true, machine.tryDispense(BeverageType.HOT_WATER, 1, TimeUnit.SECONDS).isPrepared());
+        Assert.assertEquals(2, machine.metrics().snapshot().beverage(BeverageType.HOT_WATER)
+                .count(BrewStatus.OUTLET_UNAVAILABLE));
+    }
+
     @Test
     public void testNegativeOutlet() {
         Exception ex = null;
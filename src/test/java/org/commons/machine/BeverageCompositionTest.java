@@ -32,4 +32,43 @@ public class BeverageCompositionTest {
 
         Assert.assertEquals(10, beverageComposition.getQuantity(IngredientType.MILK));
     }
+
+    /**
+     * frozen recipe keeps its quantities, walks the non zero ingredients in
+     * ordinal order and refuses updates
+     */
+    @Test
+    public void testFreeze() {
+        BeverageComposition beverageComposition = new BeverageComposition();
+        beverageComposition.put(IngredientType.SUGAR_SYRUP, 10);
+        beverageComposition.put(IngredientType.WATER, 50);
+        beverageComposition.put(IngredientType.MILK, 0);
+
+        Assert.assertEquals(2, beverageComposition.ingredientCount());
+        Assert.assertEquals(IngredientType.WATER, beverageComposition.ingredientAt(0));
+        Assert.assertEquals(10, beverageComposition.quantityAt(1));
+
+        BeverageComposition frozen = beverageComposition.freeze();
+        Assert.assertEquals(true, frozen.isFrozen());
+        Assert.assertEquals(false, beverageComposition.isFrozen());
+        Assert.assertSame(frozen, frozen.freeze());
+
+        beverageComposition.put(IngredientType.WATER, 70);
+        Assert.assertEquals(50, frozen.getQuantity(IngredientType.WATER));
+        Assert.assertEquals(0, frozen.getQuantity(IngredientType.MILK));
+        Assert.assertEquals(0, frozen.getQuantity(null));
+        Assert.assertEquals(2, frozen.ingredientCount());
+        Assert.assertEquals(IngredientType.WATER, frozen.ingredientAt(0));
+        Assert.assertEquals(50, frozen.quantityAt(0));
+        Assert.assertEquals(IngredientType.SUGAR_SYRUP, frozen.ingredientAt(1));
+        Assert.assertEquals(10, frozen.quantityAt(1));
+
+        Exception ex = null;
+        try {
+            frozen.put(IngredientType.MILK, 10);
+        } catch (IllegalStateException ise) {
+            ex = ise;
+        }
+        Assert.assertEquals(true, ex != null);
+    }
 }
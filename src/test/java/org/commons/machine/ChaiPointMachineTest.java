@@ -13,6 +13,7 @@ import org.junit.Test;
 
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 public class ChaiPointMachineTest {
@@ -501,6 +502,144 @@ public class ChaiPointMachineTest {
         chaiPointBeverageMachine.refillIngredient(IngredientType.SUGAR_SYRUP, 100);
     }
 
+    /**
+     * testing that in concurrent brewing mode a brew holding the milk container
+     * does not stop a hot water order, while serial brewing mode does.
+     */
+    @Test
+    public void testConcurrentBrewing() throws InterruptedException {
+        Thread hotWater = new Thread(() -> chaiPointBeverageMachine.dispense(BeverageType.HOT_WATER));
+        synchronized (milkContainer) {
+            hotWater.start();
+            hotWater.join(5000);
+            Assert.assertEquals(false, hotWater.isAlive());
+        }
+        Assert.assertEquals(450, chaiPointBeverageMachine.ingredientLevel(IngredientType.WATER));
+
+        ChaiPointBeverageMachine serialMachine = new ChaiPointBeverageMachine.Builder()
+                .outlet(outlet).addMachine(hotWaterMachine).addMachine(hotMilkMachine)
+                .addMachine(greenTeaMachine).addMachine(gingerTeaMachine)
+                .addMachine(elaichiTeaMachine).addMachine(coffeeMachine)
+                .concurrentBrewing(false).build();
+        hotWater = new Thread(() -> serialMachine.dispense(BeverageType.HOT_WATER));
+        synchronized (serialMachine) {
+            hotWater.start();
+            Thread.sleep(200);
+            Assert.assertEquals(true, hotWater.isAlive());
+        }
+        hotWater.join(5000);
+        Assert.assertEquals(false, hotWater.isAlive());
+        Assert.assertEquals(400, serialMachine.ingredientLevel(IngredientType.WATER));
+    }
+
+    /**
+     * testing that a batch is served greedily in input order from a single
+     * reservation pass and results come back in input order
+     */
+    @Test
+    public void testDispenseBatch() {
+        List<String> output = chaiPointBeverageMachine.dispenseBatch(Arrays.asList(BeverageType.HOT_COFFEE,
+                BeverageType.HOT_COFFEE, BeverageType.HOT_WATER, BeverageType.GREEN_TEA,
+                BeverageType.GREEN_TEA, null));
+
+        Assert.assertEquals(6, output.size());
+        Assert.assertEquals("hot_coffee " + BeverageOutputMessage.PREPARED, output.get(0));
+        Assert.assertEquals("hot_coffee " + BeverageOutputMessage.NOT_PREPARED + " because hot_milk is " +
+                BeverageOutputMessage.QTY_NS, output.get(1));
+        Assert.assertEquals("hot_water " + BeverageOutputMessage.PREPARED, output.get(2));
+        Assert.assertEquals("green_tea " + BeverageOutputMessage.PREPARED, output.get(3));
+        Assert.assertEquals("green_tea " + BeverageOutputMessage.NOT_PREPARED + " because sugar_syrup is " +
+                BeverageOutputMessage.QTY_NA, output.get(4));
+        Assert.assertEquals(true, output.get(5).contains(BeverageOutputMessage.NOT_PREPARED));
+
+        Assert.assertEquals(250, chaiPointBeverageMachine.ingredientLevel(IngredientType.WATER));
+        Assert.assertEquals(100, chaiPointBeverageMachine.ingredientLevel(IngredientType.MILK));
+        Assert.assertEquals(0, chaiPointBeverageMachine.ingredientLevel(IngredientType.SUGAR_SYRUP));
+        Assert.assertEquals(270, chaiPointBeverageMachine.ingredientLevel(IngredientType.COFFEE_SYRUP));
+        Assert.assertEquals(270, chaiPointBeverageMachine.ingredientLevel(IngredientType.GREEN_MIXTURE));
+    }
+
+    /**
+     * testing the exception free brew path reports status and offending ingredient
+     */
+    @Test
+    public void testTryBrew() {
+        Assert.assertEquals(BrewOutcome.NOT_SUPPORTED, chaiPointBeverageMachine.tryBrew(null));
+        Assert.assertEquals(BrewOutcome.PREPARED, chaiPointBeverageMachine.tryBrew(BeverageType.HOT_COFFEE));
+
+        BrewOutcome outcome = chaiPointBeverageMachine.tryBrew(BeverageType.HOT_COFFEE);
+        Assert.assertEquals(BrewStatus.INGREDIENT_NOT_SUFFICIENT, outcome.status());
+        Assert.assertEquals(IngredientType.MILK, outcome.ingredient());
+        Assert.assertEquals("hot_milk is " + BeverageOutputMessage.QTY_NS,
+                outcome.shortageReason(BeverageType.HOT_COFFEE));
+        Assert.assertEquals(100, chaiPointBeverageMachine.ingredientLevel(IngredientType.MILK));
+
+        Assert.assertEquals(BrewOutcome.PREPARED, chaiPointBeverageMachine.tryBrew(BeverageType.GREEN_TEA));
+        outcome = chaiPointBeverageMachine.tryBrew(BeverageType.GINGER_TEA);
+        Assert.assertEquals(BrewStatus.INGREDIENT_NOT_AVAILABLE, outcome.status());
+        Assert.assertEquals(IngredientType.SUGAR_SYRUP, outcome.ingredient());
+    }
+
+    /**
+     * every order is counted by beverage and result, with its outlet wait
+     * and brew time
+     */
+    @Test
+    public void testMetrics() {
+        chaiPointBeverageMachine.dispense(BeverageType.HOT_COFFEE);
+        chaiPointBeverageMachine.dispense(BeverageType.HOT_COFFEE);
+        chaiPointBeverageMachine.dispense(BeverageType.HOT_WATER);
+        chaiPointBeverageMachine.dispense(null);
+
+        MachineMetrics.Snapshot snapshot = chaiPointBeverageMachine.metrics().snapshot();
+        Assert.assertEquals(4, snapshot.dispensed());
+
+        MachineMetrics.BeverageMetrics coffee = snapshot.beverage(BeverageType.HOT_COFFEE);
+        Assert.assertEquals(2, coffee.dispensed());
+        Assert.assertEquals(1, coffee.count(BrewStatus.PREPARED));
+        Assert.assertEquals(1, coffee.count(BrewStatus.INGREDIENT_NOT_SUFFICIENT));
+        Assert.assertEquals(1, coffee.failed());
+        Assert.assertEquals(2, coffee.outletWait().count());
+        Assert.assertEquals(2, coffee.brew().count());
+        Assert.assertEquals(true, coffee.brew().max() > 0);
+
+        Assert.assertEquals(1, snapshot.beverage(BeverageType.HOT_WATER).count(BrewStatus.PREPARED));
+        Assert.assertEquals(1, snapshot.beverage(null).count(BrewStatus.NOT_SUPPORTED));
+        Assert.assertEquals(0, snapshot.beverage(BeverageType.GREEN_TEA).dispensed());
+
+        chaiPointBeverageMachine.dispenseBatch(Arrays.asList(BeverageType.GREEN_TEA, BeverageType.GREEN_TEA));
+        MachineMetrics.BeverageMetrics greenTea = chaiPointBeverageMachine.metrics().snapshot()
+                .beverage(BeverageType.GREEN_TEA);
+        Assert.assertEquals(1, greenTea.count(BrewStatus.PREPARED));
+        Assert.assertEquals(1, greenTea.count(BrewStatus.INGREDIENT_NOT_AVAILABLE));
+        Assert.assertEquals(4, snapshot.dispensed());
+    }
+
+    /**
+     * results of dispensing carry status and short ingredient, and the same
+     * result (and message) is handed out for the same outcome
+     */
+    @Test
+    public void testDispenseResult() {
+        DispenseResult result = chaiPointBeverageMachine.dispenseResult(BeverageType.HOT_COFFEE);
+        Assert.assertEquals(true, result.isPrepared());
+        Assert.assertEquals(BeverageType.HOT_COFFEE, result.beverage());
+        Assert.assertEquals("hot_coffee " + BeverageOutputMessage.PREPARED, result.message());
+
+        result = chaiPointBeverageMachine.dispenseResult(BeverageType.HOT_COFFEE);
+        Assert.assertEquals(BrewStatus.INGREDIENT_NOT_SUFFICIENT, result.status());
+        Assert.assertEquals(IngredientType.MILK, result.ingredient());
+        Assert.assertEquals("hot_coffee cannot be prepared because hot_milk is not sufficient", result.message());
+        Assert.assertSame(result, chaiPointBeverageMachine.dispenseResult(BeverageType.HOT_COFFEE));
+        Assert.assertSame(result.message(), chaiPointBeverageMachine.dispense(BeverageType.HOT_COFFEE));
+
+        result = chaiPointBeverageMachine.dispenseResult(null);
+        Assert.assertEquals(BrewStatus.NOT_SUPPORTED, result.status());
+        Assert.assertEquals("null cannot be prepared because BeverageType=null is not supported in " +
+                "ChaiPointBeverageMachine", result.message());
+        Assert.assertSame(result, chaiPointBeverageMachine.dispenseResult(null));
+    }
+
     /**
      * testing edge cases and branch cases for ingredientLevel function
      */
@@ -510,4 +649,39 @@ public class ChaiPointMachineTest {
         Assert.assertEquals(500, chaiPointBeverageMachine.ingredientLevel(IngredientType.MILK));
     }
 
+    /**
+     * a coffee which would leave fewer than two ginger teas makeable is refused,
+     * in concurrent and in serial brewing mode, and the teas are served instead
+     */
+    @Test
+    public void testAdmissionPolicy() throws IncorrectIngredientTypeException {
+        AdmissionPolicy policy = new AdmissionPolicy.Builder().keepMakeable(BeverageType.GINGER_TEA, 2).build();
+        for (boolean concurrentBrewing : new boolean[] {true, false}) {
+            ChaiPointBeverageMachine machine = new ChaiPointBeverageMachine.Builder()
+                    .outlet(outlet)
+                    .addMachine(hotWaterMachine)
+                    .addMachine(hotMilkMachine)
+                    .addMachine(greenTeaMachine)
+                    .addMachine(gingerTeaMachine)
+                    .addMachine(elaichiTeaMachine)
+                    .addMachine(coffeeMachine)
+                    .concurrentBrewing(concurrentBrewing)
+                    .admissionPolicy(policy)
+                    .build();
+
+            List<String> output = machine.dispenseBatch(Arrays.asList(BeverageType.HOT_COFFEE,
+                    BeverageType.GINGER_TEA, BeverageType.GINGER_TEA));
+            Assert.assertEquals(Arrays.asList("hot_coffee " + BeverageOutputMessage.NOT_PREPARED +
+                            " because hot_milk is " + BeverageOutputMessage.HELD_BACK,
+                    "ginger_tea " + BeverageOutputMessage.PREPARED,
+                    "ginger_tea " + BeverageOutputMessage.PREPARED), output);
+            Assert.assertEquals(BrewStatus.NOT_ADMITTED, machine.dispenseResult(BeverageType.HOT_COFFEE).status());
+            Assert.assertEquals(2, machine.metrics().snapshot().beverage(BeverageType.HOT_COFFEE)
+                    .count(BrewStatus.NOT_ADMITTED));
+            Assert.assertEquals(300, machine.ingredientLevel(IngredientType.MILK));
+
+            for (IngredientType type : IngredientType.values())
+                machine.refillIngredient(type, 500 - machine.ingredientLevel(type));
+        }
+    }
 }
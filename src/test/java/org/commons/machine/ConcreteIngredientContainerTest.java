@@ -1,6 +1,7 @@
 package org.commons.machine;
 
 import org.commons.ingredients.ConcreteIngredientContainer;
+import org.commons.ingredients.IngredientStatus;
 import org.commons.ingredients.IngredientType;
 import org.exceptions.RequestedQuantityNotPresentException;
 import org.exceptions.RequestedQuantityNotSufficientException;
@@ -43,9 +44,14 @@ public class ConcreteIngredientContainerTest {
 
         Assert.assertEquals(true, ex != null);
 
+        Assert.assertEquals(IngredientStatus.NOT_SUFFICIENT, cic.status(20));
+        Assert.assertEquals(IngredientStatus.NOT_SUFFICIENT, cic.tryRetrieve(20));
+        Assert.assertEquals(10, cic.quantity());
+
         cic.retrieve(10);
 
         Assert.assertEquals(0, cic.quantity());
+        Assert.assertEquals(IngredientStatus.NOT_PRESENT, cic.tryRetrieve(10));
 
         try {
             ex = null;
@@ -0,0 +1,248 @@
+package org.commons.machine;
+
+import org.commons.ingredients.AtomicIngredientContainer;
+import org.commons.ingredients.ConcreteIngredientContainer;
+import org.commons.ingredients.IngredientContainer;
+import org.commons.ingredients.IngredientType;
+import org.commons.loadgen.MachineConfig;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Randomized stress test of machines sharing ingredient containers between
+ * brewing modules. Many threads dispense (one by one, in batches and
+ * asynchronously), refill and read levels at once, each from its own seeded
+ * random stream, and every container is checked against two invariants:
+ *
+ *   initial + refilled = remaining + debited by the prepared cups
+ *   quantity never goes below zero, whenever it is read
+ *
+ * A round that breaks an invariant reports its seed, which replays the same
+ * operations per thread (the interleaving of course differs from run to run).
+ */
+public class ConcurrencyStressTest {
+
+    private static final int ROUNDS = 10;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 2000;
+    private static final int MAX_REFILL = 200;
+
+    private String inputFile = getClass().getClassLoader().getResource("input_test.json").getPath();
+    private MachineConfig config;
+
+    @Before
+    public void setUp() throws IOException {
+        config = MachineConfig.read(inputFile);
+    }
+
+    @Test
+    public void testChaiPointMachine() throws Exception {
+        stress(() -> chaiPoint(ConcreteIngredientContainer::new, true));
+    }
+
+    @Test
+    public void testChaiPointMachineWithAtomicContainers() throws Exception {
+        stress(() -> chaiPoint(AtomicIngredientContainer::new, true));
+    }
+
+    @Test
+    public void testSerialisedChaiPointMachine() throws Exception {
+        stress(() -> chaiPoint(ConcreteIngredientContainer::new, false));
+    }
+
+    @Test
+    public void testRecipeMachine() throws Exception {
+        stress(() -> recipe(AtomicIngredientContainer::new, 0));
+    }
+
+    @Test
+    public void testCoalescingRecipeMachine() throws Exception {
+        stress(() -> recipe(ConcreteIngredientContainer::new, TimeUnit.MICROSECONDS.toNanos(20)));
+    }
+
+    /**
+     * machine under test together with direct handles on its containers
+     */
+    private static class Rig {
+        private final BaseBeverageMachine machine;
+        private final IngredientContainer[] containers;
+
+        private Rig(BaseBeverageMachine machine, IngredientContainer[] containers) {
+            this.machine = machine;
+            this.containers = containers;
+        }
+    }
+
+    private void stress(Supplier<Rig> factory) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < ROUNDS; round++)
+                stressRound(factory, 0x5eed_0000L + round, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void stressRound(Supplier<Rig> factory, long seed, ExecutorService executor) throws Exception {
+        Rig rig = factory.get();
+        BeverageType[] beverages = BeverageType.values();
+        IngredientType[] ingredients = IngredientType.values();
+        AtomicLongArray prepared = new AtomicLongArray(beverages.length);
+        AtomicLongArray refilled = new AtomicLongArray(ingredients.length);
+        AtomicReference<String> violation = new AtomicReference<>();
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Random random = new Random(seed * 31 + t);
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int op = 0; op < OPERATIONS && violation.get() == null; op++)
+                        operate(rig, random, executor, prepared, refilled, violation);
+                } catch (Throwable e) {
+                    violation.compareAndSet(null, e.toString());
+                }
+            }, "stress-" + t);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        Assert.assertEquals("seed " + seed, null, violation.get());
+        for (IngredientType ingredient : ingredients) {
+            long debited = 0;
+            for (BeverageType beverage : beverages)
+                debited += prepared.get(beverage.ordinal()) *
+                        config.recipes().get(beverage).getQuantity(ingredient);
+            long expected = config.initialLevels().get(ingredient) + refilled.get(ingredient.ordinal()) - debited;
+            Assert.assertEquals("seed " + seed + ", " + ingredient, expected,
+                    rig.containers[ingredient.ordinal()].quantity());
+            Assert.assertEquals("seed " + seed + ", " + ingredient, expected,
+                    rig.machine.ingredientLevel(ingredient));
+        }
+    }
+
+    private void operate(Rig rig, Random random, ExecutorService executor, AtomicLongArray prepared,
+                         AtomicLongArray refilled, AtomicReference<String> violation) throws Exception {
+        BeverageType[] beverages = BeverageType.values();
+        IngredientType[] ingredients = IngredientType.values();
+        int dice = random.nextInt(100);
+
+        if (dice < 55) {
+            DispenseResult result = rig.machine.dispenseResult(beverages[random.nextInt(beverages.length)]);
+            if (result.isPrepared())
+                prepared.incrementAndGet(result.beverage().ordinal());
+        } else if (dice < 65) {
+            List<BeverageType> orders = new ArrayList<>();
+            for (int i = 1 + random.nextInt(4); i > 0; i--)
+                orders.add(beverages[random.nextInt(beverages.length)]);
+            List<String> results = rig.machine.dispenseBatch(orders);
+            for (int i = 0; i < orders.size(); i++) {
+                if (results.get(i).endsWith(BeverageOutputMessage.PREPARED))
+                    prepared.incrementAndGet(orders.get(i).ordinal());
+            }
+        } else if (dice < 75) {
+            BeverageType type = beverages[random.nextInt(beverages.length)];
+            CompletableFuture<String> result = rig.machine.dispenseAsync(type, executor);
+            if (result.get(10, TimeUnit.SECONDS).endsWith(BeverageOutputMessage.PREPARED))
+                prepared.incrementAndGet(type.ordinal());
+        } else if (dice < 90) {
+            IngredientType type = ingredients[random.nextInt(ingredients.length)];
+            int amount = 1 + random.nextInt(MAX_REFILL);
+            rig.machine.refillIngredient(type, amount);
+            refilled.addAndGet(type.ordinal(), amount);
+        } else {
+            for (IngredientContainer container : rig.containers) {
+                if (container.quantity() < 0)
+                    violation.compareAndSet(null, container.type() + " went negative: " + container.quantity());
+            }
+            for (IngredientType type : ingredients) {
+                if (rig.machine.ingredientLevel(type) < 0)
+                    violation.compareAndSet(null, "level of " + type + " went negative");
+            }
+            rig.machine.ingredientsRunningLow();
+        }
+    }
+
+    private Rig chaiPoint(BiFunction<IngredientType, Integer, IngredientContainer> newContainer,
+                          boolean concurrentBrewing) {
+        IngredientContainer[] containers = containers(newContainer);
+        Map<BeverageType, BeverageComposition> recipes = config.recipes();
+        int outlet = config.outlet();
+        ChaiPointBeverageMachine machine = new ChaiPointBeverageMachine.Builder()
+                .outlet(outlet)
+                .concurrentBrewing(concurrentBrewing)
+                .addMachine(new HotWaterMachine.Builder().outlet(outlet)
+                        .waterContainer(containers[IngredientType.WATER.ordinal()])
+                        .beverageRecipe(recipes.get(BeverageType.HOT_WATER)).build())
+                .addMachine(new HotMilkMachine.Builder().outlet(outlet)
+                        .milkContainer(containers[IngredientType.MILK.ordinal()])
+                        .beverageRecipe(recipes.get(BeverageType.HOT_MILK)).build())
+                .addMachine(new GreenTeaMachine.Builder().outlet(outlet)
+                        .addIngredientContainer(containers[IngredientType.WATER.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.GREEN_MIXTURE.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.GINGER_SYRUP.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.SUGAR_SYRUP.ordinal()])
+                        .addRecipe(recipes.get(BeverageType.GREEN_TEA)).build())
+                .addMachine(new GingerTeaMachine.Builder().outlet(outlet)
+                        .addIngredientContainer(containers[IngredientType.WATER.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.MILK.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.TEA_LEAVES_SYRUP.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.GINGER_SYRUP.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.SUGAR_SYRUP.ordinal()])
+                        .addRecipe(recipes.get(BeverageType.GINGER_TEA)).build())
+                .addMachine(new ElaichiTeaMachine.Builder().outlet(outlet)
+                        .addIngredientContainer(containers[IngredientType.WATER.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.MILK.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.TEA_LEAVES_SYRUP.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.ELAICHI_SYRUP.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.SUGAR_SYRUP.ordinal()])
+                        .addRecipe(recipes.get(BeverageType.ELAICHI_TEA)).build())
+                .addMachine(new CoffeeMachine.Builder().outlet(outlet)
+                        .addIngredientContainer(containers[IngredientType.WATER.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.MILK.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.COFFEE_SYRUP.ordinal()])
+                        .addIngredientContainer(containers[IngredientType.SUGAR_SYRUP.ordinal()])
+                        .addRecipe(recipes.get(BeverageType.HOT_COFFEE)).build())
+                .build();
+        return new Rig(machine, containers);
+    }
+
+    private Rig recipe(BiFunction<IngredientType, Integer, IngredientContainer> newContainer,
+                       long coalescingWindowNanos) {
+        IngredientContainer[] containers = containers(newContainer);
+        RecipeBeverageMachine.Builder builder = new RecipeBeverageMachine.Builder().outlet(config.outlet())
+                .coalescingWindow(coalescingWindowNanos, TimeUnit.NANOSECONDS);
+        for (IngredientContainer container : containers)
+            builder.addIngredientContainer(container);
+        for (Map.Entry<BeverageType, BeverageComposition> recipe : config.recipes().entrySet())
+            builder.addRecipe(recipe.getKey(), recipe.getValue());
+        return new Rig(builder.build(), containers);
+    }
+
+    private IngredientContainer[] containers(BiFunction<IngredientType, Integer, IngredientContainer> newContainer) {
+        IngredientType[] types = IngredientType.values();
+        IngredientContainer[] containers = new IngredientContainer[types.length];
+        for (IngredientType type : types)
+            containers[type.ordinal()] = newContainer.apply(type, config.initialLevels().get(type));
+        return containers;
+    }
+}
@@ -0,0 +1,118 @@
+package org.commons.machine;
+
+import jdk.jfr.Recording;
+import org.commons.ingredients.ConcreteIngredientContainer;
+import org.commons.ingredients.IngredientType;
+import org.commons.loadgen.MachineConfig;
+import org.commons.metrics.FlightRecording;
+import org.exceptions.IncorrectIngredientTypeException;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * Dispensing in steady state, successful or out of stock, must not allocate.
+ * Allocation is measured with the per thread allocated bytes counter of the
+ * JVM after a warm up, a regression of even a few bytes per cup fails the test.
+ */
+public class DispenseAllocationTest {
+
+    private static final int WARM_UP = 20000;
+    private static final int CUPS = 10000;
+
+    /**
+     * slack for allocations not made by dispense, well below one byte per cup
+     */
+    private static final long SLACK_BYTES = 2048;
+
+    private String inputFile = getClass().getClassLoader().getResource("input_test.json").getPath();
+
+    @Test
+    public void testChaiPointMachine() throws IOException, IncorrectIngredientTypeException {
+        ChaiPointBeverageMachine machine = MachineConfig.read(inputFile).buildChaiPointMachine();
+        for (IngredientType type : IngredientType.values())
+            machine.refillIngredient(type, Integer.MAX_VALUE / 2);
+
+        Assert.assertEquals(0, allocatedBytes(machine));
+    }
+
+    @Test
+    public void testRecipeMachine() throws IOException {
+        MachineConfig config = MachineConfig.read(inputFile);
+        RecipeBeverageMachine.Builder builder = new RecipeBeverageMachine.Builder().outlet(config.outlet());
+        for (IngredientType type : IngredientType.values())
+            builder.addIngredientContainer(new ConcreteIngredientContainer(type, Integer.MAX_VALUE / 2));
+        for (Map.Entry<BeverageType, BeverageComposition> recipe : config.recipes().entrySet())
+            builder.addRecipe(recipe.getKey(), recipe.getValue());
+
+        Assert.assertEquals(0, allocatedBytes(builder.build()));
+    }
+
+    @Test
+    public void testOutOfStock() throws IOException {
+        MachineConfig config = MachineConfig.read(inputFile);
+        RecipeBeverageMachine.Builder builder = new RecipeBeverageMachine.Builder().outlet(config.outlet());
+        for (IngredientType type : IngredientType.values())
+            builder.addIngredientContainer(new ConcreteIngredientContainer(type, 0));
+        for (Map.Entry<BeverageType, BeverageComposition> recipe : config.recipes().entrySet())
+            builder.addRecipe(recipe.getKey(), recipe.getValue());
+        RecipeBeverageMachine machine = builder.build();
+
+        Assert.assertEquals(0, allocatedBytes(machine));
+        Assert.assertEquals(true, machine.dispense(BeverageType.HOT_COFFEE).contains(BeverageOutputMessage.QTY_NA));
+    }
+
+    /**
+     * a running recording with the machine events disabled allocates none of them
+     */
+    @Test
+    public void testRecordingWithEventsDisabled() throws IOException {
+        Assume.assumeTrue(FlightRecording.isAvailable());
+        MachineConfig config = MachineConfig.read(inputFile);
+        RecipeBeverageMachine.Builder builder = new RecipeBeverageMachine.Builder().outlet(config.outlet());
+        for (IngredientType type : IngredientType.values())
+            builder.addIngredientContainer(new ConcreteIngredientContainer(type, Integer.MAX_VALUE / 2));
+        for (Map.Entry<BeverageType, BeverageComposition> recipe : config.recipes().entrySet())
+            builder.addRecipe(recipe.getKey(), recipe.getValue());
+        RecipeBeverageMachine machine = builder.build();
+
+        try (Recording recording = new Recording()) {
+            recording.disable(DispenseEvent.class);
+            recording.disable(BrewEvent.class);
+            recording.start();
+            Assert.assertEquals(true, FlightRecording.isRunning());
+            Assert.assertEquals(0, allocatedBytes(machine));
+        }
+    }
+
+    /**
+     * @return bytes allocated by the calling thread while dispensing CUPS cups of
+     *          every beverage in turn after a warm up, 0 if within the slack
+     */
+    private long allocatedBytes(BaseBeverageMachine machine) {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocation.isThreadAllocatedMemorySupported());
+        allocation.setThreadAllocatedMemoryEnabled(true);
+
+        BeverageType[] types = BeverageType.values();
+        long thread = Thread.currentThread().getId();
+        dispense(machine, types, WARM_UP);
+        long before = allocation.getThreadAllocatedBytes(thread);
+        dispense(machine, types, CUPS);
+        long allocated = allocation.getThreadAllocatedBytes(thread) - before;
+        return allocated <= SLACK_BYTES ? 0 : allocated;
+    }
+
+    private void dispense(BaseBeverageMachine machine, BeverageType[] types, int cups) {
+        for (int i = 0; i < cups; i++) {
+            machine.dispense(types[i % types.length]);
+            machine.dispenseResult(types[i % types.length]);
+        }
+    }
+}
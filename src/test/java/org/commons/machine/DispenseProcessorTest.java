@@ -0,0 +1,217 @@
+package org.commons.machine;
+
+import org.commons.ingredients.ConcreteIngredientContainer;
+import org.commons.ingredients.IngredientType;
+import org.commons.reactive.DispenseProcessor;
+import org.commons.reactive.Flow;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DispenseProcessorTest {
+
+    /**
+     * eight hot waters through two outlets: never more than two orders are
+     * asked for at once, and the results carry the messages of dispense
+     */
+    @Test
+    public void testDemandFollowsOutlets() throws Exception {
+        RecipeBeverageMachine machine = waterMachine(2, 65);
+        OrderPublisher orders = new OrderPublisher(Collections.nCopies(8, BeverageType.HOT_WATER));
+        ResultSubscriber results = new ResultSubscriber(Long.MAX_VALUE);
+        DispenseProcessor processor = new DispenseProcessor(machine);
+        processor.subscribe(results);
+        orders.subscribe(processor);
+
+        Assert.assertEquals(true, results.done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(null, results.error);
+        Assert.assertEquals(8, results.results.size());
+        int prepared = 0;
+        String refused = null;
+        for (DispenseResult result : results.results) {
+            if (result.isPrepared()) {
+                prepared++;
+                Assert.assertEquals("hot_water " + BeverageOutputMessage.PREPARED, result.message());
+            } else {
+                Assert.assertEquals(BrewStatus.INGREDIENT_NOT_SUFFICIENT, result.status());
+                refused = result.message();
+            }
+        }
+        Assert.assertEquals(6, prepared);
+        Assert.assertEquals(machine.dispense(BeverageType.HOT_WATER), refused);
+        Assert.assertEquals(2, orders.largestDemand());
+    }
+
+    /**
+     * a subscriber asking for one result gets a single order dispensed
+     * however many outlets are free
+     */
+    @Test
+    public void testDemandFollowsSubscriber() throws Exception {
+        RecipeBeverageMachine machine = waterMachine(4, 100);
+        OrderPublisher orders = new OrderPublisher(Collections.nCopies(8, BeverageType.HOT_WATER));
+        ResultSubscriber results = new ResultSubscriber(1);
+        DispenseProcessor processor = new DispenseProcessor(machine);
+        orders.subscribe(processor);
+        processor.subscribe(results);
+
+        Thread.sleep(100);
+        Assert.assertEquals(1, results.results.size());
+        Assert.assertEquals(1, orders.published());
+        Assert.assertEquals(90, machine.ingredientLevel(IngredientType.WATER));
+
+        results.subscription.request(2);
+        Thread.sleep(100);
+        Assert.assertEquals(3, results.results.size());
+        Assert.assertEquals(3, orders.published());
+
+        results.subscription.cancel();
+        Assert.assertEquals(true, orders.cancelled);
+        Assert.assertEquals(1, results.done.getCount());
+    }
+
+    @Test
+    public void testProtocolViolations() throws Exception {
+        DispenseProcessor processor = new DispenseProcessor(waterMachine(1, 10));
+        ResultSubscriber first = new ResultSubscriber(0);
+        ResultSubscriber second = new ResultSubscriber(1);
+        processor.subscribe(first);
+        processor.subscribe(second);
+        Assert.assertEquals(true, second.error instanceof IllegalStateException);
+
+        OrderPublisher orders = new OrderPublisher(Collections.nCopies(1, BeverageType.HOT_WATER));
+        orders.subscribe(processor);
+        first.subscription.request(0);
+        Assert.assertEquals(true, first.error instanceof IllegalArgumentException);
+        Assert.assertEquals(true, orders.cancelled);
+        Assert.assertEquals(0, orders.published());
+
+        Exception ex = null;
+        try {
+            new DispenseProcessor(null);
+        } catch (IllegalArgumentException iae) {
+            ex = iae;
+        }
+        Assert.assertEquals(true, ex != null);
+    }
+
+    /**
+     * machine pouring hot water of 10 water in 20 ms from a container holding level
+     */
+    private RecipeBeverageMachine waterMachine(int outlet, int level) {
+        BeverageComposition recipe = new BeverageComposition();
+        recipe.put(IngredientType.WATER, 10);
+        return new RecipeBeverageMachine.Builder().outlet(outlet)
+                .addIngredientContainer(new ConcreteIngredientContainer(IngredientType.WATER, level))
+                .addRecipe(BeverageType.HOT_WATER, recipe)
+                .brewTimes(new BrewTimes.Builder().every(BrewProfile.fixed(20, TimeUnit.MILLISECONDS)).build())
+                .build();
+    }
+
+    /**
+     * publishes a list of orders as they are requested, recording the largest
+     * demand it was ever asked for and not yet served
+     */
+    private static class OrderPublisher implements Flow.Publisher<BeverageType> {
+        private final List<BeverageType> orders;
+        private int next;
+        private long demand;
+        private long largestDemand;
+        private boolean emitting;
+        private boolean completed;
+        private volatile boolean cancelled;
+
+        private OrderPublisher(List<BeverageType> orders) {
+            this.orders = orders;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super BeverageType> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    synchronized (OrderPublisher.this) {
+                        demand += n;
+                        largestDemand = Math.max(largestDemand, demand);
+                        if (emitting)
+                            return;
+                        emitting = true;
+                    }
+                    while (true) {
+                        BeverageType type = null;
+                        synchronized (OrderPublisher.this) {
+                            if (cancelled || completed || (next < orders.size() && demand == 0)) {
+                                emitting = false;
+                                return;
+                            }
+                            if (next == orders.size()) {
+                                completed = true;
+                            } else {
+                                type = orders.get(next++);
+                                demand--;
+                            }
+                        }
+                        if (type == null) {
+                            subscriber.onComplete();
+                            return;
+                        }
+                        subscriber.onNext(type);
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+
+        private synchronized long largestDemand() {
+            return largestDemand;
+        }
+
+        private synchronized int published() {
+            return next;
+        }
+    }
+
+    private static class ResultSubscriber implements Flow.Subscriber<DispenseResult> {
+        private final long initialRequest;
+        private final List<DispenseResult> results = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        private ResultSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0)
+                subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(DispenseResult result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
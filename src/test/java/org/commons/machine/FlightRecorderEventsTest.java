@@ -0,0 +1,87 @@
+package org.commons.machine;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.commons.ingredients.IngredientType;
+import org.commons.loadgen.MachineConfig;
+import org.commons.metrics.FlightRecording;
+import org.exceptions.IncorrectIngredientTypeException;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Flight recorder events of the machines. Skipped on JVMs without jdk.jfr,
+ * where the machines record no events.
+ */
+public class FlightRecorderEventsTest {
+
+    private String inputFile = getClass().getClassLoader().getResource("input_test.json").getPath();
+    private ChaiPointBeverageMachine chaiPointBeverageMachine;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(FlightRecording.isAvailable());
+        chaiPointBeverageMachine = MachineConfig.read(inputFile).buildChaiPointMachine();
+    }
+
+    /**
+     * with the thresholds lowered to zero every dispense, brew and refill is recorded
+     */
+    @Test
+    public void testFlightRecorderEvents() throws IOException, IncorrectIngredientTypeException {
+        Path dump = Files.createTempFile("beverage-machine", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.commons.machine.Dispense").withThreshold(Duration.ZERO);
+            recording.enable("org.commons.machine.Brew").withThreshold(Duration.ZERO);
+            recording.enable("org.commons.ingredients.Refill").withThreshold(Duration.ZERO);
+            recording.start();
+
+            chaiPointBeverageMachine.dispense(BeverageType.HOT_COFFEE);
+            chaiPointBeverageMachine.dispense(BeverageType.HOT_COFFEE);
+            chaiPointBeverageMachine.refillIngredient(IngredientType.MILK, 300);
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Files.delete(dump);
+        List<RecordedEvent> dispenses = events.stream()
+                .filter(event -> event.getEventType().getName().equals("org.commons.machine.Dispense"))
+                .collect(Collectors.toList());
+        List<RecordedEvent> brews = events.stream()
+                .filter(event -> event.getEventType().getName().equals("org.commons.machine.Brew"))
+                .collect(Collectors.toList());
+        List<RecordedEvent> refills = events.stream()
+                .filter(event -> event.getEventType().getName().equals("org.commons.ingredients.Refill"))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(2, dispenses.size());
+        Assert.assertEquals(2, brews.size());
+        Assert.assertEquals(1, refills.size());
+
+        Assert.assertEquals("hot_coffee", dispenses.get(0).getString("beverage"));
+        Assert.assertEquals("PREPARED", dispenses.get(0).getString("status"));
+        Assert.assertEquals("INGREDIENT_NOT_SUFFICIENT", dispenses.get(1).getString("status"));
+        Assert.assertEquals(IngredientType.MILK.getFieldDescriptor(), dispenses.get(1).getString("ingredient"));
+        Assert.assertEquals(100, dispenses.get(1).getInt("ingredientLevel"));
+        Assert.assertEquals(false, dispenses.get(1).getBoolean("asynchronous"));
+
+        Assert.assertEquals("ChaiPointBeverageMachine", brews.get(1).getString("machine"));
+        Assert.assertEquals(IngredientType.MILK.getFieldDescriptor(), brews.get(1).getString("ingredient"));
+
+        Assert.assertEquals(IngredientType.MILK.getFieldDescriptor(), refills.get(0).getString("ingredient"));
+        Assert.assertEquals(300, refills.get(0).getInt("amount"));
+        Assert.assertEquals(400, refills.get(0).getInt("level"));
+    }
+}
@@ -0,0 +1,98 @@
+package org.commons.machine;
+
+import org.commons.ingredients.ConcreteIngredientContainer;
+import org.commons.ingredients.IngredientContainer;
+import org.commons.ingredients.IngredientType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IngredientReservationTest {
+
+    private BeverageComposition recipe(int water, int sugar) {
+        BeverageComposition recipe = new BeverageComposition();
+        recipe.put(IngredientType.WATER, water);
+        recipe.put(IngredientType.SUGAR_SYRUP, sugar);
+        return recipe;
+    }
+
+    private Map<IngredientType, IngredientContainer> containers(IngredientContainer... containers) {
+        Map<IngredientType, IngredientContainer> map = new HashMap<>();
+        for (IngredientContainer container : containers)
+            map.put(container.type(), container);
+        return map;
+    }
+
+    /**
+     * testing that nothing is debited when one ingredient of the recipe is short
+     */
+    @Test
+    public void testAllOrNothing() {
+        IngredientContainer water = new ConcreteIngredientContainer(IngredientType.WATER, 100);
+        IngredientContainer sugar = new ConcreteIngredientContainer(IngredientType.SUGAR_SYRUP, 15);
+        IngredientReservation reservation = new IngredientReservation(recipe(50, 10), containers(sugar, water));
+
+        Assert.assertEquals(BrewOutcome.PREPARED, reservation.tryReserve());
+        Assert.assertEquals(50, water.quantity());
+        Assert.assertEquals(5, sugar.quantity());
+
+        BrewOutcome outcome = reservation.tryReserve();
+        Assert.assertEquals(BrewStatus.INGREDIENT_NOT_SUFFICIENT, outcome.status());
+        Assert.assertEquals(IngredientType.SUGAR_SYRUP, outcome.ingredient());
+        Assert.assertEquals(50, water.quantity());
+        Assert.assertEquals(5, sugar.quantity());
+
+        Exception ex = null;
+        try {
+            new IngredientReservation(recipe(50, 10), new HashMap<>());
+        } catch (IllegalArgumentException ile) {
+            ex = ile;
+        }
+        Assert.assertEquals(true, ex != null);
+    }
+
+    /**
+     * two reservations sharing the sugar container debit it in parallel from
+     * many threads and never debit half a recipe
+     */
+    @Test
+    public void testSharedContainers() throws InterruptedException {
+        final IngredientContainer water = new ConcreteIngredientContainer(IngredientType.WATER, 10000);
+        final IngredientContainer milk = new ConcreteIngredientContainer(IngredientType.MILK, 10000);
+        final IngredientContainer sugar = new ConcreteIngredientContainer(IngredientType.SUGAR_SYRUP, 3000);
+
+        BeverageComposition milkRecipe = new BeverageComposition();
+        milkRecipe.put(IngredientType.MILK, 10);
+        milkRecipe.put(IngredientType.SUGAR_SYRUP, 10);
+
+        final IngredientReservation first = new IngredientReservation(recipe(10, 10), containers(water, sugar));
+        final IngredientReservation second = new IngredientReservation(milkRecipe, containers(sugar, milk));
+        final AtomicInteger firstCups = new AtomicInteger();
+        final AtomicInteger secondCups = new AtomicInteger();
+        final int threads = 8;
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int i = 0; i < threads; i++) {
+            final boolean even = i % 2 == 0;
+            new Thread(() -> {
+                for (int j = 0; j < 500; j++) {
+                    if (even && first.tryReserve().isPrepared())
+                        firstCups.incrementAndGet();
+                    else if (!even && second.tryReserve().isPrepared())
+                        secondCups.incrementAndGet();
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        Assert.assertEquals(300, firstCups.get() + secondCups.get());
+        Assert.assertEquals(0, sugar.quantity());
+        Assert.assertEquals(10000 - 10 * firstCups.get(), water.quantity());
+        Assert.assertEquals(10000 - 10 * secondCups.get(), milk.quantity());
+    }
+}
@@ -0,0 +1,62 @@
+package org.commons.machine;
+
+import org.commons.metrics.LatencyHistogram;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    /**
+     * percentiles are reported within the resolution of a log-linear bucket
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.snapshot().percentile(99));
+
+        for (long value = 1; value <= 1000; value++)
+            histogram.record(value * 1000);
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(1001, snapshot.count());
+        Assert.assertEquals(1000000, snapshot.max());
+        Assert.assertEquals(true, Math.abs(snapshot.percentile(50) - 500000) <= 500000 / LatencyHistogram.SUB_BUCKETS);
+        Assert.assertEquals(true, Math.abs(snapshot.percentile(99) - 990000) <= 990000 / LatencyHistogram.SUB_BUCKETS);
+        Assert.assertEquals(1000000, snapshot.percentile(100));
+        Assert.assertEquals(0, snapshot.percentile(0));
+        Assert.assertEquals(500000, snapshot.mean(), 1000);
+
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(Long.MAX_VALUE, histogram.snapshot().percentile(100));
+
+        Exception ex = null;
+        try {
+            snapshot.percentile(101);
+        } catch (IllegalArgumentException ile) {
+            ex = ile;
+        }
+        Assert.assertEquals(true, ex != null);
+    }
+
+    /**
+     * every value recorded from many threads is counted
+     */
+    @Test
+    public void testConcurrentRecord() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++)
+                    histogram.record(j);
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        Assert.assertEquals(80000, histogram.snapshot().count());
+        Assert.assertEquals(9999, histogram.snapshot().max());
+    }
+}
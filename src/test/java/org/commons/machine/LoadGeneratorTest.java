@@ -0,0 +1,68 @@
+package org.commons.machine;
+
+import org.commons.ingredients.IngredientType;
+import org.commons.loadgen.LoadGenerator;
+import org.commons.loadgen.LoadProfile;
+import org.commons.loadgen.LoadReport;
+import org.commons.loadgen.MachineConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+public class LoadGeneratorTest {
+
+    private String inputFile = getClass().getClassLoader().getResource("input_test.json").getPath();
+
+    @Test
+    public void testMachineConfig() throws IOException {
+        MachineConfig config = MachineConfig.read(inputFile);
+        Assert.assertEquals(3, config.outlet());
+        Assert.assertEquals(500, (int) config.initialLevels().get(IngredientType.WATER));
+        Assert.assertEquals(100, (int) config.initialLevels().get(IngredientType.SUGAR_SYRUP));
+        Assert.assertEquals(400, config.recipes().get(BeverageType.HOT_COFFEE).getQuantity(IngredientType.MILK));
+        Assert.assertEquals("hot_coffee " + BeverageOutputMessage.PREPARED,
+                config.buildChaiPointMachine().dispense(BeverageType.HOT_COFFEE));
+    }
+
+    /**
+     * 500 of milk makes one coffee, every other order runs out of milk
+     * however many customers order at once
+     */
+    @Test
+    public void testOutOfStockReport() throws IOException, InterruptedException {
+        LoadProfile profile = new LoadProfile.Builder().orders(200).mix(BeverageType.HOT_COFFEE, 1)
+                .threads(4).build();
+        LoadReport report = new LoadGenerator(MachineConfig.read(inputFile), profile).run();
+
+        Assert.assertEquals(200, report.orders());
+        Assert.assertEquals(200, report.count(BeverageType.HOT_COFFEE));
+        Assert.assertEquals(1, report.count(BeverageType.HOT_COFFEE, BrewStatus.PREPARED));
+        Assert.assertEquals(199, report.count(BeverageType.HOT_COFFEE, BrewStatus.INGREDIENT_NOT_SUFFICIENT));
+        Assert.assertEquals(199, report.shortages(IngredientType.MILK));
+        Assert.assertEquals(0, report.shortages(IngredientType.WATER));
+        Assert.assertEquals(0, report.count(BeverageType.GREEN_TEA));
+        Assert.assertEquals(1, report.prepared());
+        Assert.assertEquals(true, report.throughput() > 0);
+        Assert.assertEquals(report.throughput() / 200, report.preparedThroughput(), 1e-9);
+        Assert.assertEquals(true, report.utilisation() >= 0 && report.utilisation() <= 1);
+
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        report.print(new PrintStream(printed));
+        Assert.assertEquals(true, printed.toString().contains("hot_coffee"));
+    }
+
+    @Test
+    public void testRefillSchedule() throws IOException, InterruptedException {
+        LoadProfile profile = new LoadProfile.Builder().orders(20).mix(BeverageType.HOT_MILK, 1)
+                .arrivalRate(400).refillEvery(10, TimeUnit.MILLISECONDS).build();
+        LoadReport report = new LoadGenerator(MachineConfig.read(inputFile), profile).run();
+
+        Assert.assertEquals(20, report.orders());
+        Assert.assertEquals(true, report.count(BeverageType.HOT_MILK, BrewStatus.PREPARED) > 10);
+        Assert.assertEquals(true, report.latency().max() > 0);
+    }
+}
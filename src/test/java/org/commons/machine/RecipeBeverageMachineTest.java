@@ -0,0 +1,607 @@
+package org.commons.machine;
+
+import com.google.gson.Gson;
+import org.commons.ingredients.ConcreteIngredientContainer;
+import org.commons.ingredients.IngredientStatus;
+import org.commons.ingredients.IngredientType;
+import org.exceptions.BeverageTypeNotSupportedException;
+import org.exceptions.IncorrectIngredientTypeException;
+import org.exceptions.RequestedQuantityNotPresentException;
+import org.exceptions.RequestedQuantityNotSufficientException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RecipeBeverageMachineTest {
+
+    private Gson gson = new Gson();
+    private String inputFile = getClass().getClassLoader().getResource("input_test.json").getPath();
+    private RecipeBeverageMachine recipeBeverageMachine;
+
+    @Before
+    public void setUp() throws IOException, BeverageTypeNotSupportedException {
+        InputData inputData = gson.fromJson(new FileReader(inputFile), InputData.class);
+        RecipeBeverageMachine.Builder builder = new RecipeBeverageMachine.Builder().outlet(inputData.getOutlet());
+        for (IngredientType type : IngredientType.values())
+            builder.addIngredientContainer(inputData.buildIngredientContainer(type));
+        for (BeverageType type : BeverageType.values())
+            builder.addRecipe(type, inputData.buildBeverageComposition(type));
+        recipeBeverageMachine = builder.build();
+    }
+
+    @Test
+    public void testBuilder() {
+        BeverageComposition recipe = new BeverageComposition();
+        recipe.put(IngredientType.WATER, 50);
+
+        Exception ex = null;
+        try {
+            new RecipeBeverageMachine.Builder().outlet(1).build();
+        } catch (IllegalArgumentException ile) {
+            ex = ile;
+        }
+        Assert.assertEquals(true, ex != null);
+
+        ex = null;
+        try {
+            new RecipeBeverageMachine.Builder().outlet(1).addRecipe(BeverageType.HOT_WATER, recipe).build();
+        } catch (IllegalArgumentException ile) {
+            ex = ile;
+        }
+        Assert.assertEquals(true, ex != null);
+
+        ex = null;
+        try {
+            new RecipeBeverageMachine.Builder().outlet(0)
+                    .addIngredientContainer(new ConcreteIngredientContainer(IngredientType.WATER, 100))
+                    .addRecipe(BeverageType.HOT_WATER, recipe).build();
+        } catch (IllegalArgumentException ile) {
+            ex = ile;
+        }
+        Assert.assertEquals(true, ex != null);
+
+        ex = null;
+        try {
+            new RecipeBeverageMachine.Builder().coalescingWindow(10, null);
+        } catch (IllegalArgumentException ile) {
+            ex = ile;
+        }
+        Assert.assertEquals(true, ex != null);
+
+        ex = null;
+        try {
+            new ChaiPointBeverageMachine.Builder().coalescingWindow(-1, TimeUnit.MILLISECONDS);
+        } catch (IllegalArgumentException ile) {
+            ex = ile;
+        }
+        Assert.assertEquals(true, ex != null);
+
+        RecipeBeverageMachine hotWater = new RecipeBeverageMachine.Builder().outlet(1)
+                .addIngredientContainer(new ConcreteIngredientContainer(IngredientType.WATER, 100))
+                .addRecipe(BeverageType.HOT_WATER, recipe).build();
+        recipe.put(IngredientType.WATER, 80);
+        Assert.assertEquals(true, hotWater.serves(BeverageType.HOT_WATER));
+        Assert.assertEquals(false, hotWater.serves(BeverageType.HOT_MILK));
+        Assert.assertEquals("hot_water " + BeverageOutputMessage.PREPARED, hotWater.dispense(BeverageType.HOT_WATER));
+        Assert.assertEquals(50, hotWater.ingredientLevel(IngredientType.WATER));
+        Assert.assertEquals(0, hotWater.ingredientLevel(IngredientType.MILK));
+        Assert.assertEquals("hot_milk " + BeverageOutputMessage.NOT_PREPARED + " because BeverageType=HOT_MILK " +
+                BeverageOutputMessage.NOT_SUPPORTED + " in RecipeBeverageMachine",
+                hotWater.dispense(BeverageType.HOT_MILK));
+    }
+
+    @Test
+    public void testBrew() throws RequestedQuantityNotSufficientException,
+            RequestedQuantityNotPresentException, BeverageTypeNotSupportedException {
+        recipeBeverageMachine.brew(BeverageType.HOT_COFFEE);
+        Assert.assertEquals(400, recipeBeverageMachine.ingredientLevel(IngredientType.WATER));
+        Assert.assertEquals(100, recipeBeverageMachine.ingredientLevel(IngredientType.MILK));
+
+        Exception ex = null;
+        try {
+            recipeBeverageMachine.brew(BeverageType.HOT_COFFEE);
+        } catch (RequestedQuantityNotSufficientException rqns) {
+            ex = rqns;
+        }
+        Assert.assertEquals(true, ex != null);
+        Assert.assertEquals(400, recipeBeverageMachine.ingredientLevel(IngredientType.WATER));
+
+        ex = null;
+        try {
+            recipeBeverageMachine.brew(null);
+        } catch (BeverageTypeNotSupportedException btns) {
+            ex = btns;
+        }
+        Assert.assertEquals(true, ex != null);
+    }
+
+    /**
+     * same burst of orders as the chai point machine gives the same results
+     */
+    @Test
+    public void testDispenseBatch() {
+        List<String> output = recipeBeverageMachine.dispenseBatch(Arrays.asList(BeverageType.HOT_COFFEE,
+                BeverageType.HOT_COFFEE, BeverageType.HOT_WATER, BeverageType.GREEN_TEA,
+                BeverageType.GREEN_TEA, null));
+
+        Assert.assertEquals(6, output.size());
+        Assert.assertEquals("hot_coffee " + BeverageOutputMessage.PREPARED, output.get(0));
+        Assert.assertEquals("hot_coffee " + BeverageOutputMessage.NOT_PREPARED + " because hot_milk is " +
+                BeverageOutputMessage.QTY_NS, output.get(1));
+        Assert.assertEquals("hot_water " + BeverageOutputMessage.PREPARED, output.get(2));
+        Assert.assertEquals("green_tea " + BeverageOutputMessage.PREPARED, output.get(3));
+        Assert.assertEquals("green_tea " + BeverageOutputMessage.NOT_PREPARED + " because sugar_syrup is " +
+                BeverageOutputMessage.QTY_NA, output.get(4));
+        Assert.assertEquals(true, output.get(5).contains(BeverageOutputMessage.NOT_PREPARED));
+
+        Assert.assertEquals(250, recipeBeverageMachine.ingredientLevel(IngredientType.WATER));
+        Assert.assertEquals(0, recipeBeverageMachine.ingredientLevel(IngredientType.SUGAR_SYRUP));
+        Assert.assertEquals(270, recipeBeverageMachine.ingredientLevel(IngredientType.GREEN_MIXTURE));
+
+        MachineMetrics.Snapshot metrics = recipeBeverageMachine.metrics().snapshot();
+        Assert.assertEquals(1, metrics.beverage(BeverageType.HOT_COFFEE).outletWait().count());
+        Assert.assertEquals(1, metrics.beverage(BeverageType.HOT_WATER).brew().count());
+        Assert.assertEquals(1, metrics.beverage(BeverageType.GREEN_TEA).outletWait().count());
+        Assert.assertEquals(4, recipeBeverageMachine.outletMetrics().acquireTime().count());
+        Assert.assertEquals(0, recipeBeverageMachine.outletMetrics().queueLength());
+        Assert.assertEquals(0, recipeBeverageMachine.outletMetrics().busyOutlets());
+    }
+
+    /**
+     * the cups of a batch wait for the outlets together, and a caller
+     * interrupted while they wait returns at once while they are still poured
+     */
+    @Test
+    public void testDispenseBatchAtOutlets() throws Exception {
+        BeverageComposition recipe = new BeverageComposition();
+        recipe.put(IngredientType.WATER, 10);
+        RecipeBeverageMachine machine = new RecipeBeverageMachine.Builder().outlet(2)
+                .addIngredientContainer(new ConcreteIngredientContainer(IngredientType.WATER, 100))
+                .addRecipe(BeverageType.HOT_WATER, recipe)
+                .build();
+        CountDownLatch release = new CountDownLatch(1);
+        Executor held = brew -> new Thread(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            brew.run();
+        }).start();
+        List<CompletableFuture<String>> holding = Arrays.asList(
+                machine.dispenseAsync(BeverageType.HOT_WATER, held), machine.dispenseAsync(BeverageType.HOT_WATER, held));
+
+        AtomicReference<List<String>> output = new AtomicReference<>();
+        Thread customer = new Thread(() -> output.set(machine.dispenseBatch(
+                Collections.nCopies(3, BeverageType.HOT_WATER))));
+        customer.start();
+        while (machine.outletMetrics().queueLength() < 3)
+            Thread.sleep(1);
+        customer.interrupt();
+        customer.join(5000);
+        Assert.assertEquals(Collections.nCopies(3, "hot_water " + BeverageOutputMessage.PREPARED), output.get());
+        Assert.assertEquals(70, machine.ingredientLevel(IngredientType.WATER));
+
+        release.countDown();
+        for (CompletableFuture<String> order : holding)
+            Assert.assertEquals("hot_water " + BeverageOutputMessage.PREPARED, order.get(5, TimeUnit.SECONDS));
+        while (machine.metrics().snapshot().beverage(BeverageType.HOT_WATER).count(BrewStatus.PREPARED) < 5)
+            Thread.sleep(1);
+        Assert.assertEquals(5, machine.outletMetrics().acquireTime().count());
+        Assert.assertEquals(50, machine.ingredientLevel(IngredientType.WATER));
+        Assert.assertEquals(3, machine.outletMetrics().peakQueueLength());
+    }
+
+    @Test
+    public void testRefillAndIngredientsRunningLow() throws IncorrectIngredientTypeException {
+        Assert.assertEquals(0, recipeBeverageMachine.ingredientsRunningLow().size());
+
+        recipeBeverageMachine.dispense(BeverageType.HOT_COFFEE);
+        Assert.assertEquals(Arrays.asList(IngredientType.MILK), recipeBeverageMachine.ingredientsRunningLow());
+
+        recipeBeverageMachine.refillIngredient(IngredientType.MILK, 300);
+        Assert.assertEquals(400, recipeBeverageMachine.ingredientLevel(IngredientType.MILK));
+        Assert.assertEquals(0, recipeBeverageMachine.ingredientsRunningLow().size());
+
+        Exception ex = null;
+        try {
+            recipeBeverageMachine.refillIngredient(null, 10);
+        } catch (IncorrectIngredientTypeException iite) {
+            ex = iite;
+        }
+        Assert.assertEquals(true, ex != null);
+    }
+
+    /**
+     * cups keep their outlet for their brew time, and a shared heater brews
+     * one cup at a time whatever the number of outlets
+     */
+    @Test
+    public void testBrewTimes() throws Exception {
+        SharedResource heater = new SharedResource("heater", 1);
+        BeverageComposition recipe = new BeverageComposition();
+        recipe.put(IngredientType.WATER, 1);
+        RecipeBeverageMachine machine = new RecipeBeverageMachine.Builder().outlet(2)
+                .addIngredientContainer(new ConcreteIngredientContainer(IngredientType.WATER, 100))
+                .addRecipe(BeverageType.HOT_WATER, recipe)
+                .addRecipe(BeverageType.HOT_MILK, recipe)
+                .brewTimes(new BrewTimes.Builder()
+                        .profile(BeverageType.HOT_WATER, BrewProfile.fixed(100, TimeUnit.MILLISECONDS).using(heater))
+                        .build())
+                .build();
+
+        Assert.assertEquals("hot_milk " + BeverageOutputMessage.PREPARED, machine.dispense(BeverageType.HOT_MILK));
+        Assert.assertEquals(0, machine.metrics().snapshot().beverage(BeverageType.HOT_MILK).brew().max() /
+                TimeUnit.MILLISECONDS.toNanos(100));
+
+        long start = System.nanoTime();
+        List<String> output = machine.dispenseBatch(Arrays.asList(BeverageType.HOT_WATER, BeverageType.HOT_WATER));
+        long elapsed = System.nanoTime() - start;
+        Assert.assertEquals(Arrays.asList("hot_water " + BeverageOutputMessage.PREPARED,
+                "hot_water " + BeverageOutputMessage.PREPARED), output);
+        Assert.assertEquals(true, elapsed >= TimeUnit.MILLISECONDS.toNanos(200));
+        Assert.assertEquals(true, machine.metrics().snapshot().beverage(BeverageType.HOT_WATER).brew().max() >=
+                TimeUnit.MILLISECONDS.toNanos(100));
+        Assert.assertEquals(97, machine.ingredientLevel(IngredientType.WATER));
+    }
+
+    /**
+     * orders queued behind a busy outlet are served by the policy of the
+     * machine: in arrival order, quick beverages first or by priority class
+     */
+    @Test
+    public void testOutletPolicy() throws Exception {
+        BrewTimes brewTimes = new BrewTimes.Builder()
+                .profile(BeverageType.HOT_COFFEE, BrewProfile.fixed(100, TimeUnit.MILLISECONDS))
+                .profile(BeverageType.HOT_MILK, BrewProfile.fixed(40, TimeUnit.MILLISECONDS))
+                .profile(BeverageType.HOT_WATER, BrewProfile.fixed(20, TimeUnit.MILLISECONDS))
+                .build();
+        Map<BeverageType, Integer> classes = new EnumMap<>(BeverageType.class);
+        classes.put(BeverageType.HOT_MILK, 0);
+
+        Assert.assertEquals(Arrays.asList(BeverageType.HOT_COFFEE, BeverageType.HOT_COFFEE,
+                BeverageType.HOT_MILK, BeverageType.HOT_WATER),
+                servedOrder(OutletPolicy.fifo(), brewTimes));
+        Assert.assertEquals(Arrays.asList(BeverageType.HOT_COFFEE, BeverageType.HOT_WATER,
+                BeverageType.HOT_MILK, BeverageType.HOT_COFFEE),
+                servedOrder(OutletPolicy.shortestBrewFirst(brewTimes, 0), brewTimes));
+        Assert.assertEquals(Arrays.asList(BeverageType.HOT_COFFEE, BeverageType.HOT_MILK,
+                BeverageType.HOT_COFFEE, BeverageType.HOT_WATER),
+                servedOrder(OutletPolicy.priorityClasses(classes), brewTimes));
+
+        Exception ex = null;
+        try {
+            OutletPolicy.shortestBrewFirst(brewTimes, -1);
+        } catch (IllegalArgumentException iae) {
+            ex = iae;
+        }
+        Assert.assertEquals(true, ex != null);
+    }
+
+    /**
+     * occupy the single outlet with a coffee, queue a coffee, a hot milk and a
+     * hot water behind it and report the order in which they were served
+     */
+    private List<BeverageType> servedOrder(OutletPolicy policy, BrewTimes brewTimes) throws Exception {
+        BeverageComposition recipe = new BeverageComposition();
+        recipe.put(IngredientType.WATER, 1);
+        RecipeBeverageMachine machine = new RecipeBeverageMachine.Builder().outlet(1)
+                .addIngredientContainer(new ConcreteIngredientContainer(IngredientType.WATER, 100))
+                .addRecipe(BeverageType.HOT_COFFEE, recipe)
+                .addRecipe(BeverageType.HOT_MILK, recipe)
+                .addRecipe(BeverageType.HOT_WATER, recipe)
+                .brewTimes(brewTimes)
+                .outletPolicy(policy)
+                .build();
+        Assert.assertEquals(policy, machine.outletPolicy());
+
+        List<BeverageType> served = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> orders = new ArrayList<>();
+        for (BeverageType type : Arrays.asList(BeverageType.HOT_COFFEE, BeverageType.HOT_COFFEE,
+                BeverageType.HOT_MILK, BeverageType.HOT_WATER)) {
+            orders.add(machine.dispenseAsync(type).thenRun(() -> served.add(type)));
+            if (orders.size() == 1) {
+                while (machine.outletMetrics().busyOutlets() < 1)
+                    Thread.sleep(1);
+            }
+        }
+        for (CompletableFuture<Void> order : orders)
+            order.get(5, TimeUnit.SECONDS);
+        return served;
+    }
+
+    /**
+     * keeping teas makeable refuses the second coffee of a run on coffee and
+     * serves more cups out of the same milk, reserves hold an ingredient back
+     * for one beverage and rate limits let bursts through then one cup per
+     * interval
+     */
+    @Test
+    public void testAdmissionPolicy() {
+        List<BeverageType> shift = Arrays.asList(BeverageType.HOT_COFFEE, BeverageType.HOT_COFFEE,
+                BeverageType.GINGER_TEA, BeverageType.GINGER_TEA, BeverageType.GINGER_TEA,
+                BeverageType.GINGER_TEA, BeverageType.GINGER_TEA, BeverageType.GINGER_TEA);
+        Assert.assertEquals(4, prepared(milkMachine(null).dispenseBatch(shift)));
+        Assert.assertEquals(7, prepared(milkMachine(new AdmissionPolicy.Builder()
+                .keepMakeable(BeverageType.GINGER_TEA, 6).build()).dispenseBatch(shift)));
+        Assert.assertEquals(7, prepared(milkMachine(new AdmissionPolicy.Builder()
+                .reserve(BeverageType.GINGER_TEA, IngredientType.MILK, 600).build()).dispenseBatch(shift)));
+
+        RecipeBeverageMachine limited = milkMachine(new AdmissionPolicy.Builder()
+                .rateLimit(BeverageType.GINGER_TEA, 2, 1, TimeUnit.HOURS).build());
+        long hour = TimeUnit.HOURS.toNanos(1);
+        Assert.assertEquals(true, limited.tryBrewAdmitted(BeverageType.GINGER_TEA, 0).isPrepared());
+        Assert.assertEquals(true, limited.tryBrewAdmitted(BeverageType.GINGER_TEA, 0).isPrepared());
+        Assert.assertEquals(BrewOutcome.RATE_LIMITED, limited.tryBrewAdmitted(BeverageType.GINGER_TEA, hour / 4));
+        Assert.assertEquals(true, limited.tryBrewAdmitted(BeverageType.GINGER_TEA, hour / 2).isPrepared());
+        Assert.assertEquals(BrewOutcome.RATE_LIMITED, limited.tryBrewAdmitted(BeverageType.GINGER_TEA, hour / 2));
+        Assert.assertEquals(true, limited.tryBrewAdmitted(BeverageType.HOT_COFFEE, hour / 2).isPrepared());
+        Assert.assertEquals("ginger_tea " + BeverageOutputMessage.NOT_PREPARED + " because ginger_tea is " +
+                BeverageOutputMessage.RATE_LIMITED, DispenseResult.of(BeverageType.GINGER_TEA,
+                BrewOutcome.RATE_LIMITED).message());
+    }
+
+    /**
+     * coffees turned away while the milk is out give their slot of the rate
+     * limit back, the coffees of the hour are served once milk is refilled
+     */
+    @Test
+    public void testRateLimitOutOfStock() throws Exception {
+        RecipeBeverageMachine limited = milkMachine(new AdmissionPolicy.Builder()
+                .rateLimit(BeverageType.HOT_COFFEE, 2, 1, TimeUnit.HOURS).build());
+        for (int i = 0; i < 10; i++)
+            Assert.assertEquals(true, limited.tryBrewAdmitted(BeverageType.GINGER_TEA, 0).isPrepared());
+        for (int i = 0; i < 10; i++)
+            Assert.assertEquals(BrewStatus.INGREDIENT_NOT_AVAILABLE,
+                    limited.tryBrewAdmitted(BeverageType.HOT_COFFEE, 0).status());
+
+        limited.refillIngredient(IngredientType.MILK, 1000);
+        Assert.assertEquals(true, limited.tryBrewAdmitted(BeverageType.HOT_COFFEE, 0).isPrepared());
+        Assert.assertEquals(true, limited.tryBrewAdmitted(BeverageType.HOT_COFFEE, 0).isPrepared());
+        Assert.assertEquals(BrewOutcome.RATE_LIMITED, limited.tryBrewAdmitted(BeverageType.HOT_COFFEE, 0));
+    }
+
+    /**
+     * machine sharing 1000 milk between coffees of 400 and ginger teas of 100
+     */
+    private RecipeBeverageMachine milkMachine(AdmissionPolicy policy) {
+        BeverageComposition coffee = new BeverageComposition();
+        coffee.put(IngredientType.MILK, 400);
+        BeverageComposition gingerTea = new BeverageComposition();
+        gingerTea.put(IngredientType.MILK, 100);
+        gingerTea.put(IngredientType.WATER, 100);
+        return new RecipeBeverageMachine.Builder().outlet(1)
+                .addIngredientContainer(new ConcreteIngredientContainer(IngredientType.MILK, 1000))
+                .addIngredientContainer(new ConcreteIngredientContainer(IngredientType.WATER, 1000))
+                .addRecipe(BeverageType.HOT_COFFEE, coffee)
+                .addRecipe(BeverageType.GINGER_TEA, gingerTea)
+                .admissionPolicy(policy)
+                .build();
+    }
+
+    private static int prepared(List<String> output) {
+        int prepared = 0;
+        for (String result : output) {
+            if (result.endsWith(BeverageOutputMessage.PREPARED))
+                prepared++;
+        }
+        return prepared;
+    }
+
+    /**
+     * a single outlet only mixes cups whose water four heaters boiled
+     * together, hot milk skips the heaters and an order short of water is
+     * turned away before it reaches them
+     */
+    @Test
+    public void testPipeline() throws Exception {
+        BeverageComposition recipe = new BeverageComposition();
+        recipe.put(IngredientType.WATER, 10);
+        BrewPipeline pipeline = new BrewPipeline.Builder()
+                .stage("heat", 4, new BrewTimes.Builder()
+                        .profile(BeverageType.HOT_WATER, BrewProfile.fixed(200, TimeUnit.MILLISECONDS)).build())
+                .build();
+        RecipeBeverageMachine machine = new RecipeBeverageMachine.Builder().outlet(1)
+                .addIngredientContainer(new ConcreteIngredientContainer(IngredientType.WATER, 55))
+                .addRecipe(BeverageType.HOT_WATER, recipe)
+                .addRecipe(BeverageType.HOT_MILK, recipe)
+                .brewTimes(new BrewTimes.Builder().every(BrewProfile.fixed(20, TimeUnit.MILLISECONDS)).build())
+                .pipeline(pipeline)
+                .build();
+
+        long start = System.nanoTime();
+        List<String> output = machine.dispenseBatch(Collections.nCopies(4, BeverageType.HOT_WATER));
+        long elapsed = System.nanoTime() - start;
+        Assert.assertEquals(Collections.nCopies(4, "hot_water " + BeverageOutputMessage.PREPARED), output);
+        Assert.assertEquals(true, elapsed >= TimeUnit.MILLISECONDS.toNanos(280));
+        Assert.assertEquals(true, elapsed < TimeUnit.MILLISECONDS.toNanos(880));
+        Assert.assertEquals(true, machine.metrics().snapshot().beverage(BeverageType.HOT_WATER).brew().max() <
+                TimeUnit.MILLISECONDS.toNanos(200));
+
+        start = System.nanoTime();
+        Assert.assertEquals(true, machine.dispenseResult(BeverageType.HOT_MILK).isPrepared());
+        Assert.assertEquals(true, System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(200));
+
+        DispenseResult result = machine.dispenseResult(BeverageType.HOT_WATER);
+        Assert.assertEquals(BrewStatus.INGREDIENT_NOT_SUFFICIENT, result.status());
+        Assert.assertEquals(5, machine.ingredientLevel(IngredientType.WATER));
+        Assert.assertEquals(0, pipeline.stages().get(0).queueLength());
+    }
+
+    /**
+     * a cup out of the stages waits no longer than the deadline for the
+     * outlet, and a caller waiting for its cup can be interrupted
+     */
+    @Test
+    public void testPipelineDeadline() throws Exception {
+        BeverageComposition recipe = new BeverageComposition();
+        recipe.put(IngredientType.WATER, 10);
+        RecipeBeverageMachine machine = new RecipeBeverageMachine.Builder().outlet(1)
+                .addIngredientContainer(new ConcreteIngredientContainer(IngredientType.WATER, 100))
+                .addRecipe(BeverageType.HOT_WATER, recipe)
+                .addRecipe(BeverageType.HOT_MILK, recipe)
+                .brewTimes(new BrewTimes.Builder().every(BrewProfile.fixed(500, TimeUnit.MILLISECONDS)).build())
+                .pipeline(new BrewPipeline.Builder()
+                        .stage("heat", 1, new BrewTimes.Builder()
+                                .profile(BeverageType.HOT_WATER, BrewProfile.fixed(50, TimeUnit.MILLISECONDS))
+                                .build())
+                        .build())
+                .build();
+
+        CompletableFuture<String> mixing = machine.dispenseAsync(BeverageType.HOT_MILK);
+        while (machine.outletMetrics().busyOutlets() < 1)
+            Thread.sleep(1);
+        long start = System.nanoTime();
+        DispenseResult result = machine.tryDispense(BeverageType.HOT_WATER, 50, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(BrewStatus.OUTLET_UNAVAILABLE, result.status());
+        Assert.assertEquals(true, System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(400));
+        Assert.assertEquals(0, machine.outletMetrics().queueLength());
+
+        AtomicReference<DispenseResult> interrupted = new AtomicReference<>();
+        Thread customer = new Thread(() -> interrupted.set(machine.dispenseResult(BeverageType.HOT_WATER)));
+        customer.start();
+        while (machine.outletMetrics().queueLength() < 1)
+            Thread.sleep(1);
+        customer.interrupt();
+        customer.join(5000);
+        Assert.assertEquals(BrewStatus.FAILED, interrupted.get().status());
+        Assert.assertEquals(true, interrupted.get().message().contains("outlet wait was interrupted"));
+        Assert.assertEquals("hot_milk " + BeverageOutputMessage.PREPARED, mixing.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * a caller whose cup is stuck behind a busy stage gives up at its deadline
+     * instead of waiting for the stage, and the cup is counted as lost
+     */
+    @Test
+    public void testPipelineStageDeadline() throws Exception {
+        RecipeBeverageMachine machine = slowHeaterMachine();
+        CompletableFuture<String> heating = machine.dispenseAsync(BeverageType.HOT_WATER);
+        BrewPipeline.Stage heater = machine.pipeline().stages().get(0);
+        while (heater.busy() < 1)
+            Thread.sleep(1);
+
+        long start = System.nanoTime();
+        DispenseResult result = machine.tryDispense(BeverageType.HOT_WATER, 50, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(BrewStatus.OUTLET_UNAVAILABLE, result.status());
+        Assert.assertEquals(true, System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        Assert.assertEquals(80, machine.ingredientLevel(IngredientType.WATER));
+        Assert.assertEquals(1, machine.metrics().snapshot().beverage(BeverageType.HOT_WATER).lost());
+        Assert.assertEquals("hot_water " + BeverageOutputMessage.PREPARED, heating.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * an order queued behind a cup waiting for a saturated heater cannot leave
+     * it before its deadline and is turned away without drawing ingredients
+     */
+    @Test
+    public void testPipelineShedding() throws Exception {
+        RecipeBeverageMachine machine = slowHeaterMachine();
+        CompletableFuture<String> heating = machine.dispenseAsync(BeverageType.HOT_WATER);
+        CompletableFuture<String> queued = machine.dispenseAsync(BeverageType.HOT_WATER);
+        BrewPipeline.Stage heater = machine.pipeline().stages().get(0);
+        while (heater.busy() < 1 || heater.queueLength() < 1)
+            Thread.sleep(1);
+
+        DispenseResult result = machine.tryDispense(BeverageType.HOT_WATER, 10, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(BrewStatus.OUTLET_UNAVAILABLE, result.status());
+        Assert.assertEquals(1, machine.outletMetrics().shedOrders());
+        Assert.assertEquals(80, machine.ingredientLevel(IngredientType.WATER));
+        Assert.assertEquals(0, machine.metrics().snapshot().beverage(BeverageType.HOT_WATER).lost());
+        Assert.assertEquals("hot_water " + BeverageOutputMessage.PREPARED, heating.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals("hot_water " + BeverageOutputMessage.PREPARED, queued.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * @return machine of one outlet whose water goes through a single heater
+     *          taking a second per cup
+     */
+    private RecipeBeverageMachine slowHeaterMachine() {
+        BeverageComposition recipe = new BeverageComposition();
+        recipe.put(IngredientType.WATER, 10);
+        return new RecipeBeverageMachine.Builder().outlet(1)
+                .addIngredientContainer(new ConcreteIngredientContainer(IngredientType.WATER, 100))
+                .addRecipe(BeverageType.HOT_WATER, recipe)
+                .pipeline(new BrewPipeline.Builder()
+                        .stage("heat", 1, new BrewTimes.Builder()
+                                .profile(BeverageType.HOT_WATER, BrewProfile.fixed(1, TimeUnit.SECONDS))
+                                .build())
+                        .build())
+                .build();
+    }
+
+    /**
+     * orders of the same beverage reaching their outlets within the window are
+     * reserved in a single debit of the shared container, and brewed one by one
+     * when the container cannot hold the whole group
+     */
+    @Test
+    public void testCoalescing() throws Exception {
+        Assert.assertEquals(Arrays.asList(1, 4), coalesce(1000));
+        Assert.assertEquals(Arrays.asList(2, 2), coalesce(100));
+    }
+
+    /**
+     * place four hot water orders of 50 water at once on a four outlet machine
+     * holding level water
+     *
+     * @return debits of the water container and prepared cups
+     */
+    private List<Integer> coalesce(int level) throws Exception {
+        AtomicInteger debits = new AtomicInteger();
+        BeverageComposition recipe = new BeverageComposition();
+        recipe.put(IngredientType.WATER, 50);
+        RecipeBeverageMachine machine = new RecipeBeverageMachine.Builder().outlet(4)
+                .addIngredientContainer(new ConcreteIngredientContainer(IngredientType.WATER, level) {
+                    @Override
+                    public synchronized IngredientStatus tryRetrieve(int amount) {
+                        debits.incrementAndGet();
+                        return super.tryRetrieve(amount);
+                    }
+                })
+                .addRecipe(BeverageType.HOT_WATER, recipe)
+                .coalescingWindow(2, TimeUnit.SECONDS)
+                .build();
+
+        ExecutorService customers = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<DispenseResult>> orders = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                orders.add(customers.submit(() -> {
+                    start.await();
+                    return machine.dispenseResult(BeverageType.HOT_WATER);
+                }));
+            }
+            start.countDown();
+
+            int prepared = 0;
+            for (Future<DispenseResult> order : orders) {
+                if (order.get(5, TimeUnit.SECONDS).isPrepared())
+                    prepared++;
+            }
+            Assert.assertEquals(level - prepared * 50, machine.ingredientLevel(IngredientType.WATER));
+            return Arrays.asList(debits.get(), prepared);
+        } finally {
+            customers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package org.commons.machine;
+
+import org.commons.ingredients.IngredientType;
+import org.commons.loadgen.MachineConfig;
+import org.commons.simulation.SeededScheduler;
+import org.commons.loadgen.LoadProfile;
+import org.commons.simulation.Simulation;
+import org.commons.simulation.SimulationReport;
+import org.commons.simulation.SimulationTrace;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class SimulationTest {
+
+    private String inputFile = getClass().getClassLoader().getResource("input_test.json").getPath();
+    private MachineConfig config;
+
+    @Before
+    public void setUp() throws IOException {
+        config = MachineConfig.read(inputFile);
+    }
+
+    @Test
+    public void testSchedulerOrder() {
+        SeededScheduler scheduler = new SeededScheduler(7);
+        StringBuilder ran = new StringBuilder();
+        scheduler.schedule(20, () -> ran.append('c'));
+        scheduler.schedule(10, () -> {
+            ran.append('a');
+            scheduler.scheduleAfter(5, () -> ran.append('b'));
+        });
+        scheduler.run();
+
+        Assert.assertEquals("abc", ran.toString());
+        Assert.assertEquals(20, scheduler.clock().now());
+        Assert.assertEquals(0, scheduler.pending());
+
+        Exception ex = null;
+        try {
+            scheduler.schedule(10, () -> ran.append('d'));
+        } catch (IllegalArgumentException iae) {
+            ex = iae;
+        }
+        Assert.assertEquals(true, ex != null);
+    }
+
+    /**
+     * four customers ordering at the same instant from three outlets race for
+     * water and milk, the seed decides who wins and replays it
+     */
+    @Test
+    public void testSameInstantOrders() {
+        Set<String> outcomes = new HashSet<>();
+        for (long seed = 0; seed < 50; seed++) {
+            String trace = burst(seed).toString();
+            Assert.assertEquals(trace, burst(seed).toString());
+            Assert.assertEquals(4, trace.split("\n").length);
+            outcomes.add(trace);
+        }
+        Assert.assertEquals(true, outcomes.size() > 1);
+    }
+
+    private SimulationTrace burst(long seed) {
+        return new Simulation.Builder().machine(config.buildChaiPointMachine()).seed(seed).build()
+                .order(0, TimeUnit.MILLISECONDS, BeverageType.HOT_COFFEE)
+                .order(0, TimeUnit.MILLISECONDS, BeverageType.GINGER_TEA)
+                .order(0, TimeUnit.MILLISECONDS, BeverageType.ELAICHI_TEA)
+                .order(0, TimeUnit.MILLISECONDS, BeverageType.GREEN_TEA)
+                .run();
+    }
+
+    /**
+     * a day of orders every half second with hourly refills replays identically
+     */
+    @Test
+    public void testDayReplay() {
+        SimulationTrace first = day(42);
+        SimulationTrace second = day(42);
+
+        Assert.assertEquals(2 * 24 * 3600, first.served().size());
+        Assert.assertEquals(first.toString(), second.toString());
+        Assert.assertEquals(24 * IngredientType.values().length,
+                first.entries().size() - first.served().size());
+        Assert.assertEquals(0, first.served().get(0).outletWait());
+    }
+
+    private SimulationTrace day(long seed) {
+        Simulation simulation = new Simulation.Builder().machine(config.buildChaiPointMachine()).seed(seed).build();
+        Random customers = new Random(seed);
+        BeverageType[] beverages = BeverageType.values();
+        for (long at = 0; at < TimeUnit.DAYS.toMillis(1); at += 500)
+            simulation.order(at, TimeUnit.MILLISECONDS, beverages[customers.nextInt(beverages.length)]);
+        for (long hour = 1; hour <= 24; hour++) {
+            for (IngredientType type : IngredientType.values())
+                simulation.refill(hour, TimeUnit.HOURS, type, 500);
+        }
+        return simulation.run();
+    }
+
+    /**
+     * one outlet brewing 30 s cups for four customers ordering at once
+     */
+    @Test
+    public void testBrewTimes() {
+        BrewTimes brewTimes = new BrewTimes.Builder().fixed(BeverageType.HOT_WATER, 30, TimeUnit.SECONDS).build();
+        Simulation simulation = new Simulation.Builder().machine(config.buildChaiPointMachine(1, null))
+                .brewTimes(brewTimes).seed(1).build();
+        for (int i = 0; i < 4; i++)
+            simulation.order(0, TimeUnit.SECONDS, BeverageType.HOT_WATER);
+        SimulationTrace trace = simulation.run();
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(TimeUnit.SECONDS.toNanos(30 * (i + 1)), trace.served().get(i).at());
+            Assert.assertEquals(TimeUnit.SECONDS.toNanos(30 * i), trace.served().get(i).outletWait());
+        }
+        SimulationReport report = trace.report();
+        Assert.assertEquals(4, report.prepared());
+        Assert.assertEquals(120.0, report.cupsPerHour(), 0.001);
+        Assert.assertEquals(1.5, report.meanQueueLength(), 0.001);
+        Assert.assertEquals(3, report.longestQueue());
+        Assert.assertEquals(1.0, report.utilisation(), 0.001);
+    }
+
+    /**
+     * a simulation without brew times of its own brews as long as its machine
+     */
+    @Test
+    public void testMachineBrewTimes() {
+        BrewTimes brewTimes = new BrewTimes.Builder().fixed(BeverageType.HOT_WATER, 30, TimeUnit.SECONDS).build();
+        Simulation simulation = new Simulation.Builder().machine(config.buildChaiPointMachine(1, brewTimes))
+                .seed(1).build();
+        for (int i = 0; i < 4; i++)
+            simulation.order(0, TimeUnit.SECONDS, BeverageType.HOT_WATER);
+        SimulationReport report = simulation.run().report();
+
+        Assert.assertEquals(4, report.prepared());
+        Assert.assertEquals(120.0, report.cupsPerHour(), 0.001);
+        Assert.assertEquals(3, report.longestQueue());
+    }
+
+    /**
+     * three outlets sharing a single heater brew one cup at a time
+     */
+    @Test
+    public void testSharedResource() {
+        SharedResource heater = new SharedResource("heater", 1);
+        BrewTimes brewTimes = new BrewTimes.Builder()
+                .every(BrewProfile.fixed(1, TimeUnit.MINUTES).using(heater)).build();
+        Simulation simulation = new Simulation.Builder().machine(config.buildChaiPointMachine(3, null))
+                .brewTimes(brewTimes).seed(1).build();
+        for (int i = 0; i < 3; i++)
+            simulation.order(0, TimeUnit.SECONDS, BeverageType.HOT_WATER);
+        SimulationTrace trace = simulation.run();
+
+        Assert.assertEquals(TimeUnit.MINUTES.toNanos(3), trace.served().get(2).at());
+        Assert.assertEquals(0, trace.report().outletWait().max());
+        Assert.assertEquals(0, trace.report().longestQueue());
+        Assert.assertEquals(2.0 / 3, trace.report().utilisation(), 0.001);
+    }
+
+    /**
+     * the same day of orders waits less on six outlets than on four
+     */
+    @Test
+    public void testOutletSizing() {
+        LoadProfile profile = new LoadProfile.Builder().orders(2000).arrivalRate(1 / 20.0)
+                .mix(BeverageType.HOT_COFFEE, 2).mix(BeverageType.GINGER_TEA, 1).build();
+        BrewTimes brewTimes = new BrewTimes.Builder()
+                .every(BrewProfile.normal(60, 10, TimeUnit.SECONDS)).build();
+
+        SimulationReport four = size(4, profile, brewTimes);
+        SimulationReport six = size(6, profile, brewTimes);
+
+        Assert.assertEquals(2000, four.prepared());
+        Assert.assertEquals(2000, six.prepared());
+        Assert.assertEquals(true, six.outletWait().mean() < four.outletWait().mean());
+        Assert.assertEquals(true, six.meanQueueLength() < four.meanQueueLength());
+        Assert.assertEquals(true, six.utilisation() < four.utilisation());
+        Assert.assertEquals(true, four.cupsPerHour() > 150 && four.cupsPerHour() <= 180);
+    }
+
+    /**
+     * at rush hour quick hot water overtakes slow coffees under shortest brew
+     * first, cutting the mean wait of the same orders on the same outlets,
+     * while aging keeps the longest coffee wait bounded
+     */
+    @Test
+    public void testOutletPolicy() {
+        LoadProfile profile = new LoadProfile.Builder().orders(2000).arrivalRate(1 / 12.0)
+                .mix(BeverageType.HOT_COFFEE, 1).mix(BeverageType.HOT_WATER, 1).build();
+        BrewTimes brewTimes = new BrewTimes.Builder()
+                .profile(BeverageType.HOT_COFFEE, BrewProfile.normal(80, 10, TimeUnit.SECONDS))
+                .profile(BeverageType.HOT_WATER, BrewProfile.fixed(10, TimeUnit.SECONDS))
+                .build();
+
+        SimulationReport fifo = size(4, profile, brewTimes, OutletPolicy.fifo());
+        SimulationReport shortest = size(4, profile, brewTimes, OutletPolicy.shortestBrewFirst(brewTimes, 0));
+        SimulationReport aged = size(4, profile, brewTimes, OutletPolicy.shortestBrewFirst(brewTimes, 0.5));
+
+        Assert.assertEquals(2000, fifo.prepared());
+        Assert.assertEquals(2000, shortest.prepared());
+        Assert.assertEquals(true, shortest.outletWait().mean() < fifo.outletWait().mean());
+        Assert.assertEquals(true, aged.outletWait().mean() < fifo.outletWait().mean());
+        Assert.assertEquals(true, aged.outletWait().max() < shortest.outletWait().max());
+    }
+
+    /**
+     * heating the water of the next coffees on a four unit heater while the
+     * outlets mix the current ones keeps up with a rush that saturates the
+     * same four outlets brewing every coffee from start to end
+     */
+    @Test
+    public void testPipeline() {
+        LoadProfile profile = new LoadProfile.Builder().orders(2000).arrivalRate(1 / 12.0)
+                .mix(BeverageType.HOT_COFFEE, 1).build();
+        BrewTimes whole = new BrewTimes.Builder()
+                .every(BrewProfile.normal(60, 5, TimeUnit.SECONDS)).build();
+        BrewTimes heat = new BrewTimes.Builder()
+                .every(BrewProfile.normal(40, 5, TimeUnit.SECONDS)).build();
+        BrewTimes mix = new BrewTimes.Builder()
+                .every(BrewProfile.fixed(20, TimeUnit.SECONDS)).build();
+        BrewPipeline pipeline = new BrewPipeline.Builder().stage("heat", 4, heat).build();
+
+        SimulationReport outlets = size(4, profile, whole);
+        SimulationReport pipelined = size(4, profile, mix, OutletPolicy.fifo(), pipeline);
+
+        Assert.assertEquals(2000, outlets.prepared());
+        Assert.assertEquals(2000, pipelined.prepared());
+        Assert.assertEquals(true, outlets.cupsPerHour() <= 240);
+        Assert.assertEquals(true, pipelined.cupsPerHour() > 280);
+        Assert.assertEquals(true, pipelined.outletWait().mean() < outlets.outletWait().mean());
+        Assert.assertEquals(true, pipelined.utilisation() < outlets.utilisation());
+    }
+
+    private SimulationReport size(int outlets, LoadProfile profile, BrewTimes brewTimes) {
+        return size(outlets, profile, brewTimes, OutletPolicy.fifo());
+    }
+
+    private SimulationReport size(int outlets, LoadProfile profile, BrewTimes brewTimes, OutletPolicy policy) {
+        return size(outlets, profile, brewTimes, policy, null);
+    }
+
+    private SimulationReport size(int outlets, LoadProfile profile, BrewTimes brewTimes, OutletPolicy policy,
+                                  BrewPipeline pipeline) {
+        Simulation simulation = new Simulation.Builder()
+                .machine(config.buildChaiPointMachine(outlets, null, policy, pipeline))
+                .brewTimes(brewTimes).seed(7).build();
+        for (IngredientType type : IngredientType.values())
+            simulation.refill(0, TimeUnit.SECONDS, type, 10_000_000);
+        return simulation.orders(profile).run().report();
+    }
+}